@@ -0,0 +1,59 @@
+package com.syfproject.img_store.benchmark;
+
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command-line options of the form {@code --name=value} for the load-test tools.
+ */
+final class Arguments {
+
+    private final Map<String, String> values = new HashMap<>();
+
+    Arguments(String[] args) {
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            values.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+    }
+
+    String get(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    int getInt(String name, int defaultValue) {
+        return values.containsKey(name) ? Integer.parseInt(values.get(name)) : defaultValue;
+    }
+
+    double getDouble(String name, double defaultValue) {
+        return values.containsKey(name) ? Double.parseDouble(values.get(name)) : defaultValue;
+    }
+
+    /**
+     * @return the option as a duration such as "30s" or "250ms"; a bare number is milliseconds
+     */
+    Duration getDuration(String name, String defaultValue) {
+        return DurationStyle.detectAndParse(get(name, defaultValue));
+    }
+
+    /**
+     * @return the option as a distribution of milliseconds, e.g. "lognormal:200ms,2s"
+     */
+    Distribution getLatency(String name, String defaultValue) {
+        return Distribution.parse(get(name, defaultValue), value -> DurationStyle.detectAndParse(value).toMillis());
+    }
+
+    /**
+     * @return the option as a distribution of bytes, e.g. "lognormal:200KB,4MB"
+     */
+    Distribution getSize(String name, String defaultValue) {
+        return Distribution.parse(get(name, defaultValue), value -> DataSize.parse(value).toBytes());
+    }
+}
@@ -0,0 +1,92 @@
+package com.syfproject.img_store.benchmark;
+
+import com.syfproject.img_store.controller.AuthController;
+import com.syfproject.img_store.domain.entity.User;
+import com.syfproject.img_store.dto.LoginRequest;
+import com.syfproject.img_store.dto.RefreshRequest;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares sustained authentication throughput when clients renew access by logging in with their
+ * password (a BCrypt check) and when they exchange a refresh token (one indexed lookup and a
+ * rotation). Each benchmark thread acts as a separate user.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class AuthThroughputBenchmark {
+
+    private static final String PASSWORD = "Benchmark1";
+
+    private final AtomicInteger users = new AtomicInteger();
+    private ConfigurableApplicationContext context;
+    private AuthController authController;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // A queue deep enough that the benchmark threads are never turned away with 503.
+        context = BenchmarkContext.start("security.password-hashing.queue-capacity=1000");
+        authController = context.getBean(AuthController.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * A registered user with the refresh token from their last login or refresh.
+     */
+    @State(Scope.Thread)
+    public static class Client {
+
+        String username;
+        String refreshToken;
+
+        @Setup(Level.Trial)
+        public void setUp(AuthThroughputBenchmark benchmark) {
+            username = "authbench" + benchmark.users.incrementAndGet();
+            User user = new User();
+            user.setUsername(username);
+            user.setPassword(PASSWORD);
+            user.setFirstname("Bench");
+            user.setLastname("Mark");
+            user.setEmail(username + "@example.com");
+            benchmark.authController.registerUser(user).join();
+            refreshToken = benchmark.passwordLogin(this);
+        }
+    }
+
+    @Benchmark
+    public String passwordLogin(Client client) {
+        LoginRequest request = new LoginRequest();
+        request.setUsername(client.username);
+        request.setPassword(PASSWORD);
+        return refreshTokenOf(authController.login(request).join());
+    }
+
+    @Benchmark
+    public String refreshTokenExchange(Client client) {
+        RefreshRequest request = new RefreshRequest();
+        request.setRefreshToken(client.refreshToken);
+        client.refreshToken = refreshTokenOf(authController.refresh(request));
+        return client.refreshToken;
+    }
+
+    private static String refreshTokenOf(ResponseEntity<?> response) {
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            throw new IllegalStateException("Authentication failed: " + response);
+        }
+        return (String) ((Map<?, ?>) response.getBody()).get("refreshToken");
+    }
+}
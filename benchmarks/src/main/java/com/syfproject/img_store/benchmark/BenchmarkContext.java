@@ -0,0 +1,107 @@
+package com.syfproject.img_store.benchmark;
+
+import com.syfproject.img_store.ImgStoreApplication;
+import com.syfproject.img_store.domain.entity.Image;
+import com.syfproject.img_store.domain.entity.User;
+import com.syfproject.img_store.domain.repository.ImageRepository;
+import com.syfproject.img_store.domain.repository.UserRepository;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Starts the application against a private in-memory H2 database, for benchmarks that exercise
+ * services end to end, without a web server or, for load tests over HTTP, with one.
+ */
+final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    /**
+     * Starts the application context.
+     *
+     * @param properties extra "key=value" properties overriding application.properties
+     * @return the running context; close it in the benchmark's tear-down
+     */
+    static ConfigurableApplicationContext start(String... properties) {
+        return run(WebApplicationType.NONE, properties);
+    }
+
+    /**
+     * Starts the application with its web server on a random free port, read with {@link #port}.
+     *
+     * @param properties extra "key=value" properties overriding application.properties
+     * @return the running context; close it in the benchmark's tear-down
+     */
+    static ConfigurableApplicationContext startServer(String... properties) {
+        List<String> args = new ArrayList<>(List.of(properties));
+        args.add("server.port=0");
+        return run(WebApplicationType.SERVLET, args.toArray(String[]::new));
+    }
+
+    /**
+     * @param context a context started with {@link #startServer}
+     * @return the port the web server listens on
+     */
+    static int port(ConfigurableApplicationContext context) {
+        return Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+    }
+
+    private static ConfigurableApplicationContext run(WebApplicationType type, String... properties) {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.show-sql=false",
+                "--kafka.enabled=false",
+                "--logging.level.root=WARN",
+                "--logging.level.org.springframework.security=WARN",
+                "--logging.level.com.syfproject=WARN"));
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+        // Passed as command-line arguments so they take precedence over application.properties.
+        return new SpringApplicationBuilder(ImgStoreApplication.class)
+                .web(type)
+                .run(args.toArray(String[]::new));
+    }
+
+    /**
+     * Creates a user owning the given number of images.
+     *
+     * @param context the running context
+     * @param username the username, at least 5 characters
+     * @param images the number of images to create
+     * @return the saved user
+     */
+    static User seedUser(ConfigurableApplicationContext context, String username, int images) {
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        ImageRepository imageRepository = context.getBean(ImageRepository.class);
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("Benchmark1");
+        user.setFirstname("Bench");
+        user.setLastname("Mark");
+        user.setEmail(username + "@example.com");
+        userRepository.save(user);
+
+        List<Image> batch = new ArrayList<>();
+        for (int i = 0; i < images; i++) {
+            Image image = new Image();
+            image.setImgurId(username + "-" + i);
+            image.setLink("https://i.imgur.com/" + username + "-" + i + ".jpg");
+            image.setDeleteHash(username + "-delete-" + i);
+            image.setFilename("photo-" + i + ".jpg");
+            image.setUser(user);
+            batch.add(image);
+            if (batch.size() == 500) {
+                imageRepository.saveAll(batch);
+                batch.clear();
+            }
+        }
+        imageRepository.saveAll(batch);
+        return user;
+    }
+}
@@ -0,0 +1,74 @@
+package com.syfproject.img_store.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two JMH JSON result files, printing each benchmark's score in both runs, the change,
+ * and the bytes allocated per operation when the runs were profiled with -prof gc.
+ * Benchmarks are matched by name and parameters.
+ */
+public final class CompareResults {
+
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+    private CompareResults() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: CompareResults <baseline.json> <candidate.json>");
+            System.exit(2);
+        }
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, JsonNode> baseline = byKey(objectMapper.readTree(new File(args[0])));
+        Map<String, JsonNode> candidate = byKey(objectMapper.readTree(new File(args[1])));
+
+        System.out.printf("%-70s %14s %14s %9s %12s %12s%n", "Benchmark", "Baseline", "Candidate", "Change",
+                "B/op before", "B/op after");
+        for (Map.Entry<String, JsonNode> entry : candidate.entrySet()) {
+            JsonNode after = entry.getValue();
+            JsonNode before = baseline.get(entry.getKey());
+            double afterScore = after.path("primaryMetric").path("score").asDouble();
+            String unit = after.path("primaryMetric").path("scoreUnit").asText();
+            if (before == null) {
+                System.out.printf("%-70s %14s %14.3f %9s %12s %12s  %s%n", entry.getKey(), "-", afterScore, "new",
+                        "-", allocation(after), unit);
+                continue;
+            }
+            double beforeScore = before.path("primaryMetric").path("score").asDouble();
+            double change = beforeScore == 0 ? 0 : (afterScore - beforeScore) / beforeScore * 100;
+            System.out.printf("%-70s %14.3f %14.3f %+8.1f%% %12s %12s  %s%n", entry.getKey(), beforeScore, afterScore,
+                    change, allocation(before), allocation(after), unit);
+        }
+    }
+
+    /**
+     * Keys each result by benchmark name and parameters, e.g. "JwtDecodeBenchmark.decode cache=cached tokens=1000".
+     */
+    private static Map<String, JsonNode> byKey(JsonNode results) {
+        Map<String, JsonNode> byKey = new LinkedHashMap<>();
+        for (JsonNode result : results) {
+            String benchmark = result.path("benchmark").asText();
+            StringBuilder key = new StringBuilder(benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1));
+            Iterator<Map.Entry<String, JsonNode>> params = result.path("params").fields();
+            while (params.hasNext()) {
+                Map.Entry<String, JsonNode> param = params.next();
+                key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText());
+            }
+            byKey.put(key.toString(), result);
+        }
+        return byKey;
+    }
+
+    private static String allocation(JsonNode result) {
+        JsonNode metric = result.path("secondaryMetrics").path(ALLOCATION);
+        return metric.isMissingNode() ? "-" : String.format("%.1f", metric.path("score").asDouble());
+    }
+}
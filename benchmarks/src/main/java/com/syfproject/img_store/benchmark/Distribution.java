@@ -0,0 +1,74 @@
+package com.syfproject.img_store.benchmark;
+
+import java.util.Random;
+import java.util.function.ToLongFunction;
+
+/**
+ * A distribution of non-negative values, such as latencies or payload sizes, given on the command
+ * line as one of:
+ * <ul>
+ *     <li>{@code fixed:<value>}</li>
+ *     <li>{@code uniform:<min>,<max>}</li>
+ *     <li>{@code exponential:<mean>}</li>
+ *     <li>{@code lognormal:<median>,<p99>}, a long right tail typical of network latencies and file sizes</li>
+ * </ul>
+ * Values are parsed by the caller, so latencies may be written as "250ms" and sizes as "64KB".
+ */
+@FunctionalInterface
+interface Distribution {
+
+    /**
+     * The 99th percentile of the standard normal distribution.
+     */
+    double Z_99 = 2.3263478740408408;
+
+    /**
+     * Draws a value.
+     *
+     * @param random the source of randomness
+     * @return a value of at least 0
+     */
+    long sample(Random random);
+
+    static Distribution fixed(long value) {
+        return random -> value;
+    }
+
+    /**
+     * Parses a distribution.
+     *
+     * @param spec the distribution, e.g. "lognormal:200ms,2s"
+     * @param value parses each value in the spec
+     * @return the distribution
+     * @throws IllegalArgumentException if the spec is not understood
+     */
+    static Distribution parse(String spec, ToLongFunction<String> value) {
+        int colon = spec.indexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("Expected <kind>:<values>, got " + spec);
+        }
+        String[] values = spec.substring(colon + 1).split(",");
+        switch (spec.substring(0, colon)) {
+            case "fixed" -> {
+                return fixed(value.applyAsLong(values[0].trim()));
+            }
+            case "uniform" -> {
+                long min = value.applyAsLong(values[0].trim());
+                long max = value.applyAsLong(values[1].trim());
+                return random -> min + (long) (random.nextDouble() * (max - min + 1));
+            }
+            case "exponential" -> {
+                double mean = value.applyAsLong(values[0].trim());
+                return random -> (long) (-mean * Math.log(1 - random.nextDouble()));
+            }
+            case "lognormal" -> {
+                long median = value.applyAsLong(values[0].trim());
+                long p99 = value.applyAsLong(values[1].trim());
+                double mu = Math.log(Math.max(1, median));
+                double sigma = Math.log((double) Math.max(p99, median) / Math.max(1, median)) / Z_99;
+                return random -> (long) Math.exp(mu + sigma * random.nextGaussian());
+            }
+            default -> throw new IllegalArgumentException("Unknown distribution: " + spec);
+        }
+    }
+}
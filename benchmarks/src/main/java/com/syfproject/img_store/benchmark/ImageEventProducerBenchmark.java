@@ -0,0 +1,87 @@
+package com.syfproject.img_store.benchmark;
+
+import com.syfproject.img_store.service.events.ImageEvent;
+import com.syfproject.img_store.service.events.ImageEventSerializer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaZKBroker;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many image events per second an embedded broker acknowledges with different producer
+ * settings. Each operation sends a burst of events keyed by user id and waits for all of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageEventProducerBenchmark {
+
+    private static final int BURST = 1000;
+    private static final int USERS = 100;
+
+    /** linger ms, batch size, compression and idempotence, separated by slashes. */
+    @Param({"0/16384/none/false", "0/16384/none/true", "5/65536/none/true", "5/65536/lz4/true",
+            "5/65536/zstd/true", "20/262144/lz4/true"})
+    public String producer;
+
+    private EmbeddedKafkaZKBroker broker;
+    private DefaultKafkaProducerFactory<String, byte[]> producerFactory;
+    private KafkaTemplate<String, byte[]> template;
+    private final String[] keys = new String[BURST];
+    private final byte[][] values = new byte[BURST][];
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        broker = new EmbeddedKafkaZKBroker(1, false, 4, ImageEvent.TOPIC);
+        broker.afterPropertiesSet();
+        String[] settings = producer.split("/");
+        boolean idempotence = Boolean.parseBoolean(settings[3]);
+        Map<String, Object> props = new HashMap<>();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString());
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+        props.put(ProducerConfig.LINGER_MS_CONFIG, Integer.parseInt(settings[0]));
+        props.put(ProducerConfig.BATCH_SIZE_CONFIG, Integer.parseInt(settings[1]));
+        props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, settings[2]);
+        props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, idempotence);
+        props.put(ProducerConfig.ACKS_CONFIG, idempotence ? "all" : "1");
+        producerFactory = new DefaultKafkaProducerFactory<>(props);
+        template = new KafkaTemplate<>(producerFactory);
+        for (int i = 0; i < BURST; i++) {
+            long userId = i % USERS;
+            ImageEvent event = new ImageEvent(ImageEvent.Type.UPLOADED, userId, "user" + userId, i,
+                    "https://i.imgur.com/img" + i + ".jpg", 250_000L + i, System.currentTimeMillis());
+            keys[i] = event.key();
+            values[i] = ImageEventSerializer.toBytes(event);
+        }
+        // Connect and fetch metadata before measuring.
+        template.send(ImageEvent.TOPIC, keys[0], values[0]).get();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        producerFactory.destroy();
+        broker.destroy();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void send() throws Exception {
+        CompletableFuture<?>[] results = new CompletableFuture<?>[BURST];
+        for (int i = 0; i < BURST; i++) {
+            results[i] = template.send(ImageEvent.TOPIC, keys[i], values[i]);
+        }
+        CompletableFuture.allOf(results).get();
+    }
+}
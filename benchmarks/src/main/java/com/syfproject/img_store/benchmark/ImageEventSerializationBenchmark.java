@@ -0,0 +1,56 @@
+package com.syfproject.img_store.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.syfproject.img_store.service.events.ImageEvent;
+import com.syfproject.img_store.service.events.ImageEventDeserializer;
+import com.syfproject.img_store.service.events.ImageEventSerializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding and decoding an upload event in the binary format sent to Kafka, with the same
+ * event written as JSON by Jackson as a baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageEventSerializationBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ImageEvent event;
+    private byte[] binary;
+    private byte[] json;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        event = new ImageEvent(ImageEvent.Type.UPLOADED, 42L, "eventbench", 123456L,
+                "https://i.imgur.com/abcdefg.jpg", 734_003L, System.currentTimeMillis());
+        binary = ImageEventSerializer.toBytes(event);
+        json = objectMapper.writeValueAsBytes(event);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return ImageEventSerializer.toBytes(event);
+    }
+
+    @Benchmark
+    public ImageEvent deserialize() {
+        return ImageEventDeserializer.fromBytes(binary);
+    }
+
+    @Benchmark
+    public byte[] serializeJson() throws IOException {
+        return objectMapper.writeValueAsBytes(event);
+    }
+
+    @Benchmark
+    public ImageEvent deserializeJson() throws IOException {
+        return objectMapper.readValue(json, ImageEvent.class);
+    }
+}
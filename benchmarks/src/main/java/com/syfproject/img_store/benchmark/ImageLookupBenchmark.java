@@ -0,0 +1,150 @@
+package com.syfproject.img_store.benchmark;
+
+import com.syfproject.img_store.domain.repository.ImageRepository;
+import com.syfproject.img_store.domain.repository.UserRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of the owner-scoped image lookups against a large table, with the schema's
+ * indexes and with only what H2 creates on its own (the primary key and an index for the user_id
+ * foreign key), which is how the schema looked before the indexes were declared.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class ImageLookupBenchmark {
+
+    /**
+     * indexed: the schema as declared by the entities. unindexed: the declared indexes are dropped.
+     */
+    @Param({"indexed", "unindexed"})
+    public String schema;
+
+    @Param({"10000"})
+    public int users;
+
+    @Param({"100"})
+    public int imagesPerUser;
+
+    private ConfigurableApplicationContext context;
+    private ImageRepository imageRepository;
+    private UserRepository userRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        imageRepository = context.getBean(ImageRepository.class);
+        userRepository = context.getBean(UserRepository.class);
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        if ("unindexed".equals(schema)) {
+            dropDeclaredIndexes(jdbc);
+        }
+        seed(jdbc);
+        jdbc.execute("ANALYZE");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object findByIdAndUserId() {
+        long user = randomUser();
+        return imageRepository.findByIdAndUserId(imageId(user, randomImage()), user);
+    }
+
+    @Benchmark
+    public Object findByDeleteHashAndUserId() {
+        long user = randomUser();
+        return imageRepository.findByDeleteHashAndUserId("delete-" + imageId(user, randomImage()), user);
+    }
+
+    @Benchmark
+    public Object findFirstByUserIdAndContentHash() {
+        long user = randomUser();
+        return imageRepository.findFirstByUserIdAndContentHash(user, "hash-" + imageId(user, randomImage()));
+    }
+
+    @Benchmark
+    public Object findPageByUserId() {
+        return imageRepository.findPageByUserId(randomUser(), 0L, Limit.of(50));
+    }
+
+    @Benchmark
+    public Object findUserByUsername() {
+        return userRepository.findByUsername("user" + randomUser());
+    }
+
+    private long randomUser() {
+        return ThreadLocalRandom.current().nextInt(users) + 1;
+    }
+
+    private int randomImage() {
+        return ThreadLocalRandom.current().nextInt(imagesPerUser);
+    }
+
+    private long imageId(long user, int image) {
+        return (user - 1) * imagesPerUser + image + 1;
+    }
+
+    /**
+     * Drops the declared indexes. Unique indexes are created as constraints, and H2 backs the user_id
+     * foreign key with one of the declared indexes, so the constraints are dropped first and the
+     * foreign key is re-added afterwards, letting H2 create its own single-column index for it.
+     */
+    private static void dropDeclaredIndexes(JdbcTemplate jdbc) {
+        List<Map<String, Object>> constraints = jdbc.queryForList("SELECT TABLE_NAME, CONSTRAINT_NAME "
+                + "FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS "
+                + "WHERE TABLE_NAME IN ('IMAGES', 'USERS') AND CONSTRAINT_TYPE IN ('FOREIGN KEY', 'UNIQUE')");
+        for (Map<String, Object> constraint : constraints) {
+            jdbc.execute("ALTER TABLE " + constraint.get("TABLE_NAME") + " DROP CONSTRAINT " + constraint.get("CONSTRAINT_NAME"));
+        }
+        List<String> indexes = jdbc.queryForList("SELECT INDEX_NAME FROM INFORMATION_SCHEMA.INDEXES "
+                + "WHERE TABLE_NAME = 'IMAGES' AND INDEX_NAME LIKE 'IDX_%'", String.class);
+        for (String name : indexes) {
+            jdbc.execute("DROP INDEX " + name);
+        }
+        jdbc.execute("ALTER TABLE images ADD CONSTRAINT fk_images_user FOREIGN KEY (user_id) REFERENCES users (id)");
+    }
+
+    private void seed(JdbcTemplate jdbc) {
+        List<Object[]> userRows = new ArrayList<>(users);
+        for (long user = 1; user <= users; user++) {
+            userRows.add(new Object[]{user, "user" + user, "Benchmark1", "Bench", "Mark", "user" + user + "@example.com"});
+        }
+        jdbc.batchUpdate("INSERT INTO users (id, username, password, firstname, lastname, email) VALUES (?, ?, ?, ?, ?, ?)",
+                userRows);
+
+        List<Object[]> imageRows = new ArrayList<>(10_000);
+        for (long user = 1; user <= users; user++) {
+            for (int image = 0; image < imagesPerUser; image++) {
+                long id = imageId(user, image);
+                imageRows.add(new Object[]{id, "imgur-" + id, "https://i.imgur.com/" + id + ".jpg", "delete-" + id,
+                        "photo-" + image + ".jpg", "hash-" + id, 1024L, 1024L, user});
+                if (imageRows.size() == 10_000) {
+                    insertImages(jdbc, imageRows);
+                    imageRows.clear();
+                }
+            }
+        }
+        insertImages(jdbc, imageRows);
+    }
+
+    private static void insertImages(JdbcTemplate jdbc, List<Object[]> rows) {
+        jdbc.batchUpdate("INSERT INTO images (id, imgur_id, link, delete_hash, filename, content_hash, "
+                + "original_size, optimized_size, user_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+    }
+}
@@ -0,0 +1,73 @@
+package com.syfproject.img_store.benchmark;
+
+import com.syfproject.img_store.domain.entity.User;
+import com.syfproject.img_store.domain.repository.ImageRepository;
+import com.syfproject.img_store.dto.ImageSummary;
+import com.syfproject.img_store.service.ImageService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares image read throughput with the metadata cache cold (every read goes to the database)
+ * and warm (reads are served from the per-user cache).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class ImageReadBenchmark {
+
+    /**
+     * cold: caching is disabled, so each read queries H2. warm: the user's images are cached.
+     */
+    @Param({"cold", "warm"})
+    public String cache;
+
+    @Param({"1000"})
+    public int imagesPerUser;
+
+    private ConfigurableApplicationContext context;
+    private ImageService imageService;
+    private Long userId;
+    private String username;
+    private List<Long> imageIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // A per-user limit of zero turns every user into an uncacheable one.
+        context = BenchmarkContext.start("images.cache.max-images-per-user=" + ("warm".equals(cache) ? imagesPerUser : 0));
+        imageService = context.getBean(ImageService.class);
+        User user = BenchmarkContext.seedUser(context, "readbench", imagesPerUser);
+        userId = user.getId();
+        username = user.getUsername();
+        imageIds = context.getBean(ImageRepository.class)
+                .findPageByUserId(userId, 0L, Limit.of(imagesPerUser)).stream()
+                .map(ImageSummary::getId)
+                .toList();
+        imageService.getUserImages(userId, username, null, null, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object getImageById() {
+        Long id = imageIds.get(ThreadLocalRandom.current().nextInt(imageIds.size()));
+        return imageService.getImageById(id, userId, username);
+    }
+
+    @Benchmark
+    public Object getUserImagesFirstPage() {
+        return imageService.getUserImages(userId, username, null, 50, null);
+    }
+}
@@ -0,0 +1,159 @@
+package com.syfproject.img_store.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the Imgur API, so load tests run offline. Uploads (POST /3/image) and deletes
+ * (DELETE /3/image/{deletehash}) are answered on a thread per request after a latency drawn from a
+ * distribution. A share of requests, given by the error rate, fail with one of the error statuses,
+ * and upload responses are padded to a size drawn from the payload distribution, the way Imgur's
+ * descriptive fields vary. The most requests in flight at once is recorded.
+ * <p>
+ * Run standalone, for a service started with IMGUR_API_URL=http://127.0.0.1:9000/3, with
+ * {@code mvn exec:exec@imgur-stub -Dstub.args="--port=9000 --latency=lognormal:300ms,2s --error-rate=0.01"}.
+ */
+final class ImgurStub implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Distribution latency;
+    private final double errorRate;
+    private final int[] errorStatuses;
+    private final Distribution payload;
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    /**
+     * Starts a stub that answers every request successfully after a fixed latency.
+     *
+     * @param latency how long each request takes
+     */
+    ImgurStub(Duration latency) throws IOException {
+        this(0, Distribution.fixed(latency.toMillis()), 0, new int[]{503}, Distribution.fixed(0));
+    }
+
+    /**
+     * Starts a stub.
+     *
+     * @param port the port to listen on, or 0 for a random free port
+     * @param latency milliseconds each request takes
+     * @param errorRate the share of requests, from 0 to 1, answered with an error
+     * @param errorStatuses the statuses errors are answered with, picked at random
+     * @param payload bytes of padding added to each upload response
+     */
+    ImgurStub(int port, Distribution latency, double errorRate, int[] errorStatuses, Distribution payload) throws IOException {
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.errorStatuses = errorStatuses;
+        this.payload = payload;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1000);
+        server.createContext("/3/image", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Arguments arguments = new Arguments(args);
+        int[] errorStatuses = Arrays.stream(arguments.get("error-statuses", "500,502,503,429").split(","))
+                .mapToInt(status -> Integer.parseInt(status.trim()))
+                .toArray();
+        ImgurStub stub = new ImgurStub(arguments.getInt("port", 9000),
+                arguments.getLatency("latency", "lognormal:300ms,2s"),
+                arguments.getDouble("error-rate", 0.01),
+                errorStatuses,
+                arguments.getSize("payload", "uniform:0,2KB"));
+        Runtime.getRuntime().addShutdownHook(new Thread(stub::close));
+        System.out.println("Imgur stub listening at " + stub.apiUrl());
+        new CountDownLatch(1).await();
+    }
+
+    /**
+     * @return the API base URL to configure as imgur.api-url
+     */
+    String apiUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/3";
+    }
+
+    /**
+     * @return the most requests in flight at once since the last reset
+     */
+    int maxInFlight() {
+        return maxInFlight.get();
+    }
+
+    void resetMaxInFlight() {
+        maxInFlight.set(inFlight.get());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            long received = drain(exchange.getRequestBody());
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Thread.sleep(latency.sample(random));
+            if (errorRate > 0 && random.nextDouble() < errorRate) {
+                int status = errorStatuses[random.nextInt(errorStatuses.length)];
+                respond(exchange, status, "{\"data\":{\"error\":\"Stub error\",\"method\":\"" + exchange.getRequestMethod()
+                        + "\"},\"success\":false,\"status\":" + status + "}");
+            } else if ("POST".equals(exchange.getRequestMethod())) {
+                long id = ids.incrementAndGet();
+                respond(exchange, 200, "{\"data\":{\"id\":\"stub" + id + "\",\"title\":null,\"description\":\""
+                        + "x".repeat((int) Math.min(payload.sample(random), 1 << 20)) + "\",\"datetime\":"
+                        + System.currentTimeMillis() / 1000 + ",\"type\":\"image/jpeg\",\"size\":" + received
+                        + ",\"link\":\"https://i.imgur.com/stub" + id + ".jpg\",\"deletehash\":\"delete" + id
+                        + "\"},\"success\":true,\"status\":200}");
+            } else if ("DELETE".equals(exchange.getRequestMethod())) {
+                respond(exchange, 200, "{\"data\":true,\"success\":true,\"status\":200}");
+            } else {
+                exchange.sendResponseHeaders(405, -1);
+                exchange.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static long drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            total += read;
+        }
+        return total;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,66 @@
+package com.syfproject.img_store.benchmark;
+
+import com.syfproject.img_store.security.CachingJwtDecoder;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.security.Key;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Compares JWT decode throughput with the verified-token cache disabled (every call parses the
+ * token and checks its HMAC) and enabled, over a pool of distinct tokens as if from that many
+ * active clients.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class JwtDecodeBenchmark {
+
+    private static final String SECRET = "benchmarkbenchmarkbenchmarkbench";
+
+    /**
+     * uncached: jwt.cache.maximum-size=0. cached: the default cache size.
+     */
+    @Param({"uncached", "cached"})
+    public String cache;
+
+    @Param({"1000"})
+    public int tokens;
+
+    private CachingJwtDecoder decoder;
+    private List<String> pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        decoder = new CachingJwtDecoder(SECRET, "cached".equals(cache) ? 10_000 : 0);
+        Key key = Keys.hmacShaKeyFor(SECRET.getBytes());
+        Date now = new Date();
+        pool = IntStream.range(0, tokens)
+                .mapToObj(i -> Jwts.builder()
+                        .setSubject("user" + i)
+                        .claim("uid", (long) i)
+                        .claim("roles", List.of("USER"))
+                        .setIssuedAt(now)
+                        .setExpiration(new Date(now.getTime() + TimeUnit.HOURS.toMillis(1)))
+                        .signWith(key, SignatureAlgorithm.HS256)
+                        .compact())
+                .toList();
+    }
+
+    @Benchmark
+    public Jwt decode() {
+        return decoder.decode(pool.get(ThreadLocalRandom.current().nextInt(pool.size())));
+    }
+}
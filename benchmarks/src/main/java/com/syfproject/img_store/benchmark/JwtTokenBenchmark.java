@@ -0,0 +1,64 @@
+package com.syfproject.img_store.benchmark;
+
+import com.syfproject.img_store.security.JwtTokenProvider;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Measures issuing access tokens on login and validating them on each request through
+ * JwtTokenProvider, with the verified-token cache disabled and enabled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class JwtTokenBenchmark {
+
+    private static final List<String> ROLES = List.of("USER");
+
+    /**
+     * uncached: jwt.cache.maximum-size=0. cached: the default cache size.
+     */
+    @Param({"uncached", "cached"})
+    public String cache;
+
+    @Param({"1000"})
+    public int tokens;
+
+    private ConfigurableApplicationContext context;
+    private JwtTokenProvider jwtTokenProvider;
+    private List<String> pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("jwt.cache.maximum-size=" + ("cached".equals(cache) ? 10_000 : 0));
+        jwtTokenProvider = context.getBean(JwtTokenProvider.class);
+        pool = IntStream.range(0, tokens)
+                .mapToObj(i -> jwtTokenProvider.createToken("user" + i, (long) i, ROLES))
+                .toList();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String createToken() {
+        long user = ThreadLocalRandom.current().nextInt(tokens);
+        return jwtTokenProvider.createToken("user" + user, user, ROLES);
+    }
+
+    @Benchmark
+    public boolean validateToken() {
+        return jwtTokenProvider.validateToken(pool.get(ThreadLocalRandom.current().nextInt(pool.size())));
+    }
+}
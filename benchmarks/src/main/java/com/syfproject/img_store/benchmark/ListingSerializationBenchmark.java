@@ -0,0 +1,60 @@
+package com.syfproject.img_store.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.syfproject.img_store.dto.ImageSummary;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Measures writing a GET /api/images/all page as JSON, the body ImageService builds and the
+ * ObjectMapper the message converter uses, for full and sparse fieldsets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListingSerializationBenchmark {
+
+    @Param({"50", "500"})
+    public int pageSize;
+
+    /**
+     * all: every field, as ImageSummary objects. Otherwise the ?fields= value, as selected maps.
+     */
+    @Param({"all", "id,link"})
+    public String fields;
+
+    private ObjectMapper objectMapper;
+    private List<ImageSummary> page;
+    private List<String> selectedFields;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        page = LongStream.rangeClosed(1, pageSize)
+                .mapToObj(id -> new ImageSummary(id, "imgur" + id, "https://i.imgur.com/imgur" + id + ".jpg",
+                        "photo-" + id + ".jpg", "delete" + id))
+                .toList();
+        selectedFields = "all".equals(fields) ? null : Arrays.asList(fields.split(","));
+    }
+
+    @Benchmark
+    public byte[] writeListing() throws JsonProcessingException {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("user", "listbench");
+        body.put("images", selectedFields == null ? page
+                : page.stream().map(image -> image.select(selectedFields)).toList());
+        body.put("nextCursor", "MTAwMA");
+        return objectMapper.writeValueAsBytes(body);
+    }
+}
@@ -0,0 +1,416 @@
+package com.syfproject.img_store.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * End-to-end load test of the HTTP API. Each client is a user who registers, logs in, and then runs
+ * a weighted mix of operations one after another (a closed model), with an optional think time
+ * between them. Requests completed during the measurement window, after the warm-up, are reported
+ * per endpoint as throughput, status classes and latency percentiles.
+ * <p>
+ * Without --target the application is started in this JVM against a local {@link ImgurStub} and a
+ * private in-memory database, so the test needs no network access. Options, with their defaults:
+ * <pre>
+ * --target=                  base URL of a running service; empty starts one in-process
+ * --clients=32               concurrent users
+ * --duration=60s             measurement window
+ * --warmup=10s               run before measuring
+ * --mix=register=1,login=4,upload=15,list=40,get=35,delete=5
+ * --upload-size=lognormal:200KB,4MB
+ * --think-time=fixed:0
+ * In-process only:
+ * --imgur-latency=lognormal:300ms,2s
+ * --imgur-error-rate=0.01
+ * --imgur-error-statuses=500,502,503,429
+ * --imgur-payload=uniform:0,2KB
+ * --rate-limits=false        keep the ratelimit.* token buckets instead of disabling them
+ * --properties=              extra application properties, separated by ';'
+ * </pre>
+ */
+public final class LoadDriver {
+
+    private static final String PASSWORD = "Loadtest1";
+    private static final int MAX_UPLOAD = 10 * 1024 * 1024 - 1024;
+
+    enum Operation {
+        REGISTER("POST /api/auth/register"),
+        LOGIN("POST /api/auth/login"),
+        UPLOAD("POST /api/images/upload"),
+        LIST("GET /api/images/all"),
+        GET("GET /api/images/{id}"),
+        DELETE("DELETE /api/images/delete/{hash}");
+
+        final String endpoint;
+
+        Operation(String endpoint) {
+            this.endpoint = endpoint;
+        }
+    }
+
+    /**
+     * What one endpoint did during the measurement window.
+     */
+    private static final class Stats {
+
+        final Recorder latencyMicros = new Recorder(3);
+        final LongAdder success = new LongAdder();
+        final LongAdder clientErrors = new LongAdder();
+        final LongAdder serverErrors = new LongAdder();
+        final LongAdder failures = new LongAdder();
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+    private final AtomicLong sequence = new AtomicLong();
+    private final HttpClient httpClient;
+    private final String target;
+    private final Operation[] mix;
+    private final Distribution uploadSize;
+    private final Distribution thinkTime;
+    private final byte[] content;
+    private long measureFrom;
+    private long measureUntil;
+
+    private LoadDriver(String target, Operation[] mix, Distribution uploadSize, Distribution thinkTime) {
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        this.target = target;
+        this.mix = mix;
+        this.uploadSize = uploadSize;
+        this.thinkTime = thinkTime;
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats());
+        }
+        // Uploads are slices of one random block, each prefixed with a unique sequence number so
+        // that none is deduplicated.
+        content = new byte[MAX_UPLOAD];
+        new Random(42).nextBytes(content);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Arguments arguments = new Arguments(args);
+        int clients = arguments.getInt("clients", 32);
+        Duration duration = arguments.getDuration("duration", "60s");
+        Duration warmup = arguments.getDuration("warmup", "10s");
+        Operation[] mix = parseMix(arguments.get("mix", "register=1,login=4,upload=15,list=40,get=35,delete=5"));
+
+        String target = arguments.get("target", "");
+        ImgurStub imgur = null;
+        ConfigurableApplicationContext context = null;
+        if (target.isEmpty()) {
+            int[] errorStatuses = Arrays.stream(arguments.get("imgur-error-statuses", "500,502,503,429").split(","))
+                    .mapToInt(status -> Integer.parseInt(status.trim()))
+                    .toArray();
+            imgur = new ImgurStub(0, arguments.getLatency("imgur-latency", "lognormal:300ms,2s"),
+                    arguments.getDouble("imgur-error-rate", 0.01), errorStatuses,
+                    arguments.getSize("imgur-payload", "uniform:0,2KB"));
+            List<String> properties = new ArrayList<>(List.of("imgur.api-url=" + imgur.apiUrl(),
+                    // Uploads are random bytes, which cannot be decoded into thumbnails.
+                    "thumbnails.sizes="));
+            if (!Boolean.parseBoolean(arguments.get("rate-limits", "false"))) {
+                for (String endpoint : List.of("upload", "batch", "delete")) {
+                    properties.add("ratelimit." + endpoint + ".user.rate=0");
+                    properties.add("ratelimit." + endpoint + ".global.rate=0");
+                }
+            }
+            String extra = arguments.get("properties", "");
+            if (!extra.isEmpty()) {
+                properties.addAll(Arrays.asList(extra.split(";")));
+            }
+            context = BenchmarkContext.startServer(properties.toArray(String[]::new));
+            target = "http://127.0.0.1:" + BenchmarkContext.port(context);
+        }
+
+        LoadDriver driver = new LoadDriver(target, mix, arguments.getSize("upload-size", "lognormal:200KB,4MB"),
+                arguments.getLatency("think-time", "fixed:0"));
+        System.out.printf("Running %d clients against %s: %s warm-up, %s measured%n", clients, target,
+                warmup.toSeconds() + "s", duration.toSeconds() + "s");
+        try {
+            driver.run(clients, warmup, duration);
+            driver.report(duration);
+            if (imgur != null) {
+                System.out.println("Most Imgur calls in flight at once: " + imgur.maxInFlight());
+            }
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+            if (imgur != null) {
+                imgur.close();
+            }
+        }
+    }
+
+    /**
+     * Expands "name=weight,..." into an array holding each operation as many times as its weight,
+     * so that a uniformly random index picks operations in proportion.
+     */
+    private static Operation[] parseMix(String spec) {
+        List<Operation> mix = new ArrayList<>();
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.split("=");
+            Operation operation = Operation.valueOf(parts[0].trim().toUpperCase());
+            for (int i = Integer.parseInt(parts[1].trim()); i > 0; i--) {
+                mix.add(operation);
+            }
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("The mix has no operations: " + spec);
+        }
+        return mix.toArray(Operation[]::new);
+    }
+
+    private void run(int clients, Duration warmup, Duration duration) throws InterruptedException {
+        long start = System.nanoTime();
+        measureFrom = start + warmup.toNanos();
+        measureUntil = measureFrom + duration.toNanos();
+        List<Thread> threads = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            Thread thread = new Thread(new Client(), "load-client-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private void report(Duration duration) {
+        double seconds = duration.toNanos() / 1e9;
+        System.out.println();
+        System.out.printf("%-36s %9s %8s %7s %7s %7s %9s %9s %9s %9s %9s %9s%n", "Endpoint", "Requests", "2xx",
+                "4xx", "5xx", "Failed", "Req/s", "p50 ms", "p95 ms", "p99 ms", "p99.9 ms", "Max ms");
+        Histogram all = new Histogram(3);
+        long allRequests = 0;
+        for (Operation operation : Operation.values()) {
+            Stats endpoint = stats.get(operation);
+            Histogram latency = endpoint.latencyMicros.getIntervalHistogram();
+            all.add(latency);
+            long requests = latency.getTotalCount() + endpoint.failures.sum();
+            allRequests += requests;
+            printRow(operation.endpoint, requests, endpoint.success.sum(), endpoint.clientErrors.sum(),
+                    endpoint.serverErrors.sum(), endpoint.failures.sum(), requests / seconds, latency);
+        }
+        long success = stats.values().stream().mapToLong(endpoint -> endpoint.success.sum()).sum();
+        long clientErrors = stats.values().stream().mapToLong(endpoint -> endpoint.clientErrors.sum()).sum();
+        long serverErrors = stats.values().stream().mapToLong(endpoint -> endpoint.serverErrors.sum()).sum();
+        long failures = stats.values().stream().mapToLong(endpoint -> endpoint.failures.sum()).sum();
+        printRow("All", allRequests, success, clientErrors, serverErrors, failures, allRequests / seconds, all);
+    }
+
+    private static void printRow(String name, long requests, long success, long clientErrors, long serverErrors,
+                                 long failures, double throughput, Histogram latencyMicros) {
+        System.out.printf("%-36s %9d %8d %7d %7d %7d %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n", name, requests, success,
+                clientErrors, serverErrors, failures, throughput,
+                latencyMicros.getValueAtPercentile(50) / 1000.0,
+                latencyMicros.getValueAtPercentile(95) / 1000.0,
+                latencyMicros.getValueAtPercentile(99) / 1000.0,
+                latencyMicros.getValueAtPercentile(99.9) / 1000.0,
+                latencyMicros.getMaxValue() / 1000.0);
+    }
+
+    /**
+     * One simulated user. Its state is what a real client would remember: its credentials, its
+     * access token, and the images it has seen.
+     */
+    private final class Client implements Runnable {
+
+        private final List<Long> images = new ArrayList<>();
+        private final Map<Long, String> deleteHashes = new HashMap<>();
+        private String username;
+        private String token;
+
+        @Override
+        public void run() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (System.nanoTime() < measureUntil) {
+                try {
+                    if (username == null) {
+                        register();
+                    } else if (token == null) {
+                        login();
+                    } else {
+                        execute(mix[random.nextInt(mix.length)]);
+                    }
+                    long think = thinkTime.sample(random);
+                    if (think > 0) {
+                        Thread.sleep(think);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        private void execute(Operation operation) throws InterruptedException {
+            switch (operation) {
+                case REGISTER -> register();
+                case LOGIN -> login();
+                case UPLOAD -> upload();
+                case LIST -> list();
+                case GET -> {
+                    if (images.isEmpty()) {
+                        upload();
+                    } else {
+                        get(images.get(ThreadLocalRandom.current().nextInt(images.size())));
+                    }
+                }
+                case DELETE -> {
+                    if (deleteHashes.isEmpty()) {
+                        list();
+                    } else {
+                        delete(deleteHashes.keySet().iterator().next());
+                    }
+                }
+            }
+        }
+
+        /**
+         * Registers a new user and switches this client to it; the next step logs it in.
+         */
+        private void register() throws InterruptedException {
+            String candidate = "load" + sequence.incrementAndGet();
+            String body = "{\"username\":\"" + candidate + "\",\"password\":\"" + PASSWORD + "\",\"firstname\":\"Load\","
+                    + "\"lastname\":\"Test\",\"email\":\"" + candidate + "@example.com\"}";
+            JsonNode response = send(Operation.REGISTER, json("/api/auth/register", body));
+            if (response != null) {
+                username = candidate;
+                token = null;
+                images.clear();
+                deleteHashes.clear();
+            }
+        }
+
+        private void login() throws InterruptedException {
+            String body = "{\"username\":\"" + username + "\",\"password\":\"" + PASSWORD + "\"}";
+            JsonNode response = send(Operation.LOGIN, json("/api/auth/login", body));
+            if (response != null) {
+                token = response.path("token").asText();
+            }
+        }
+
+        private void upload() throws InterruptedException {
+            int size = (int) Math.max(1, Math.min(MAX_UPLOAD, uploadSize.sample(ThreadLocalRandom.current())));
+            String boundary = "load-" + Thread.currentThread().getId();
+            byte[] head = ("--" + boundary + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"photo.jpg\"\r\n"
+                    + "Content-Type: image/jpeg\r\n\r\n" + sequence.incrementAndGet() + "-").getBytes(StandardCharsets.UTF_8);
+            byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+            HttpRequest request = authorized("/api/images/upload")
+                    .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                    .POST(HttpRequest.BodyPublishers.concat(
+                            HttpRequest.BodyPublishers.ofByteArray(head),
+                            HttpRequest.BodyPublishers.ofByteArray(content, 0, size),
+                            HttpRequest.BodyPublishers.ofByteArray(tail)))
+                    .build();
+            JsonNode response = send(Operation.UPLOAD, request);
+            if (response != null && response.has("id")) {
+                images.add(response.path("id").asLong());
+            }
+        }
+
+        private void list() throws InterruptedException {
+            JsonNode response = send(Operation.LIST, authorized("/api/images/all?size=50").GET().build());
+            if (response != null) {
+                for (JsonNode image : response.path("images")) {
+                    deleteHashes.put(image.path("id").asLong(), image.path("deleteHash").asText());
+                }
+            }
+        }
+
+        private void get(long id) throws InterruptedException {
+            JsonNode response = send(Operation.GET, authorized("/api/images/" + id).GET().build());
+            if (response != null) {
+                deleteHashes.put(id, response.path("deleteHash").asText());
+            }
+        }
+
+        private void delete(long id) throws InterruptedException {
+            String deleteHash = deleteHashes.remove(id);
+            JsonNode response = send(Operation.DELETE, authorized("/api/images/delete/" + deleteHash).DELETE().build());
+            if (response != null) {
+                images.remove(Long.valueOf(id));
+            }
+        }
+
+        private HttpRequest json(String path, String body) {
+            return HttpRequest.newBuilder(URI.create(target + path))
+                    .timeout(Duration.ofSeconds(60))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+        }
+
+        private HttpRequest.Builder authorized(String path) {
+            return HttpRequest.newBuilder(URI.create(target + path))
+                    .timeout(Duration.ofSeconds(60))
+                    .header("Authorization", "Bearer " + token);
+        }
+
+        /**
+         * Sends a request and records it if it completes within the measurement window.
+         *
+         * @return the parsed body of a 2xx response, or null
+         */
+        private JsonNode send(Operation operation, HttpRequest request) throws InterruptedException {
+            long start = System.nanoTime();
+            HttpResponse<byte[]> response;
+            try {
+                response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            } catch (IOException e) {
+                if (measuring(System.nanoTime())) {
+                    stats.get(operation).failures.increment();
+                }
+                return null;
+            }
+            long end = System.nanoTime();
+            int status = response.statusCode();
+            if (measuring(end)) {
+                Stats endpoint = stats.get(operation);
+                endpoint.latencyMicros.recordValue(TimeUnit.NANOSECONDS.toMicros(end - start));
+                (status < 300 ? endpoint.success : status < 500 ? endpoint.clientErrors : endpoint.serverErrors).increment();
+            }
+            if (status == 401) {
+                // The token expired; log in again.
+                token = null;
+            }
+            if (status >= 300) {
+                return null;
+            }
+            try {
+                return response.body().length == 0 ? objectMapper.nullNode() : objectMapper.readTree(response.body());
+            } catch (IOException e) {
+                return objectMapper.nullNode();
+            }
+        }
+
+        private boolean measuring(long now) {
+            return now >= measureFrom && now < measureUntil;
+        }
+    }
+}
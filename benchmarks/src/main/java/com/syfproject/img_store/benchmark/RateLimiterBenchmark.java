@@ -0,0 +1,49 @@
+package com.syfproject.img_store.benchmark;
+
+import com.syfproject.img_store.service.ratelimit.RateLimiter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the rate limiter's acquire path under concurrency: every thread on one user's bucket
+ * (worst-case contention on a single compare-and-set), or spread over many users so that only the
+ * global bucket is shared. Rates are set high enough that requests are allowed, which is the path
+ * every served request pays for.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class RateLimiterBenchmark {
+
+    @Param({"1", "10000"})
+    public int users;
+
+    /**
+     * user: per-user buckets only. both: per-user buckets and the global bucket.
+     */
+    @Param({"user", "both"})
+    public String limits;
+
+    private RateLimiter limiter;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        limiter = new RateLimiter(1e9, 1_000_000, "both".equals(limits) ? 1e9 : 0, 1_000_000, 100_000);
+        keys = new String[users];
+        for (int i = 0; i < users; i++) {
+            keys[i] = Integer.toString(i);
+        }
+    }
+
+    @Benchmark
+    public RateLimiter.Decision tryAcquire() {
+        return limiter.tryAcquire(keys[ThreadLocalRandom.current().nextInt(keys.length)]);
+    }
+}
@@ -0,0 +1,107 @@
+package com.syfproject.img_store.benchmark;
+
+import com.syfproject.img_store.domain.entity.User;
+import com.syfproject.img_store.security.JwtTokenProvider;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test of POST /api/images/upload over HTTP against a local Imgur stub with a fixed latency,
+ * comparing the blocking Imgur client with the reactive one on a server with few request threads.
+ * Each benchmark thread is a client sending one upload at a time, with distinct content so none is
+ * deduplicated. The throughput shows how many uploads the node completes; the most uploads in flight
+ * at Imgur at once is printed after each iteration. The Imgur connection pool, bulkhead and rate
+ * limits are raised out of the way, so request threads are what caps the blocking mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@Threads(200)
+public class UploadConcurrencyBenchmark {
+
+    @Param({"blocking", "reactive"})
+    public String mode;
+
+    @Param({"50"})
+    public int requestThreads;
+
+    @Param({"1000"})
+    public int imgurLatencyMillis;
+
+    private final AtomicLong uploads = new AtomicLong();
+    private ImgurStub imgur;
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private URI uploadUri;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        imgur = new ImgurStub(Duration.ofMillis(imgurLatencyMillis));
+        context = BenchmarkContext.startServer(
+                "imgur.api-url=" + imgur.apiUrl(),
+                "imgur.client.mode=" + mode,
+                "server.tomcat.threads.max=" + requestThreads,
+                "imgur.http.max-connections=1000",
+                "imgur.http.max-connections-per-route=1000",
+                "imgur.bulkhead.max-concurrent=1000",
+                "imgur.client.max-in-flight=1000",
+                "ratelimit.upload.user.rate=0",
+                "ratelimit.upload.global.rate=0",
+                "thumbnails.sizes=");
+        User user = BenchmarkContext.seedUser(context, "uploadbench", 0);
+        token = context.getBean(JwtTokenProvider.class).createToken(user.getUsername(), user.getId(), List.of("USER"));
+        uploadUri = URI.create("http://127.0.0.1:" + BenchmarkContext.port(context) + "/api/images/upload");
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPeak() {
+        imgur.resetMaxInFlight();
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportPeak() {
+        System.out.println("  max uploads in flight at Imgur: " + imgur.maxInFlight());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        imgur.close();
+    }
+
+    @Benchmark
+    public int upload() throws IOException, InterruptedException {
+        String boundary = "benchmark-boundary";
+        byte[] body = ("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"photo.jpg\"\r\n"
+                + "Content-Type: image/jpeg\r\n\r\n"
+                + "image " + uploads.incrementAndGet() + "\r\n"
+                + "--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+        HttpRequest request = HttpRequest.newBuilder(uploadUri)
+                .header("Authorization", "Bearer " + token)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Upload failed with status " + response.statusCode());
+        }
+        return response.statusCode();
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Configuration for the worker pools used by asynchronous and batch uploads, upload processing and
+ * thumbnail generation.
+ */
+package com.syfproject.img_store.config;
+
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class AsyncUploadConfig {
+
+    @Value("${upload.async.pool-size:4}")
+    private int poolSize;
+
+    @Value("${upload.async.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${upload.batch.concurrency:8}")
+    private int batchConcurrency;
+
+    @Value("${upload.batch.queue-capacity:500}")
+    private int batchQueueCapacity;
+
+    @Value("${upload.processing.pool-size:4}")
+    private int processingPoolSize;
+
+    @Value("${upload.processing.queue-capacity:200}")
+    private int processingQueueCapacity;
+
+    @Value("${thumbnails.pool-size:2}")
+    private int thumbnailPoolSize;
+
+    @Value("${thumbnails.queue-capacity:200}")
+    private int thumbnailQueueCapacity;
+
+    /**
+     * Creates a bounded executor for upload jobs. Submissions beyond the queue capacity are rejected
+     * so callers can report the backlog instead of queueing without limit.
+     *
+     * @return the upload job executor.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor uploadJobExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("upload-job-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        return executor;
+    }
+
+    /**
+     * Creates the executor that fans batch uploads out to Imgur. Its pool size caps the number of
+     * concurrent Imgur pushes across all batches; when the queue is full the submitting request
+     * thread runs the upload itself, which throttles new batches.
+     *
+     * @return the batch upload executor.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor imgurBatchExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(batchConcurrency);
+        executor.setMaxPoolSize(batchConcurrency);
+        executor.setQueueCapacity(batchQueueCapacity);
+        executor.setThreadNamePrefix("imgur-batch-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+
+    /**
+     * Creates the executor that optimizes uploads and saves them once the storage backend has stored
+     * them, so that neither request threads nor the Imgur response threads run image coding, JPA or
+     * thumbnail work. When the queue is full the submitting thread runs the task itself, which
+     * throttles new uploads rather than dropping stored images.
+     *
+     * @return the upload processing executor.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor uploadProcessingExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(processingPoolSize);
+        executor.setMaxPoolSize(processingPoolSize);
+        executor.setQueueCapacity(processingQueueCapacity);
+        executor.setThreadNamePrefix("upload-processing-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+
+    /**
+     * Publishes the upload processing executor's pool and queue metrics, tagged name=upload-processing.
+     *
+     * @param uploadProcessingExecutor the upload processing executor.
+     * @return the metrics binder.
+     */
+    @Bean
+    public MeterBinder uploadProcessingExecutorMetrics(
+            @Qualifier("uploadProcessingExecutor") ThreadPoolTaskExecutor uploadProcessingExecutor) {
+        return registry -> new ExecutorServiceMetrics(uploadProcessingExecutor.getThreadPoolExecutor(),
+                "upload-processing", Tags.empty()).bindTo(registry);
+    }
+
+    /**
+     * Creates the executor that decodes uploads and renders thumbnails, keeping that CPU-heavy work off
+     * request threads. Submissions beyond the queue capacity are rejected and the thumbnails skipped.
+     *
+     * @return the thumbnail executor.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor thumbnailExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(thumbnailPoolSize);
+        executor.setMaxPoolSize(thumbnailPoolSize);
+        executor.setQueueCapacity(thumbnailQueueCapacity);
+        executor.setThreadNamePrefix("thumbnail-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        return executor;
+    }
+}
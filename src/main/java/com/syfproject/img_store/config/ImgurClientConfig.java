@@ -0,0 +1,189 @@
+/**
+ * Configuration for the HTTP clients used to call the Imgur API: a pooled blocking client, and a
+ * non-blocking client used when imgur.client.mode=reactive.
+ */
+package com.syfproject.img_store.config;
+
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class ImgurClientConfig {
+
+    @Value("${imgur.http.max-connections:50}")
+    private int maxConnections;
+
+    @Value("${imgur.http.max-connections-per-route:20}")
+    private int maxConnectionsPerRoute;
+
+    @Value("${imgur.http.connect-timeout:5s}")
+    private Duration connectTimeout;
+
+    @Value("${imgur.http.read-timeout:30s}")
+    private Duration readTimeout;
+
+    @Value("${imgur.http.connection-request-timeout:5s}")
+    private Duration connectionRequestTimeout;
+
+    @Value("${imgur.http.keep-alive:30s}")
+    private Duration keepAlive;
+
+    @Value("${imgur.http.idle-eviction:60s}")
+    private Duration idleEviction;
+
+    @Value("${imgur.http.async-threads:4}")
+    private int asyncThreads;
+
+    @Value("${imgur.bulkhead.max-concurrent:20}")
+    private int bulkheadMaxConcurrent;
+
+    /**
+     * Creates the connection pool shared by all Imgur calls.
+     *
+     * @return the pooling connection manager.
+     */
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager imgurConnectionManager() {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+    }
+
+    /**
+     * Creates the HTTP client on top of the pool, with keep-alive and idle connection eviction.
+     *
+     * @param imgurConnectionManager the connection pool.
+     * @return the HTTP client.
+     */
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient imgurHttpClient(PoolingHttpClientConnectionManager imgurConnectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(imgurConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(connectionRequestTimeout))
+                        .setResponseTimeout(Timeout.of(readTimeout))
+                        // Used when Imgur does not send a Keep-Alive header of its own.
+                        .setConnectionKeepAlive(TimeValue.of(keepAlive))
+                        .build())
+                // ImgurClientService decides what to retry; the client's own retries would multiply its attempts.
+                .disableAutomaticRetries()
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(idleEviction))
+                .build();
+    }
+
+    /**
+     * Creates the RestTemplate used by ImgurClientService.
+     *
+     * @param imgurHttpClient the pooled HTTP client.
+     * @return a RestTemplate backed by the pooled client.
+     */
+    @Bean
+    public RestTemplate imgurRestTemplate(CloseableHttpClient imgurHttpClient) {
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(imgurHttpClient));
+    }
+
+    /**
+     * Publishes pool statistics (leased, pending, available, max) as metrics.
+     *
+     * @param imgurConnectionManager the connection pool.
+     * @return a MeterBinder for the pool.
+     */
+    @Bean
+    public MeterBinder imgurConnectionPoolMetrics(PoolingHttpClientConnectionManager imgurConnectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(imgurConnectionManager, "imgur", Tags.empty());
+    }
+
+    /**
+     * Creates the executor blocking Imgur uploads and deletes run on when they are started
+     * asynchronously. It has one thread per bulkhead slot and no queue: a call beyond that runs on the
+     * caller, where the bulkhead makes it wait or rejects it as it would any call over the limit.
+     *
+     * @return the executor for blocking Imgur calls.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "imgur.client.mode", havingValue = "blocking", matchIfMissing = true)
+    public ThreadPoolTaskExecutor imgurBlockingExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(bulkheadMaxConcurrent);
+        executor.setMaxPoolSize(bulkheadMaxConcurrent);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("imgur-blocking-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+
+    /**
+     * Creates the executor the non-blocking client completes responses on. Work chained onto an Imgur
+     * response, such as saving the uploaded image, runs here too, so the pool is small and never
+     * holds a thread while a call is waiting on Imgur.
+     *
+     * @return the executor for Imgur responses.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "imgur.client.mode", havingValue = "reactive")
+    public ThreadPoolTaskExecutor imgurAsyncExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(asyncThreads);
+        executor.setMaxPoolSize(asyncThreads);
+        executor.setThreadNamePrefix("imgur-async-");
+        return executor;
+    }
+
+    /**
+     * Creates the non-blocking HTTP client used by ReactiveImgurClientService. It multiplexes calls
+     * over HTTP/2 where Imgur offers it and keeps its own connection pool.
+     *
+     * @param imgurAsyncExecutor the executor responses are completed on.
+     * @return the HTTP client.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "imgur.client.mode", havingValue = "reactive")
+    public HttpClient imgurAsyncHttpClient(@Qualifier("imgurAsyncExecutor") ThreadPoolTaskExecutor imgurAsyncExecutor) {
+        return HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .executor(imgurAsyncExecutor)
+                .build();
+    }
+
+    /**
+     * Publishes the Imgur response executor's pool and queue metrics, tagged name=imgur-async.
+     *
+     * @param imgurAsyncExecutor the executor responses are completed on.
+     * @return the metrics binder.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "imgur.client.mode", havingValue = "reactive")
+    public MeterBinder imgurAsyncExecutorMetrics(@Qualifier("imgurAsyncExecutor") ThreadPoolTaskExecutor imgurAsyncExecutor) {
+        return registry -> new ExecutorServiceMetrics(imgurAsyncExecutor.getThreadPoolExecutor(),
+                "imgur-async", Tags.empty()).bindTo(registry);
+    }
+}
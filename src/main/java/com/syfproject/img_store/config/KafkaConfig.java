@@ -1,31 +1,78 @@
 /**
- * Configuration for Kafka producer.
+ * Configuration for Kafka producer and consumers.
  */
 package com.syfproject.img_store.config;
 
+import com.syfproject.img_store.service.events.ImageEvent;
+import com.syfproject.img_store.service.events.ImageEventDeserializer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.*;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+import org.springframework.util.unit.DataSize;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 
+@EnableKafka
 @Configuration
 public class KafkaConfig {
 
+    @Value("${kafka.bootstrap-servers:localhost:9092}")
+    private String bootstrapServers;
+
+    @Value("${kafka.producer.max-block:5s}")
+    private Duration maxBlock;
+
+    @Value("${kafka.producer.request-timeout:10s}")
+    private Duration requestTimeout;
+
+    @Value("${kafka.producer.delivery-timeout:30s}")
+    private Duration deliveryTimeout;
+
+    @Value("${kafka.producer.linger:5ms}")
+    private Duration linger;
+
+    @Value("${kafka.producer.batch-size:64KB}")
+    private DataSize batchSize;
+
+    @Value("${kafka.producer.compression-type:lz4}")
+    private String compressionType;
+
+    @Value("${kafka.producer.enable-idempotence:true}")
+    private boolean enableIdempotence;
+
     /**
-     * Configures and returns a Kafka ProducerFactory.
+     * Configures and returns a Kafka ProducerFactory. Events are sent from the background
+     * publisher thread, so the timeouts only bound how long it waits before retrying.
+     * Lingering lets events from many uploads share a compressed batch; idempotence keeps
+     * producer retries from duplicating or reordering a user's events.
      *
      * @return the ProducerFactory for Kafka.
      */
     @Bean
-    public ProducerFactory<String, String> producerFactory() {
+    public ProducerFactory<String, byte[]> producerFactory() {
         Map<String, Object> configProps = new HashMap<>();
-        configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+        configProps.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, (int) maxBlock.toMillis());
+        configProps.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, (int) requestTimeout.toMillis());
+        configProps.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, (int) deliveryTimeout.toMillis());
+        configProps.put(ProducerConfig.LINGER_MS_CONFIG, (int) linger.toMillis());
+        configProps.put(ProducerConfig.BATCH_SIZE_CONFIG, (int) batchSize.toBytes());
+        configProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, enableIdempotence);
+        configProps.put(ProducerConfig.ACKS_CONFIG, enableIdempotence ? "all" : "1");
         return new DefaultKafkaProducerFactory<>(configProps);
     }
 
@@ -35,7 +82,37 @@ public class KafkaConfig {
      * @return a KafkaTemplate instance.
      */
     @Bean
-    public KafkaTemplate<String, String> kafkaTemplate() {
+    public KafkaTemplate<String, byte[]> kafkaTemplate() {
         return new KafkaTemplate<>(producerFactory());
     }
+
+    /**
+     * Configures the consumer factory for image events. Records that cannot be deserialized
+     * reach listeners with a null value instead of stopping the consumer.
+     *
+     * @return the ConsumerFactory for image events.
+     */
+    @Bean
+    public ConsumerFactory<String, ImageEvent> imageEventConsumerFactory() {
+        Map<String, Object> configProps = new HashMap<>();
+        configProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        configProps.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        configProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
+        configProps.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, ImageEventDeserializer.class);
+        configProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        return new DefaultKafkaConsumerFactory<>(configProps);
+    }
+
+    /**
+     * Creates the listener container factory used by image event consumers, which receive records in batches.
+     *
+     * @return the listener container factory.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, ImageEvent> imageEventListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, ImageEvent> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(imageEventConsumerFactory());
+        factory.setBatchListener(true);
+        return factory;
+    }
 }
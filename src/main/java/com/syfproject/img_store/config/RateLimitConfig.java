@@ -0,0 +1,84 @@
+/**
+ * Configuration of the rate limits on endpoints that consume the shared Imgur quota.
+ */
+package com.syfproject.img_store.config;
+
+import com.syfproject.img_store.security.RateLimitFilter;
+import com.syfproject.img_store.service.ratelimit.RateLimiter;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+@Configuration
+public class RateLimitConfig {
+
+    @Value("${ratelimit.upload.user.rate:1}")
+    private double uploadUserRate;
+
+    @Value("${ratelimit.upload.user.burst:10}")
+    private int uploadUserBurst;
+
+    @Value("${ratelimit.upload.global.rate:10}")
+    private double uploadGlobalRate;
+
+    @Value("${ratelimit.upload.global.burst:50}")
+    private int uploadGlobalBurst;
+
+    @Value("${ratelimit.batch.user.rate:0.1}")
+    private double batchUserRate;
+
+    @Value("${ratelimit.batch.user.burst:2}")
+    private int batchUserBurst;
+
+    @Value("${ratelimit.batch.global.rate:1}")
+    private double batchGlobalRate;
+
+    @Value("${ratelimit.batch.global.burst:5}")
+    private int batchGlobalBurst;
+
+    @Value("${ratelimit.delete.user.rate:2}")
+    private double deleteUserRate;
+
+    @Value("${ratelimit.delete.user.burst:20}")
+    private int deleteUserBurst;
+
+    @Value("${ratelimit.delete.global.rate:20}")
+    private double deleteGlobalRate;
+
+    @Value("${ratelimit.delete.global.burst:100}")
+    private int deleteGlobalBurst;
+
+    @Value("${ratelimit.max-users:100000}")
+    private long maxUsers;
+
+    /**
+     * Creates the limiter for single uploads. Batch uploads are charged against it once per file.
+     * Rates are permits per second; a rate of 0 disables that limit.
+     *
+     * @return the upload rate limiter.
+     */
+    @Bean
+    public RateLimiter uploadRateLimiter() {
+        return new RateLimiter(uploadUserRate, uploadUserBurst, uploadGlobalRate, uploadGlobalBurst, maxUsers);
+    }
+
+    /**
+     * Creates the filter enforcing per-user and global token buckets on upload, batch upload and
+     * delete. Rates are permits per second; a rate of 0 disables that limit.
+     *
+     * @param uploadRateLimiter the limiter for single uploads
+     * @return the rate limit filter.
+     */
+    @Bean
+    public RateLimitFilter rateLimitFilter(@Qualifier("uploadRateLimiter") RateLimiter uploadRateLimiter) {
+        return new RateLimitFilter(List.of(
+                new RateLimitFilter.Rule("upload", "POST", "/api/images/upload", uploadRateLimiter),
+                new RateLimitFilter.Rule("batch", "POST", "/api/images/upload/batch",
+                        new RateLimiter(batchUserRate, batchUserBurst, batchGlobalRate, batchGlobalBurst, maxUsers)),
+                new RateLimitFilter.Rule("delete", "DELETE", "/api/images/delete/*",
+                        new RateLimiter(deleteUserRate, deleteUserBurst, deleteGlobalRate, deleteGlobalBurst, maxUsers))));
+    }
+}
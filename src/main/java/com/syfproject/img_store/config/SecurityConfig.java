@@ -3,8 +3,13 @@
  */
 package com.syfproject.img_store.config;
 
+import com.syfproject.img_store.security.RehashingBCryptPasswordEncoder;
 import com.syfproject.img_store.service.CustomUserDetailsService;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -15,13 +20,11 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityCustomizer;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
-import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
-import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.security.web.SecurityFilterChain;
 
-import javax.crypto.spec.SecretKeySpec;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 @EnableWebSecurity
@@ -29,8 +32,14 @@ public class SecurityConfig {
 
     private final CustomUserDetailsService customUserDetailsService;
 
-    @Value("${jwt.secret}")
-    private String jwtSecret;
+    @Value("${security.bcrypt.strength:10}")
+    private int bcryptStrength;
+
+    @Value("${security.password-hashing.pool-size:2}")
+    private int passwordHashingPoolSize;
+
+    @Value("${security.password-hashing.queue-capacity:50}")
+    private int passwordHashingQueueCapacity;
 
     @Autowired
     public SecurityConfig(CustomUserDetailsService customUserDetailsService) {
@@ -49,7 +58,7 @@ public class SecurityConfig {
         http
                 .csrf(AbstractHttpConfigurer::disable)
                 .authorizeHttpRequests(auth -> auth
-                        .requestMatchers("/api/auth/register", "/api/auth/login", "/h2-console/**").permitAll()
+                        .requestMatchers("/api/auth/register", "/api/auth/login", "/api/auth/refresh", "/h2-console/**").permitAll()
                         .anyRequest().authenticated()
                 )
                 .oauth2ResourceServer(oauth2 -> oauth2.jwt(Customizer.withDefaults()));
@@ -67,34 +76,56 @@ public class SecurityConfig {
     }
 
     /**
-     * Provides a BCryptPasswordEncoder.
+     * Provides a BCrypt encoder with the configured cost. Hashes made with a lower or higher cost are
+     * rehashed on the user's next successful login.
      *
      * @return a PasswordEncoder.
      */
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new RehashingBCryptPasswordEncoder(bcryptStrength);
     }
 
     /**
-     * Exposes the AuthenticationManager.
+     * Creates the executor that runs password hashing and verification for login and registration,
+     * so a burst of logins cannot occupy every request thread. Its pool size caps the cores spent on
+     * BCrypt; submissions beyond the queue capacity are rejected and answered with 503.
      *
-     * @param configuration the AuthenticationConfiguration.
-     * @return the AuthenticationManager.
-     * @throws Exception if an error occurs.
+     * @return the password hashing executor.
      */
     @Bean
-    public AuthenticationManager authenticationManager(AuthenticationConfiguration configuration) throws Exception {
-        return configuration.getAuthenticationManager();
+    public ThreadPoolTaskExecutor passwordHashingExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(passwordHashingPoolSize);
+        executor.setMaxPoolSize(passwordHashingPoolSize);
+        executor.setQueueCapacity(passwordHashingQueueCapacity);
+        executor.setThreadNamePrefix("password-hashing-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+
+    /**
+     * Publishes the password hashing executor's pool and queue metrics, tagged name=password-hashing.
+     *
+     * @param passwordHashingExecutor the password hashing executor.
+     * @return the metrics binder.
+     */
+    @Bean
+    public MeterBinder passwordHashingExecutorMetrics(
+            @Qualifier("passwordHashingExecutor") ThreadPoolTaskExecutor passwordHashingExecutor) {
+        return registry -> new ExecutorServiceMetrics(passwordHashingExecutor.getThreadPoolExecutor(),
+                "password-hashing", Tags.empty()).bindTo(registry);
     }
 
     /**
-     * Configures the JwtDecoder using the provided secret.
+     * Exposes the AuthenticationManager.
      *
-     * @return a JwtDecoder.
+     * @param configuration the AuthenticationConfiguration.
+     * @return the AuthenticationManager.
+     * @throws Exception if an error occurs.
      */
     @Bean
-    public JwtDecoder jwtDecoder() {
-        return NimbusJwtDecoder.withSecretKey(new SecretKeySpec(jwtSecret.getBytes(), "HMACSHA256")).build();
+    public AuthenticationManager authenticationManager(AuthenticationConfiguration configuration) throws Exception {
+        return configuration.getAuthenticationManager();
     }
 }
@@ -6,84 +6,179 @@ package com.syfproject.img_store.controller;
 import com.syfproject.img_store.domain.entity.User;
 import com.syfproject.img_store.domain.repository.UserRepository;
 import com.syfproject.img_store.dto.LoginRequest;
+import com.syfproject.img_store.dto.RefreshRequest;
 import com.syfproject.img_store.security.JwtTokenProvider;
+import com.syfproject.img_store.security.UserPrincipal;
+import com.syfproject.img_store.service.RefreshTokenService;
+import com.syfproject.img_store.service.UserLookupCache;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.*;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
 import java.util.Collections;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
 @Slf4j
 @RestController
 @RequestMapping("/api/auth")
 public class AuthController {
 
+    /** The unique index on {@code users.username}, see {@link User}. */
+    private static final String USERNAME_CONSTRAINT = "uk_users_username";
+
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final AuthenticationManager authenticationManager;
     private final JwtTokenProvider jwtTokenProvider;
+    private final UserLookupCache userLookupCache;
+    private final RefreshTokenService refreshTokenService;
+    private final Executor passwordHashingExecutor;
+    private final Duration retryAfter;
 
     @Autowired
     public AuthController(UserRepository userRepository,
                           PasswordEncoder passwordEncoder,
                           AuthenticationManager authenticationManager,
-                          JwtTokenProvider jwtTokenProvider) {
+                          JwtTokenProvider jwtTokenProvider,
+                          UserLookupCache userLookupCache,
+                          RefreshTokenService refreshTokenService,
+                          @Qualifier("passwordHashingExecutor") Executor passwordHashingExecutor,
+                          @Value("${security.password-hashing.retry-after:1s}") Duration retryAfter) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.authenticationManager = authenticationManager;
         this.jwtTokenProvider = jwtTokenProvider;
+        this.userLookupCache = userLookupCache;
+        this.refreshTokenService = refreshTokenService;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+        this.retryAfter = retryAfter;
     }
 
     /**
-     * Registers a new user.
+     * Registers a new user. The password is hashed on the password hashing executor.
      *
      * @param user the user data from the request body
-     * @return ResponseEntity with registration result
+     * @return ResponseEntity with registration result, or 503 if the password hashing queue is full
      */
     @PostMapping("/register")
-    public ResponseEntity<?> registerUser(@Valid @RequestBody User user) {
+    public CompletableFuture<ResponseEntity<?>> registerUser(@Valid @RequestBody User user) {
+        return onPasswordHashingExecutor(() -> register(user));
+    }
+
+    /**
+     * Authenticates a user and returns a JWT token and a refresh token. The password is verified on
+     * the password hashing executor.
+     *
+     * @param loginRequest the login request containing username and password
+     * @return ResponseEntity with the tokens or error message, or 503 if the password hashing queue is full
+     */
+    @PostMapping("/login")
+    public CompletableFuture<ResponseEntity<?>> login(@RequestBody LoginRequest loginRequest) {
+        return onPasswordHashingExecutor(() -> authenticate(loginRequest));
+    }
+
+    /**
+     * Exchanges a refresh token for a new access token and a new refresh token. The presented
+     * refresh token cannot be used again.
+     *
+     * @param refreshRequest the request containing the refresh token
+     * @return ResponseEntity with the new tokens, or 401 if the refresh token is not valid
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refresh(@RequestBody RefreshRequest refreshRequest) {
+        return refreshTokenService.rotate(refreshRequest.getRefreshToken())
+                .<ResponseEntity<?>>map(rotation -> ResponseEntity.ok(Map.of(
+                        "token", jwtTokenProvider.createToken(rotation.username(), rotation.userId(),
+                                Collections.singletonList("USER")),
+                        "refreshToken", rotation.refreshToken())))
+                .orElseGet(() -> {
+                    log.warn("Rejected refresh token");
+                    return ResponseEntity.status(401).body("Invalid refresh token");
+                });
+    }
+
+    /**
+     * Tells whether a constraint violation was raised by the named constraint. The name is matched in
+     * the constraint name reported by Hibernate or, when the dialect does not extract one, in the
+     * database's message.
+     */
+    private static boolean violates(DataIntegrityViolationException e, String constraint) {
+        String reported = e.getCause() instanceof ConstraintViolationException violation ? violation.getConstraintName() : null;
+        if (reported == null) {
+            reported = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+        }
+        return reported != null && reported.toLowerCase(Locale.ROOT).contains(constraint);
+    }
+
+    private CompletableFuture<ResponseEntity<?>> onPasswordHashingExecutor(Supplier<ResponseEntity<?>> work) {
+        try {
+            return CompletableFuture.supplyAsync(work, passwordHashingExecutor);
+        } catch (RejectedExecutionException e) {
+            log.warn("Password hashing queue is full, rejecting request");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, retryAfter.toSeconds())))
+                    .body(Map.of("error", "Too many login requests, try again later")));
+        }
+    }
+
+    private ResponseEntity<?> register(User user) {
         log.info("Attempting to register user: {}", user.getUsername());
         try {
-            if (userRepository.findByUsername(user.getUsername()).isPresent()){
+            if (userLookupCache.find(user.getUsername()).isPresent()){
                 log.warn("Registration failed: Username {} is already taken", user.getUsername());
                 return ResponseEntity.badRequest().body("Username is already taken");
             }
             // Encode the password before saving.
             user.setPassword(passwordEncoder.encode(user.getPassword()));
             userRepository.save(user);
+            // Drop the cached "unknown username" entry left by the duplicate check.
+            userLookupCache.invalidate(user.getUsername());
             log.info("User {} registered successfully", user.getUsername());
             return ResponseEntity.ok("User registered successfully");
+        } catch (DataIntegrityViolationException e) {
+            if (!violates(e, USERNAME_CONSTRAINT)) {
+                throw e;
+            }
+            // A concurrent registration won the race past the check above; the unique index rejected this one.
+            log.warn("Registration failed: Username {} is already taken", user.getUsername());
+            userLookupCache.invalidate(user.getUsername());
+            return ResponseEntity.badRequest().body("Username is already taken");
         } catch(Exception e){
             log.error("Unexpected error during registration", e);
             return ResponseEntity.internalServerError().body("Internal server error occurred registering a user");
         }
     }
 
-    /**
-     * Authenticates a user and returns a JWT token.
-     *
-     * @param loginRequest the login request containing username and password
-     * @return ResponseEntity with JWT token or error message
-     */
-    @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody LoginRequest loginRequest) {
+    private ResponseEntity<?> authenticate(LoginRequest loginRequest) {
         log.info("Attempting login for user: {}", loginRequest.getUsername());
         try {
             Authentication authentication = authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword()));
-            SecurityContextHolder.getContext().setAuthentication(authentication);
-            String token = jwtTokenProvider.createToken(loginRequest.getUsername(),
+            Long userId = authentication.getPrincipal() instanceof UserPrincipal principal ? principal.getId() : null;
+            String token = jwtTokenProvider.createToken(loginRequest.getUsername(), userId,
                     Collections.singletonList("USER"));
+            String refreshToken = refreshTokenService.issue(userId, loginRequest.getUsername());
             log.info("User {} authenticated successfully", loginRequest.getUsername());
-            return ResponseEntity.ok(Map.of("token", token));
+            return ResponseEntity.ok(Map.of("token", token, "refreshToken", refreshToken));
         } catch (AuthenticationException e) {
             log.warn("Authentication failed for user: {}", loginRequest.getUsername());
             return ResponseEntity.status(401).body("Invalid username or password");
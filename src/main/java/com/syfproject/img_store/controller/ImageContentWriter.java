@@ -0,0 +1,145 @@
+package com.syfproject.img_store.controller;
+
+import com.syfproject.img_store.service.storage.ImageContent;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Writes a locally stored image to the response without copying it through the heap.
+ * When the connector supports sendfile, Tomcat hands the file to the kernel after the request completes;
+ * otherwise the file channel is transferred to the response stream.
+ * Supports conditional requests (ETag and Last-Modified) and byte ranges, including multipart/byteranges.
+ */
+final class ImageContentWriter {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private ImageContentWriter() {
+    }
+
+    static void write(ImageContent content, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        try (FileChannel file = FileChannel.open(content.file(), StandardOpenOption.READ)) {
+            long length = file.size();
+            String etag = content.etag() != null ? (content.weak() ? "W/" : "") + "\"" + content.etag() + "\"" : null;
+            long lastModified = Files.getLastModifiedTime(content.file()).toMillis();
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=31536000, immutable");
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            // Sets ETag and Last-Modified, and answers 304 or 412 from the If-* headers.
+            if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+                return;
+            }
+
+            MediaType contentType = MediaTypeFactory.getMediaType(content.filename()).orElse(MediaType.APPLICATION_OCTET_STREAM);
+            String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+            if (rangeHeader == null || !rangeApplies(request, etag, lastModified)) {
+                response.setContentType(contentType.toString());
+                writeRange(file, 0, length, request, response, content);
+                return;
+            }
+
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+                for (HttpRange range : ranges) {
+                    if (range.getRangeStart(length) >= length) {
+                        throw new IllegalArgumentException("Range starts beyond the end of the content");
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            if (ranges.size() == 1) {
+                long start = ranges.get(0).getRangeStart(length);
+                long end = ranges.get(0).getRangeEnd(length);
+                response.setContentType(contentType.toString());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+                writeRange(file, start, end + 1, request, response, content);
+                return;
+            }
+            writeMultipart(file, length, ranges, contentType, response);
+        }
+    }
+
+    /**
+     * If-Range makes a range request conditional: the range is only honoured when the validator still matches.
+     * Entity tags are compared strongly, so a weak ETag never matches.
+     */
+    private static boolean rangeApplies(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.startsWith("\"") && ifRange.equals(etag);
+        }
+        try {
+            long date = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return date != -1 && lastModified / 1000 <= date / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes bytes [start, end) of the file, through sendfile when the connector offers it.
+     */
+    private static void writeRange(FileChannel file, long start, long end, HttpServletRequest request,
+                                   HttpServletResponse response, ImageContent content) throws IOException {
+        response.setContentLengthLong(end - start);
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, content.file().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end);
+            return;
+        }
+        transfer(file, start, end, Channels.newChannel(response.getOutputStream()));
+    }
+
+    private static void writeMultipart(FileChannel file, long length, List<HttpRange> ranges, MediaType contentType,
+                                       HttpServletResponse response) throws IOException {
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        ServletOutputStream out = response.getOutputStream();
+        WritableByteChannel channel = Channels.newChannel(out);
+        for (HttpRange range : ranges) {
+            long start = range.getRangeStart(length);
+            long end = range.getRangeEnd(length);
+            out.write(("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": bytes " + start + "-" + end + "/" + length + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            transfer(file, start, end + 1, channel);
+        }
+        out.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void transfer(FileChannel file, long start, long end, WritableByteChannel out) throws IOException {
+        long position = start;
+        while (position < end) {
+            position += file.transferTo(position, end - position, out);
+        }
+    }
+}
@@ -1,48 +1,140 @@
 package com.syfproject.img_store.controller;
 
+import com.syfproject.img_store.security.JwtTokenProvider;
 import com.syfproject.img_store.service.ImageService;
+import com.syfproject.img_store.service.UploadJobService;
+import com.syfproject.img_store.service.ratelimit.RateLimiter;
+import com.syfproject.img_store.service.storage.ImageContent;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/images")
 public class ImageController {
 
     private final ImageService imageService;
+    private final UploadJobService uploadJobService;
+    private final RateLimiter uploadRateLimiter;
+    private final int maxBatchFiles;
 
     @Autowired
-    public ImageController(ImageService imageService) {
+    public ImageController(ImageService imageService,
+                           UploadJobService uploadJobService,
+                           @Qualifier("uploadRateLimiter") RateLimiter uploadRateLimiter,
+                           @Value("${ratelimit.batch.max-files:10}") int maxBatchFiles) {
         this.imageService = imageService;
+        this.uploadJobService = uploadJobService;
+        this.uploadRateLimiter = uploadRateLimiter;
+        // A batch larger than the upload burst could never be granted, so it is refused up front.
+        this.maxBatchFiles = Math.min(maxBatchFiles, uploadRateLimiter.maxPermits());
     }
 
     /**
      * Uploads an image and associates it with the authenticated user.
+     * With async=true the upload is queued and 202 Accepted is returned with a job id to poll.
+     * Otherwise the request thread is released while a non-blocking storage backend works.
      *
      * @param file the image file
+     * @param async whether to process the upload in the background
      * @param authentication the authenticated user
-     * @return ResponseEntity with upload result
+     * @return a future of the ResponseEntity with upload result, or the queued job when async
      */
     @PostMapping("/upload")
-    public ResponseEntity<Map> uploadImage(@RequestParam("file") MultipartFile file, Authentication authentication) {
+    public CompletableFuture<ResponseEntity<Map>> uploadImage(@RequestParam("file") MultipartFile file,
+                                                              @RequestParam(value = "async", defaultValue = "false") boolean async,
+                                                              Authentication authentication) {
         String username = authentication.getName();
-        return imageService.uploadImage(file, username);
+        if (async) {
+            return CompletableFuture.completedFuture(
+                    uploadJobService.submit(file, JwtTokenProvider.getUserId(authentication), username));
+        }
+        return imageService.uploadImageAsync(file, JwtTokenProvider.getUserId(authentication), username);
     }
 
     /**
-     * Retrieves all images for the authenticated user.
+     * Uploads several images in one request. Each file is reported individually.
+     * Every file takes a permit from the upload rate limit, so a batch costs as much as uploading its
+     * files one by one; a batch the limit cannot cover is rejected whole with 429.
      *
+     * @param files the image files
      * @param authentication the authenticated user
-     * @return ResponseEntity with user's images
+     * @return ResponseEntity with per-file upload results
+     */
+    @PostMapping("/upload/batch")
+    public ResponseEntity<Map> uploadImages(@RequestParam("files") List<MultipartFile> files,
+                                            Authentication authentication) {
+        String username = authentication.getName();
+        Long userId = JwtTokenProvider.getUserId(authentication);
+        if (files.size() > maxBatchFiles) {
+            return ResponseEntity.badRequest().body(Map.of("error", "At most " + maxBatchFiles + " files per batch"));
+        }
+        RateLimiter.Decision decision = uploadRateLimiter.tryAcquire(userId != null ? userId.toString() : username,
+                files.size());
+        if (!decision.allowed()) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(decision.retryAfterSeconds()))
+                    .body(Map.of("error", "Rate limit exceeded, try again later"));
+        }
+        return imageService.uploadImages(files, userId, username);
+    }
+
+    /**
+     * Retrieves the progress of an asynchronous upload job.
+     *
+     * @param id the job id
+     * @param authentication the authenticated user
+     * @return ResponseEntity with the job status
+     */
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<Map> getUploadJob(@PathVariable String id, Authentication authentication) {
+        String username = authentication.getName();
+        return uploadJobService.getJob(id, username);
+    }
+
+    /**
+     * Retrieves a page of images for the authenticated user.
+     *
+     * @param cursor the nextCursor token from the previous page
+     * @param size the page size
+     * @param fields comma-separated image fields to return, e.g. id,link
+     * @param authentication the authenticated user
+     * @return ResponseEntity with user's images and the next page cursor
      */
     @GetMapping("/all")
-    public ResponseEntity<Map> getUserImages(Authentication authentication) {
+    public ResponseEntity<Map> getUserImages(@RequestParam(value = "cursor", required = false) String cursor,
+                                             @RequestParam(value = "size", required = false) Integer size,
+                                             @RequestParam(value = "fields", required = false) String fields,
+                                             Authentication authentication) {
         String username = authentication.getName();
-        return imageService.getUserImages(username);
+        return imageService.getUserImages(JwtTokenProvider.getUserId(authentication), username, cursor, size, fields);
+    }
+
+    /**
+     * Retrieves the authenticated user's image count, total stored bytes and last upload time.
+     *
+     * @param authentication the authenticated user
+     * @return ResponseEntity with the usage stats
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<Map> getUsageStats(Authentication authentication) {
+        String username = authentication.getName();
+        return imageService.getUsageStats(JwtTokenProvider.getUserId(authentication), username);
     }
 
     /**
@@ -55,19 +147,73 @@ public class ImageController {
     @GetMapping("/{id}")
     public ResponseEntity<Map> getImageById(@PathVariable Long id, Authentication authentication) {
         String username = authentication.getName();
-        return imageService.getImageById(id, username);
+        return imageService.getImageById(id, JwtTokenProvider.getUserId(authentication), username);
+    }
+
+    /**
+     * Serves the bytes of an image associated with the authenticated user. Locally stored images are
+     * written straight from the file; images held by Imgur redirect to their link.
+     *
+     * @param id the image ID
+     * @param authentication the authenticated user
+     * @param request the HTTP request
+     * @param response the HTTP response the file is written to
+     * @return ResponseEntity with a redirect or error, or null once the file has been written
+     * @throws IOException if the file cannot be written to the response
+     */
+    @GetMapping("/{id}/content")
+    public ResponseEntity<Map> getImageContent(@PathVariable Long id, Authentication authentication,
+                                               HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String username = authentication.getName();
+        Optional<ImageContent> content = imageService.getImageContent(id, JwtTokenProvider.getUserId(authentication), username);
+        if (content.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Image not found"));
+        }
+        if (content.get().file() == null) {
+            return ResponseEntity.status(HttpStatus.FOUND).location(URI.create(content.get().link())).build();
+        }
+        ImageContentWriter.write(content.get(), request, response);
+        return null;
+    }
+
+    /**
+     * Serves a JPEG thumbnail of an image associated with the authenticated user. Thumbnails are rendered in
+     * the background after upload; until one is ready the request redirects to the full-size image.
+     *
+     * @param id the image ID
+     * @param size the longest edge of the thumbnail in pixels, one of the configured sizes
+     * @param authentication the authenticated user
+     * @param request the HTTP request
+     * @param response the HTTP response the thumbnail is written to
+     * @return ResponseEntity with a redirect or error, or null once the thumbnail has been written
+     * @throws IOException if the thumbnail cannot be written to the response
+     */
+    @GetMapping("/{id}/thumb/{size}")
+    public ResponseEntity<Map> getThumbnail(@PathVariable Long id, @PathVariable int size, Authentication authentication,
+                                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String username = authentication.getName();
+        Optional<ImageContent> thumbnail = imageService.getThumbnail(id, size, JwtTokenProvider.getUserId(authentication), username);
+        if (thumbnail.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Thumbnail not found"));
+        }
+        if (thumbnail.get().file() == null) {
+            return ResponseEntity.status(HttpStatus.FOUND).location(URI.create(thumbnail.get().link())).build();
+        }
+        ImageContentWriter.write(thumbnail.get(), request, response);
+        return null;
     }
 
     /**
      * Deletes an image by its delete hash if associated with the authenticated user.
+     * The request thread is released while a non-blocking storage backend works.
      *
      * @param deleteHash the delete hash for the image
      * @param authentication the authenticated user
-     * @return ResponseEntity with deletion result
+     * @return a future of the ResponseEntity with deletion result
      */
     @DeleteMapping("/delete/{deleteHash}")
-    public ResponseEntity<Map> deleteImage(@PathVariable String deleteHash, Authentication authentication) {
+    public CompletableFuture<ResponseEntity<Map>> deleteImage(@PathVariable String deleteHash, Authentication authentication) {
         String username = authentication.getName();
-        return imageService.deleteImage(deleteHash, username);
+        return imageService.deleteImageAsync(deleteHash, JwtTokenProvider.getUserId(authentication), username);
     }
 }
@@ -10,21 +10,37 @@ import lombok.*;
 @Setter
 @ToString
 @Entity
-@Table(name = "images")
+@Table(name = "images", indexes = {
+        // Every lookup is scoped to the owner: keyset pages and by-id reads, deletes, and dedup checks.
+        @Index(name = "idx_images_user_id", columnList = "user_id, id"),
+        @Index(name = "idx_images_user_delete_hash", columnList = "user_id, delete_hash"),
+        @Index(name = "idx_images_user_content_hash", columnList = "user_id, content_hash"),
+        @Index(name = "uk_images_imgur_id", columnList = "imgur_id", unique = true)
+})
 public class Image {
 
+    // Sequence ids (rather than IDENTITY) let Hibernate batch inserts of many images.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "images_seq")
+    @SequenceGenerator(name = "images_seq", sequenceName = "images_seq", allocationSize = 50)
     private Long id;
 
     private String imgurId;
     private String link;
     private String deleteHash;
     private String filename;
+    // Hex SHA-256 of the uploaded bytes, used to answer repeated uploads with the existing image.
+    @Column(length = 64)
+    private String contentHash;
 
-    @ManyToOne()
+    // Upload size in bytes, and the size actually stored after optimization.
+    private Long originalSize;
+    private Long optimizedSize;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     @JsonIgnore
+    @ToString.Exclude
     private User user;
 }
 
@@ -0,0 +1,24 @@
+package com.syfproject.img_store.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * The next Kafka offset a projection will apply for one topic partition. Stored in the same
+ * transaction as the projection, so a redelivered event is recognised and skipped.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@ToString
+@Entity
+@Table(name = "projection_offsets")
+public class ProjectionOffset {
+
+    /** Projection name, topic and partition, separated by colons. */
+    @Id
+    private String id;
+
+    private long nextOffset;
+}
@@ -0,0 +1,43 @@
+package com.syfproject.img_store.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * An issued refresh token. Only the SHA-256 of the opaque token is stored. Each refresh replaces
+ * the token with a new one in the same family; presenting a token that was already used revokes
+ * the whole family.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@ToString
+@Entity
+@Table(name = "refresh_tokens", indexes = {
+        @Index(name = "uk_refresh_tokens_token_hash", columnList = "token_hash", unique = true),
+        @Index(name = "idx_refresh_tokens_family", columnList = "family_id"),
+        @Index(name = "idx_refresh_tokens_user_expires", columnList = "user_id, expires_at")
+})
+public class RefreshToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length = 64, nullable = false)
+    private String tokenHash;
+
+    // Shared by a login's token and every token rotated from it.
+    @Column(length = 36, nullable = false)
+    private String familyId;
+
+    private Long userId;
+    private String username;
+    private Instant expiresAt;
+    // Set when the token is exchanged; a second exchange is a reuse.
+    private Instant usedAt;
+    private boolean revoked;
+}
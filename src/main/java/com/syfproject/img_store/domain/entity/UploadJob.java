@@ -0,0 +1,44 @@
+package com.syfproject.img_store.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@ToString
+@Entity
+@Table(name = "upload_jobs")
+public class UploadJob {
+
+    /**
+     * Lifecycle of an asynchronous upload.
+     */
+    public enum Status {
+        QUEUED,
+        UPLOADING,
+        COMPLETED,
+        FAILED
+    }
+
+    @Id
+    private String id;
+
+    private Long userId;
+    private String username;
+    private String filename;
+    private String spoolPath;
+
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    private Long imageId;
+    private String imageLink;
+    @Column(length = 1024)
+    private String error;
+    private Instant createdAt;
+    private Instant updatedAt;
+}
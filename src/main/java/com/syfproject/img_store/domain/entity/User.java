@@ -17,7 +17,9 @@ import java.util.List;
 @Setter
 @ToString(exclude = "images")
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+        @Index(name = "uk_users_username", columnList = "username", unique = true)
+})
 public class User {
 
     @Id
@@ -0,0 +1,26 @@
+package com.syfproject.img_store.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Per-user usage, maintained incrementally from image events by the usage projection.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@ToString
+@Entity
+@Table(name = "user_usage")
+public class UserUsage {
+
+    @Id
+    private Long userId;
+
+    private long imageCount;
+    private long totalBytes;
+    private Instant lastUploadAt;
+}
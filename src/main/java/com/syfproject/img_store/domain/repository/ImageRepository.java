@@ -1,16 +1,42 @@
 package com.syfproject.img_store.domain.repository;
 
 import com.syfproject.img_store.domain.entity.Image;
-import com.syfproject.img_store.domain.entity.User;
+import com.syfproject.img_store.dto.ImageSummary;
+import com.syfproject.img_store.dto.UsageTotals;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ImageRepository extends JpaRepository<Image, Long> {
-    List<Image> findByUser(User user);
-    Optional<Image> findByDeleteHashAndUser(String deleteHash, User user);
-    Optional<Image> findByIdAndUser(Long id, User user);
+    Optional<Image> findByDeleteHashAndUserId(String deleteHash, Long userId);
+    Optional<Image> findByIdAndUserId(Long id, Long userId);
+    Optional<Image> findFirstByUserIdAndContentHash(Long userId, String contentHash);
+    long countByImgurIdStartingWithAndImgurIdNotIn(String prefix, Collection<String> imgurIds);
+    boolean existsByImgurId(String imgurId);
+
+    @Query("select new com.syfproject.img_store.dto.ImageSummary(i.id, i.imgurId, i.link, i.filename, i.deleteHash) "
+            + "from Image i where i.id = :id and i.user.id = :userId")
+    Optional<ImageSummary> findSummaryByIdAndUserId(@Param("id") Long id, @Param("userId") Long userId);
+
+    /**
+     * Keyset page of a user's images: rows with an id greater than {@code afterId}, in id order,
+     * projected straight into summaries.
+     */
+    @Query("select new com.syfproject.img_store.dto.ImageSummary(i.id, i.imgurId, i.link, i.filename, i.deleteHash) "
+            + "from Image i where i.user.id = :userId and i.id > :afterId order by i.id")
+    List<ImageSummary> findPageByUserId(@Param("userId") Long userId, @Param("afterId") long afterId, Limit limit);
+
+    /**
+     * Image count and stored bytes of every user with images, as upload events report them.
+     */
+    @Query("select new com.syfproject.img_store.dto.UsageTotals(i.user.id, count(i), coalesce(sum(i.optimizedSize), 0L)) "
+            + "from Image i group by i.user.id")
+    List<UsageTotals> sumUsageByUser();
 }
@@ -0,0 +1,10 @@
+package com.syfproject.img_store.domain.repository;
+
+import com.syfproject.img_store.domain.entity.ProjectionOffset;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ProjectionOffsetRepository extends JpaRepository<ProjectionOffset, String> {
+    boolean existsByIdStartingWith(String prefix);
+}
@@ -0,0 +1,15 @@
+package com.syfproject.img_store.domain.repository;
+
+import com.syfproject.img_store.domain.entity.UploadJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UploadJobRepository extends JpaRepository<UploadJob, String> {
+    Optional<UploadJob> findByIdAndUsername(String id, String username);
+    List<UploadJob> findByStatusInOrderByCreatedAt(Collection<UploadJob.Status> statuses);
+}
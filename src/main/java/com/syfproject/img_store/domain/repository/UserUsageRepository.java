@@ -0,0 +1,9 @@
+package com.syfproject.img_store.domain.repository;
+
+import com.syfproject.img_store.domain.entity.UserUsage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UserUsageRepository extends JpaRepository<UserUsage, Long> {
+}
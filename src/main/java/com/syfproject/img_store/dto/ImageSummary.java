@@ -0,0 +1,61 @@
+package com.syfproject.img_store.dto;
+
+import com.syfproject.img_store.domain.entity.Image;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only projection of an image used for listings, fetched without loading the entity.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class ImageSummary {
+
+    /**
+     * Field names that may be requested through a sparse fieldset.
+     */
+    public static final List<String> FIELDS = List.of("id", "imgurId", "link", "filename", "deleteHash");
+
+    private final Long id;
+    private final String imgurId;
+    private final String link;
+    private final String filename;
+    private final String deleteHash;
+
+    /**
+     * Creates a summary of a saved image.
+     *
+     * @param image the image entity
+     * @return the summary
+     */
+    public static ImageSummary from(Image image) {
+        return new ImageSummary(image.getId(), image.getImgurId(), image.getLink(), image.getFilename(), image.getDeleteHash());
+    }
+
+    /**
+     * Returns only the requested fields, in the order they were requested.
+     *
+     * @param fields the field names, each one of {@link #FIELDS}
+     * @return a map of field name to value
+     */
+    public Map<String, Object> select(List<String> fields) {
+        Map<String, Object> selected = new LinkedHashMap<>();
+        for (String field : fields) {
+            switch (field) {
+                case "id" -> selected.put(field, id);
+                case "imgurId" -> selected.put(field, imgurId);
+                case "link" -> selected.put(field, link);
+                case "filename" -> selected.put(field, filename);
+                case "deleteHash" -> selected.put(field, deleteHash);
+                default -> throw new IllegalArgumentException("Unknown field: " + field);
+            }
+        }
+        return selected;
+    }
+}
@@ -0,0 +1,8 @@
+package com.syfproject.img_store.dto;
+
+import lombok.Data;
+
+@Data
+public class RefreshRequest {
+    private String refreshToken;
+}
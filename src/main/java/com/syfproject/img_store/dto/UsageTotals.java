@@ -0,0 +1,11 @@
+package com.syfproject.img_store.dto;
+
+/**
+ * One user's image count and stored bytes, aggregated from the images table.
+ *
+ * @param userId the user ID
+ * @param imageCount the number of images
+ * @param totalBytes the sum of the stored sizes, counting images without a recorded size as 0
+ */
+public record UsageTotals(Long userId, Long imageCount, Long totalBytes) {
+}
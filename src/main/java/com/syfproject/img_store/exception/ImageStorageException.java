@@ -0,0 +1,23 @@
+package com.syfproject.img_store.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatusCode;
+
+import java.util.Map;
+
+/**
+ * Thrown when an image storage backend rejects or fails an operation.
+ * Carries the status and body to report to the client.
+ */
+@Getter
+public class ImageStorageException extends RuntimeException {
+
+    private final HttpStatusCode status;
+    private final Map body;
+
+    public ImageStorageException(HttpStatusCode status, Map body) {
+        super("Image storage failed with status " + status);
+        this.status = status;
+        this.body = body;
+    }
+}
@@ -0,0 +1,108 @@
+package com.syfproject.img_store.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The application's single JWT verifier, used by the resource server filter chain and by
+ * {@link JwtTokenProvider}. The underlying Nimbus decoder is built once from the HS256 secret and
+ * is thread-safe. Tokens that pass verification are cached, keyed by the SHA-256 of the token,
+ * until their {@code exp}, so a client replaying the same token skips parsing and the HMAC.
+ * Tokens without an expiry are never cached. A maximum size of 0 disables the cache.
+ * Hit, miss and eviction counts are published as "cache.*" metrics tagged cache=jwt.
+ */
+@Component
+public class CachingJwtDecoder implements JwtDecoder, MeterBinder {
+
+    private final JwtDecoder delegate;
+    private final Cache<String, Jwt> cache;
+
+    @Autowired
+    public CachingJwtDecoder(@Value("${jwt.secret}") String secret,
+                             @Value("${jwt.cache.maximum-size:10000}") long maximumSize) {
+        this.delegate = NimbusJwtDecoder
+                .withSecretKey(new SecretKeySpec(secret.getBytes(), "HMACSHA256"))
+                .build();
+        this.cache = maximumSize > 0
+                ? Caffeine.newBuilder()
+                        .maximumSize(maximumSize)
+                        .expireAfter(new Expiry<String, Jwt>() {
+                            @Override
+                            public long expireAfterCreate(String key, Jwt jwt, long currentTime) {
+                                return untilExpiry(jwt);
+                            }
+
+                            @Override
+                            public long expireAfterUpdate(String key, Jwt jwt, long currentTime, long currentDuration) {
+                                return untilExpiry(jwt);
+                            }
+
+                            @Override
+                            public long expireAfterRead(String key, Jwt jwt, long currentTime, long currentDuration) {
+                                return currentDuration;
+                            }
+                        })
+                        .recordStats()
+                        .build()
+                : null;
+    }
+
+    /**
+     * Verifies a token and returns its claims, from the cache when the token was verified before.
+     *
+     * @param token the compact JWT
+     * @return the verified token
+     * @throws JwtException if the token is malformed, wrongly signed or expired
+     */
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        if (cache == null) {
+            return delegate.decode(token);
+        }
+        return cache.get(digest(token), key -> delegate.decode(token));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (cache != null) {
+            CaffeineCacheMetrics.monitor(registry, cache, "jwt");
+        }
+    }
+
+    private static long untilExpiry(Jwt jwt) {
+        Instant expiresAt = jwt.getExpiresAt();
+        if (expiresAt == null) {
+            return 0;
+        }
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, Duration.between(Instant.now(), expiresAt).toMillis()));
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
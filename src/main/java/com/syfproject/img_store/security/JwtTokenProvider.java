@@ -3,14 +3,15 @@
  */
 package com.syfproject.img_store.security;
 
-import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.JwtException;
-import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.stereotype.Component;
 
 import java.security.Key;
@@ -21,7 +22,13 @@ import java.util.List;
 @Component
 public class JwtTokenProvider {
 
+    /**
+     * Claim holding the numeric user id.
+     */
+    public static final String USER_ID_CLAIM = "uid";
+
     private final Key secretKey;
+    private final JwtDecoder jwtDecoder;
 
     @Value("${jwt.expiration}")
     private long validityInMilliseconds;
@@ -30,25 +37,29 @@ public class JwtTokenProvider {
      * Constructs a JwtTokenProvider with the given secret.
      *
      * @param secret the JWT secret (must be at least 32 characters for HS256)
+     * @param jwtDecoder the shared verifier, also used by the resource server
      */
-    public JwtTokenProvider(@Value("${jwt.secret}") String secret) {
+    public JwtTokenProvider(@Value("${jwt.secret}") String secret, JwtDecoder jwtDecoder) {
         this.secretKey = Keys.hmacShaKeyFor(secret.getBytes());
+        this.jwtDecoder = jwtDecoder;
         log.debug("Initialized JwtTokenProvider");
     }
 
     /**
-     * Creates a JWT token with subject and roles.
+     * Creates a JWT token with subject, user id and roles.
      *
      * @param username the username
+     * @param userId the user's id, embedded as the {@value #USER_ID_CLAIM} claim
      * @param roles the roles
      * @return a signed JWT token
      */
-    public String createToken(String username, List<String> roles) {
+    public String createToken(String username, Long userId, List<String> roles) {
         Date now = new Date();
         Date validity = new Date(now.getTime() + validityInMilliseconds);
         log.debug("Creating token for user: {}", username);
         return Jwts.builder()
                 .setSubject(username)
+                .claim(USER_ID_CLAIM, userId)
                 .claim("roles", roles)
                 .setIssuedAt(now)
                 .setExpiration(validity)
@@ -56,6 +67,20 @@ public class JwtTokenProvider {
                 .compact();
     }
 
+    /**
+     * Extracts the user id claim from an authenticated request.
+     *
+     * @param authentication the authentication of the current request
+     * @return the user id, or null if the token predates the claim or the request was not JWT-authenticated
+     */
+    public static Long getUserId(Authentication authentication) {
+        if (authentication instanceof JwtAuthenticationToken jwtAuthentication
+                && jwtAuthentication.getToken().getClaims().get(USER_ID_CLAIM) instanceof Number userId) {
+            return userId.longValue();
+        }
+        return null;
+    }
+
     /**
      * Extracts the username from a JWT token.
      *
@@ -63,12 +88,7 @@ public class JwtTokenProvider {
      * @return the username
      */
     public String getUsername(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(secretKey)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-        return claims.getSubject();
+        return jwtDecoder.decode(token).getSubject();
     }
 
     /**
@@ -79,12 +99,9 @@ public class JwtTokenProvider {
      */
     public boolean validateToken(String token) {
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(secretKey)
-                    .build()
-                    .parseClaimsJws(token);
+            jwtDecoder.decode(token);
             return true;
-        } catch (JwtException | IllegalArgumentException e) {
+        } catch (JwtException e) {
             log.warn("Invalid JWT token: {}", e.getMessage());
             return false;
         }
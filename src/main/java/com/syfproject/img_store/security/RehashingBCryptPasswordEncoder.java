@@ -0,0 +1,35 @@
+package com.syfproject.img_store.security;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A BCryptPasswordEncoder that asks for a rehash whenever a stored hash's cost differs from its own.
+ * BCryptPasswordEncoder only upgrades hashes with a lower cost, so lowering the configured cost to
+ * make logins cheaper would otherwise never reach existing users.
+ */
+public class RehashingBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+    private static final Pattern COST = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$.*", Pattern.DOTALL);
+
+    private final int strength;
+
+    /**
+     * @param strength the BCrypt cost new hashes are made with
+     */
+    public RehashingBCryptPasswordEncoder(int strength) {
+        super(strength);
+        this.strength = strength;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.isEmpty()) {
+            return false;
+        }
+        Matcher matcher = COST.matcher(encodedPassword);
+        return matcher.matches() ? Integer.parseInt(matcher.group(1)) != strength : super.upgradeEncoding(encodedPassword);
+    }
+}
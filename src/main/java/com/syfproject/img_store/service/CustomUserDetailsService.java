@@ -1,24 +1,29 @@
 package com.syfproject.img_store.service;
 
-import com.syfproject.img_store.domain.entity.User;
 import com.syfproject.img_store.domain.repository.UserRepository;
+import com.syfproject.img_store.security.UserPrincipal;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.core.userdetails.*;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * CustomUserDetailsService loads user-specific data.
- * Implements Spring Security's UserDetailsService interface.
+ * Implements Spring Security's UserDetailsService interface, and UserDetailsPasswordService so that
+ * password hashes made with a BCrypt cost other than the configured one are replaced on successful login.
  */
 @Slf4j
 @Service
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
+    private final UserLookupCache userLookupCache;
     private final UserRepository userRepository;
 
     @Autowired
-    public CustomUserDetailsService(UserRepository userRepository) {
+    public CustomUserDetailsService(UserLookupCache userLookupCache, UserRepository userRepository) {
+        this.userLookupCache = userLookupCache;
         this.userRepository = userRepository;
     }
 
@@ -32,15 +37,30 @@ public class CustomUserDetailsService implements UserDetailsService {
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         log.debug("Loading user details for username: {}", username);
-        User user = userRepository.findByUsername(username)
+        UserLookupCache.CachedUser user = userLookupCache.find(username)
                 .orElseThrow(() -> {
                     log.error("User not found with username: {}", username);
                     return new UsernameNotFoundException("User not found with username: " + username);
                 });
-        return org.springframework.security.core.userdetails.User.builder()
-                .username(user.getUsername())
-                .password(user.getPassword())
-                .roles("USER")
-                .build();
+        return new UserPrincipal(user.id(), user.username(), user.passwordHash(),
+                AuthorityUtils.createAuthorityList("ROLE_USER"));
+    }
+
+    /**
+     * Stores a rehashed password. Called by the authentication provider after a successful login
+     * when the stored hash was made with a different cost, lower or higher, than the current encoder's.
+     *
+     * @param user the authenticated user
+     * @param newPassword the new encoded password
+     * @return the user with the new password
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        log.info("Upgrading password hash for user: {}", user.getUsername());
+        userRepository.findByUsername(user.getUsername()).ifPresent(entity -> entity.setPassword(newPassword));
+        userLookupCache.invalidate(user.getUsername());
+        Long id = user instanceof UserPrincipal principal ? principal.getId() : null;
+        return new UserPrincipal(id, user.getUsername(), newPassword, user.getAuthorities());
     }
 }
@@ -0,0 +1,231 @@
+package com.syfproject.img_store.service;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.imageio.IIOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * ImageIO helpers shared by thumbnail generation and upload optimization.
+ */
+final class ImageCodec {
+
+    private static final String JPEG_METADATA = "javax_imageio_jpeg_image_1.0";
+    private static final int ORIENTATION_TAG = 0x0112;
+
+    private ImageCodec() {
+    }
+
+    /**
+     * Decodes the first image of a stream. Its dimensions are read from the header first, so an image
+     * that would expand to more than {@code maxPixels} pixels, such as a decompression bomb, is
+     * refused before any pixel memory is allocated. JPEGs are turned upright according to their
+     * EXIF orientation.
+     *
+     * @param stream the encoded image
+     * @param maxPixels the largest width times height that may be decoded
+     * @return the image, or null if no installed reader supports its format
+     * @throws IOException if the image cannot be read or is too large
+     */
+    static BufferedImage read(InputStream stream, long maxPixels) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(stream)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, false);
+                checkPixels(reader.getWidth(0), reader.getHeight(0), maxPixels);
+                return orient(reader.read(0), exifOrientation(reader.getImageMetadata(0)));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * @throws IIOException if an image of the given dimensions has more than {@code maxPixels} pixels
+     */
+    static void checkPixels(int width, int height, long maxPixels) throws IIOException {
+        if ((long) width * height > maxPixels) {
+            throw new IIOException("Image of " + width + "x" + height + " pixels exceeds the limit of " + maxPixels);
+        }
+    }
+
+    /**
+     * Reads the EXIF orientation of a JPEG from its APP1 segment.
+     *
+     * @param metadata the image metadata read by the JPEG reader, or null
+     * @return the orientation, from 1 (upright) to 8, or 1 if there is none
+     */
+    static int exifOrientation(IIOMetadata metadata) {
+        if (metadata == null || !JPEG_METADATA.equals(metadata.getNativeMetadataFormatName())) {
+            return 1;
+        }
+        NodeList markers = ((Element) metadata.getAsTree(JPEG_METADATA)).getElementsByTagName("unknown");
+        for (int i = 0; i < markers.getLength(); i++) {
+            IIOMetadataNode marker = (IIOMetadataNode) markers.item(i);
+            if ("225".equals(marker.getAttribute("MarkerTag")) && marker.getUserObject() instanceof byte[] data) {
+                int orientation = exifOrientation(data);
+                if (orientation != 0) {
+                    return orientation;
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Finds the orientation tag in the first IFD of an {@code Exif} APP1 payload.
+     *
+     * @return the orientation, or 0 if the payload is not EXIF or has no valid orientation
+     */
+    private static int exifOrientation(byte[] app1) {
+        if (app1.length < 14 || !new String(app1, 0, 6, StandardCharsets.ISO_8859_1).equals("Exif\0\0")) {
+            return 0;
+        }
+        ByteBuffer tiff = ByteBuffer.wrap(app1, 6, app1.length - 6).slice();
+        tiff.order(tiff.get(0) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        try {
+            int ifd = tiff.getInt(4);
+            int entries = tiff.getShort(ifd) & 0xFFFF;
+            for (int i = 0; i < entries; i++) {
+                int entry = ifd + 2 + i * 12;
+                if ((tiff.getShort(entry) & 0xFFFF) == ORIENTATION_TAG) {
+                    int orientation = tiff.getShort(entry + 8) & 0xFFFF;
+                    return orientation >= 1 && orientation <= 8 ? orientation : 0;
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // A truncated or malformed EXIF block is treated as having no orientation.
+        }
+        return 0;
+    }
+
+    /**
+     * Turns an image upright according to its EXIF orientation, so the result displays correctly
+     * without the orientation tag.
+     *
+     * @param image the image as stored
+     * @param orientation the EXIF orientation, from 1 to 8
+     * @return the upright image, which is the same image for orientation 1
+     */
+    static BufferedImage orient(BufferedImage image, int orientation) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        AffineTransform transform = switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, w, 0);
+            case 3 -> new AffineTransform(-1, 0, 0, -1, w, h);
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, h);
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);
+            case 6 -> new AffineTransform(0, 1, -1, 0, h, 0);
+            case 7 -> new AffineTransform(0, -1, -1, 0, h, w);
+            case 8 -> new AffineTransform(0, -1, 1, 0, 0, w);
+            default -> null;
+        };
+        if (transform == null) {
+            return image;
+        }
+        boolean swap = orientation >= 5;
+        BufferedImage oriented = new BufferedImage(swap ? h : w, swap ? w : h,
+                image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = oriented.createGraphics();
+        try {
+            graphics.drawImage(image, transform, null);
+        } finally {
+            graphics.dispose();
+        }
+        return oriented;
+    }
+
+    /**
+     * Scales an image so its longest edge is at most {@code maxDimension}. Smaller images keep their dimensions.
+     * Scaling to {@link BufferedImage#TYPE_INT_RGB} flattens transparency onto white.
+     *
+     * @param image the image to scale
+     * @param maxDimension the maximum length of the longest edge in pixels
+     * @param type the BufferedImage type of the result
+     * @return the scaled image
+     */
+    static BufferedImage scale(BufferedImage image, int maxDimension, int type) {
+        double factor = Math.min(1.0, (double) maxDimension / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * factor));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * factor));
+        BufferedImage scaled = new BufferedImage(width, height, type);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, type == BufferedImage.TYPE_INT_RGB ? Color.WHITE : null, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    /**
+     * Writes an image as a JPEG.
+     *
+     * @param image an image without alpha
+     * @param quality the compression quality, from 0 to 1
+     * @param target the file to write
+     * @throws IOException if the file cannot be written
+     */
+    static void writeJpeg(BufferedImage image, float quality, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * @param image the image to inspect
+     * @return whether every pixel of the image is fully opaque
+     */
+    static boolean isOpaque(BufferedImage image) {
+        WritableRaster alpha = image.getAlphaRaster();
+        if (!image.getColorModel().hasAlpha() || alpha == null) {
+            return true;
+        }
+        int max = (1 << image.getColorModel().getComponentSize(image.getColorModel().getNumComponents() - 1)) - 1;
+        int[] row = new int[alpha.getWidth()];
+        for (int y = 0; y < alpha.getHeight(); y++) {
+            alpha.getSamples(0, y, alpha.getWidth(), 1, 0, row);
+            for (int sample : row) {
+                if (sample != max) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,195 @@
+package com.syfproject.img_store.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.syfproject.img_store.domain.repository.ImageRepository;
+import com.syfproject.img_store.dto.ImageSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Write-through cache of each user's image metadata, held as the complete id-ordered set of
+ * {@link ImageSummary} rows so both single-image reads and keyset pages can be served from memory.
+ * Total size is bounded by an estimate of retained bytes; users with more images than the
+ * per-user limit are not cached and are always read from the database.
+ * Hit, miss and eviction counts are published as "cache.*" metrics tagged cache=imageMetadata.
+ */
+@Slf4j
+@Component
+public class ImageMetadataCache implements MeterBinder {
+
+    /**
+     * A user's cached images, or a marker that the user has too many images to cache. The estimated
+     * retained size is kept up to date as images are added and removed, so re-weighing an entry
+     * does not walk its images. Changes are made inside the cache's compute for the user, which
+     * serializes them.
+     */
+    private static final class UserImages {
+
+        private static final UserImages TOO_LARGE = new UserImages(new ConcurrentSkipListMap<>(), true);
+
+        private final NavigableMap<Long, ImageSummary> images;
+        private final boolean tooLarge;
+        private long bytes = 64;
+
+        UserImages(NavigableMap<Long, ImageSummary> images, boolean tooLarge) {
+            this.images = images;
+            this.tooLarge = tooLarge;
+            for (ImageSummary image : images.values()) {
+                bytes += estimateBytes(image);
+            }
+        }
+
+        NavigableMap<Long, ImageSummary> images() {
+            return images;
+        }
+
+        boolean tooLarge() {
+            return tooLarge;
+        }
+
+        void put(ImageSummary image) {
+            ImageSummary previous = images.put(image.getId(), image);
+            bytes += estimateBytes(image) - (previous == null ? 0 : estimateBytes(previous));
+        }
+
+        void remove(Long imageId) {
+            ImageSummary removed = images.remove(imageId);
+            if (removed != null) {
+                bytes -= estimateBytes(removed);
+            }
+        }
+
+        int weight() {
+            return (int) Math.min(Integer.MAX_VALUE, bytes);
+        }
+
+        /**
+         * Approximate retained size of one entry: skip-list node, boxed key, summary object and its strings.
+         */
+        private static long estimateBytes(ImageSummary image) {
+            return 150 + length(image.getImgurId()) + length(image.getLink())
+                    + length(image.getFilename()) + length(image.getDeleteHash());
+        }
+
+        private static int length(String value) {
+            return value == null ? 0 : 40 + value.length();
+        }
+    }
+
+    private final ImageRepository imageRepository;
+    private final int maxImagesPerUser;
+    private final Cache<Long, UserImages> cache;
+
+    @Autowired
+    public ImageMetadataCache(ImageRepository imageRepository,
+                              @Value("${images.cache.max-memory:64MB}") DataSize maxMemory,
+                              @Value("${images.cache.max-images-per-user:10000}") int maxImagesPerUser) {
+        this.imageRepository = imageRepository;
+        this.maxImagesPerUser = maxImagesPerUser;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxMemory.toBytes())
+                .weigher((Long userId, UserImages userImages) -> userImages.weight())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns all of a user's images in id order, loading them on a miss.
+     *
+     * @param userId the user id
+     * @return the user's images, or empty if the user has too many images to cache
+     */
+    public Optional<NavigableMap<Long, ImageSummary>> images(Long userId) {
+        UserImages userImages = cache.get(userId, this::load);
+        return userImages.tooLarge() ? Optional.empty() : Optional.of(userImages.images());
+    }
+
+    /**
+     * Adds a newly saved image to its owner's cached images once the current transaction commits.
+     * Users that are not cached are left alone; they are loaded in full on their next read.
+     *
+     * @param userId the owner's id
+     * @param image the saved image
+     */
+    public void added(Long userId, ImageSummary image) {
+        afterCommit(() -> cache.asMap().computeIfPresent(userId, (id, userImages) -> {
+            if (userImages.tooLarge()) {
+                return userImages;
+            }
+            userImages.put(image);
+            // Returning the entry from compute makes the cache re-weigh it.
+            return userImages.images().size() > maxImagesPerUser ? UserImages.TOO_LARGE : userImages;
+        }));
+    }
+
+    /**
+     * Removes a deleted image from its owner's cached images once the current transaction commits.
+     *
+     * @param userId the owner's id
+     * @param imageId the deleted image id
+     */
+    public void removed(Long userId, Long imageId) {
+        afterCommit(() -> cache.asMap().computeIfPresent(userId, (id, userImages) -> {
+            userImages.remove(imageId);
+            return userImages;
+        }));
+    }
+
+    /**
+     * Drops all cached images.
+     */
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "imageMetadata");
+    }
+
+    private UserImages load(Long userId) {
+        // Read one row past the limit to detect users that are too large to cache.
+        List<ImageSummary> images = imageRepository.findPageByUserId(userId, 0L, Limit.of(maxImagesPerUser + 1));
+        if (images.size() > maxImagesPerUser) {
+            log.debug("User {} has more than {} images; not caching", userId, maxImagesPerUser);
+            return UserImages.TOO_LARGE;
+        }
+        NavigableMap<Long, ImageSummary> byId = new ConcurrentSkipListMap<>();
+        images.forEach(image -> byId.put(image.getId(), image));
+        log.debug("Cached {} images for user {}", byId.size(), userId);
+        return new UserImages(byId, false);
+    }
+
+    /**
+     * Runs the update after the surrounding transaction commits, or right away when there is none.
+     * Updates go through the cache's atomic compute, so a concurrent load either sees the committed
+     * row or finishes before the update is applied.
+     */
+    private static void afterCommit(Runnable update) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update.run();
+                }
+            });
+        } else {
+            update.run();
+        }
+    }
+}
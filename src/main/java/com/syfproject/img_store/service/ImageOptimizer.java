@@ -0,0 +1,179 @@
+package com.syfproject.img_store.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.Locale;
+
+/**
+ * Shrinks uploads before they are pushed to storage: images larger than the maximum dimension are
+ * downscaled, JPEGs are re-encoded at the target quality and turned upright according to their EXIF
+ * orientation, and opaque PNGs are converted to JPEG.
+ * Content that is not a JPEG or PNG, fails to decode, or would not get smaller is uploaded unchanged.
+ */
+@Slf4j
+@Component
+public class ImageOptimizer {
+
+    private final boolean enabled;
+    private final int maxDimension;
+    private final float jpegQuality;
+    private final boolean convertOpaquePng;
+    private final Path workDir;
+
+    @Autowired
+    public ImageOptimizer(@Value("${upload.optimize.enabled:false}") boolean enabled,
+                          @Value("${upload.optimize.max-dimension:2048}") int maxDimension,
+                          @Value("${upload.optimize.jpeg-quality:0.85}") float jpegQuality,
+                          @Value("${upload.optimize.convert-opaque-png:true}") boolean convertOpaquePng,
+                          @Value("${upload.spool-dir:${java.io.tmpdir}/img-store/spool}") String workDir) {
+        this.enabled = enabled;
+        this.maxDimension = maxDimension;
+        this.jpegQuality = jpegQuality;
+        this.convertOpaquePng = convertOpaquePng;
+        this.workDir = Paths.get(workDir);
+    }
+
+    /**
+     * Optimizes image content. The result must be discarded once it has been uploaded.
+     *
+     * @param content the image content
+     * @param filename the original file name
+     * @param size the content length in bytes
+     * @return the content to upload, which is the original content if it could not be made smaller
+     */
+    public Optimized optimize(Resource content, String filename, long size) {
+        Optimized unchanged = new Optimized(content, filename, size, null);
+        if (!enabled) {
+            return unchanged;
+        }
+        try {
+            Optimized optimized = reencode(content, filename);
+            if (optimized == null) {
+                return unchanged;
+            }
+            if (optimized.size() >= size) {
+                log.debug("Optimizing '{}' would not make it smaller, uploading it unchanged", filename);
+                optimized.discard();
+                return unchanged;
+            }
+            log.debug("Optimized '{}' from {} to {} bytes", filename, size, optimized.size());
+            return optimized;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not optimize '{}', uploading it unchanged", filename, e);
+            return unchanged;
+        }
+    }
+
+    private Optimized reencode(Resource content, String filename) throws IOException {
+        try (InputStream stream = content.getInputStream();
+             ImageInputStream in = ImageIO.createImageInputStream(stream)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, false);
+                String format = reader.getFormatName().toLowerCase(Locale.ROOT);
+                boolean jpeg = format.equals("jpeg") || format.equals("jpg");
+                if (!jpeg && !format.equals("png")) {
+                    return null;
+                }
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                boolean downscale = longest > maxDimension;
+                ImageReadParam param = reader.getDefaultReadParam();
+                // Decode very large images at a reduced resolution instead of holding every pixel in
+                // memory, using the coarsest power-of-two step that still leaves at least maxDimension
+                // pixels for the final bilinear pass.
+                int subsampling = 1;
+                while (longest / (subsampling * 2) >= maxDimension) {
+                    subsampling *= 2;
+                }
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                BufferedImage image = reader.read(0, param);
+                // The re-encoded JPEG carries no EXIF, so its orientation is applied to the pixels.
+                int orientation = jpeg ? ImageCodec.exifOrientation(reader.getImageMetadata(0)) : 1;
+                image = ImageCodec.orient(image, orientation);
+
+                if (jpeg || (convertOpaquePng && ImageCodec.isOpaque(image))) {
+                    Path target = Files.createTempFile(createWorkDir(), "optimized-", ".jpg");
+                    ImageCodec.writeJpeg(ImageCodec.scale(image, maxDimension, BufferedImage.TYPE_INT_RGB), jpegQuality, target);
+                    return optimized(target, jpeg ? filename : asJpegName(filename));
+                }
+                if (downscale) {
+                    Path target = Files.createTempFile(createWorkDir(), "optimized-", ".png");
+                    ImageIO.write(ImageCodec.scale(image, maxDimension, BufferedImage.TYPE_INT_ARGB), "png", target.toFile());
+                    return optimized(target, filename);
+                }
+                return null;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private Path createWorkDir() throws IOException {
+        return Files.createDirectories(workDir);
+    }
+
+    private static Optimized optimized(Path file, String filename) throws IOException {
+        Resource resource = new FileSystemResource(file) {
+            @Override
+            public String getFilename() {
+                return filename;
+            }
+        };
+        return new Optimized(resource, filename, Files.size(file), file);
+    }
+
+    private static String asJpegName(String filename) {
+        if (filename == null) {
+            return null;
+        }
+        int dot = filename.lastIndexOf('.');
+        return (dot > 0 ? filename.substring(0, dot) : filename) + ".jpg";
+    }
+
+    /**
+     * Content to upload in place of the original.
+     *
+     * @param content the content to upload
+     * @param filename the file name to upload it under
+     * @param size the content length in bytes
+     * @param file the temporary file holding re-encoded content, or null if the original is used
+     */
+    public record Optimized(Resource content, String filename, long size, Path file) {
+
+        /**
+         * Deletes the temporary file, if any.
+         */
+        public void discard() {
+            if (file == null) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Could not delete optimized upload {}", file, e);
+            }
+        }
+    }
+}
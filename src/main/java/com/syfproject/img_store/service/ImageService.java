@@ -2,174 +2,697 @@ package com.syfproject.img_store.service;
 
 import com.syfproject.img_store.domain.entity.Image;
 import com.syfproject.img_store.domain.entity.User;
+import com.syfproject.img_store.domain.entity.UserUsage;
 import com.syfproject.img_store.domain.repository.ImageRepository;
 import com.syfproject.img_store.domain.repository.UserRepository;
+import com.syfproject.img_store.domain.repository.UserUsageRepository;
+import com.syfproject.img_store.dto.ImageSummary;
+import com.syfproject.img_store.exception.ImageStorageException;
+import com.syfproject.img_store.service.events.EventPublisher;
+import com.syfproject.img_store.service.events.ImageEvent;
+import com.syfproject.img_store.service.events.ImageEventSerializer;
+import com.syfproject.img_store.service.storage.ContentDigest;
+import com.syfproject.img_store.service.storage.ImageContent;
+import com.syfproject.img_store.service.storage.ImageStorage;
+import com.syfproject.img_store.service.storage.StoredImage;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.*;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
 
 @Slf4j
 @Service
-public class ImageService {
+public class ImageService implements MeterBinder {
 
-    private final ImgurClientService imgurClientService;
+    private final ImageStorage imageStorage;
     private final ImageRepository imageRepository;
     private final UserRepository userRepository;
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final UserLookupCache userLookupCache;
+    private final ImageMetadataCache imageMetadataCache;
+    private final ThumbnailService thumbnailService;
+    private final ImageOptimizer imageOptimizer;
+    private final UserUsageRepository userUsageRepository;
+    private final EventPublisher eventPublisher;
+    private final Executor imgurBatchExecutor;
+    private final Executor uploadProcessingExecutor;
+    private final TransactionTemplate transactionTemplate;
+    private final LongAdder dedupHits = new LongAdder();
+    private final LongAdder dedupBytesSaved = new LongAdder();
 
-    @Value("${kafka.enabled:false}")
-    private boolean kafkaEnabled;
+    @Value("${images.page.default-size:50}")
+    private int defaultPageSize;
+
+    @Value("${images.page.max-size:500}")
+    private int maxPageSize;
 
     @Autowired
-    public ImageService(ImgurClientService imgurClientService,
+    public ImageService(ImageStorage imageStorage,
                         ImageRepository imageRepository,
                         UserRepository userRepository,
-                        @Autowired(required = false) KafkaTemplate<String, String> kafkaTemplate) {
-        this.imgurClientService = imgurClientService;
+                        UserLookupCache userLookupCache,
+                        ImageMetadataCache imageMetadataCache,
+                        ThumbnailService thumbnailService,
+                        ImageOptimizer imageOptimizer,
+                        UserUsageRepository userUsageRepository,
+                        @Autowired(required = false) EventPublisher eventPublisher,
+                        @Qualifier("imgurBatchExecutor") Executor imgurBatchExecutor,
+                        @Qualifier("uploadProcessingExecutor") Executor uploadProcessingExecutor,
+                        PlatformTransactionManager transactionManager) {
+        this.imageStorage = imageStorage;
         this.imageRepository = imageRepository;
         this.userRepository = userRepository;
-        this.kafkaTemplate = kafkaTemplate;
+        this.userLookupCache = userLookupCache;
+        this.imageMetadataCache = imageMetadataCache;
+        this.thumbnailService = thumbnailService;
+        this.imageOptimizer = imageOptimizer;
+        this.userUsageRepository = userUsageRepository;
+        this.eventPublisher = eventPublisher;
+        this.imgurBatchExecutor = imgurBatchExecutor;
+        this.uploadProcessingExecutor = uploadProcessingExecutor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     /**
-     * Uploads an image to Imgur, associates it with the user, and publishes a Kafka event if enabled.
+     * Uploads an image to the storage backend, associates it with the user, and publishes a Kafka event if enabled.
      *
      * @param file the image file
+     * @param userId the uploader's id from the access token, or null to look it up by username
      * @param username the username of the uploader
      * @return ResponseEntity with upload result
      */
-    public ResponseEntity<Map> uploadImage(MultipartFile file, String username) {
+    public ResponseEntity<Map> uploadImage(MultipartFile file, Long userId, String username) {
+        return uploadImage(file.getResource(), file.getOriginalFilename(), userId, username);
+    }
+
+    /**
+     * Uploads an image like {@link #uploadImage(MultipartFile, Long, String)}, returning while the storage
+     * backend works, so that the request thread is not held when the backend is non-blocking.
+     *
+     * @param file the image file, which must stay readable until the future completes
+     * @param userId the uploader's id from the access token, or null to look it up by username
+     * @param username the username of the uploader
+     * @return a future of the ResponseEntity with upload result
+     */
+    public CompletableFuture<ResponseEntity<Map>> uploadImageAsync(MultipartFile file, Long userId, String username) {
+        return uploadImageAsync(file.getResource(), file.getOriginalFilename(), userId, username);
+    }
+
+    /**
+     * Uploads image content to the storage backend, associates it with the user, and publishes a Kafka event if enabled.
+     *
+     * @param content the image content, streamed to the storage backend
+     * @param filename the original file name
+     * @param userId the uploader's id, or null to look it up by username
+     * @param username the username of the uploader
+     * @return ResponseEntity with upload result
+     */
+    public ResponseEntity<Map> uploadImage(Resource content, String filename, Long userId, String username) {
+        return join(uploadImageAsync(content, filename, userId, username));
+    }
+
+    /**
+     * Checks the user and deduplicates on the calling thread, then optimizes and stores the content in the
+     * background and saves the image once the storage backend completes.
+     */
+    private CompletableFuture<ResponseEntity<Map>> uploadImageAsync(Resource content, String filename, Long userId, String username) {
         log.info("Uploading image for user: {}", username);
-        ResponseEntity<Map> imgurResponse = imgurClientService.uploadImage(file);
-        if (!imgurResponse.getStatusCode().is2xxSuccessful()) {
-            log.error("Imgur upload failed with status: {}", imgurResponse.getStatusCode());
-            return imgurResponse;
-        }
-        Map<String, Object> responseBody = (Map<String, Object>) imgurResponse.getBody();
-        Map<String, Object> data = (Map<String, Object>) responseBody.get("data");
-        String imgurId = (String) data.get("id");
-        String imageLink = (String) data.get("link");
-        String deleteHash = (String) data.get("deletehash");
-
-        Optional<User> userOptional = userRepository.findByUsername(username);
-        if (userOptional.isEmpty()) {
+        Long ownerId = resolveUserId(userId, username);
+        if (ownerId == null) {
+            log.error("User not found: {}", username);
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "User not found")));
+        }
+
+        ContentDigest digest;
+        try {
+            digest = ContentDigest.of(content);
+        } catch (IOException e) {
+            log.error("Error reading upload '{}'", filename, e);
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Upload failed: " + e.getMessage())));
+        }
+        Optional<Image> existing = imageRepository.findFirstByUserIdAndContentHash(ownerId, digest.sha256());
+        if (existing.isPresent()) {
+            Image image = existing.get();
+            recordDuplicate(digest);
+            log.info("Upload from user {} duplicates image {}", username, image.getId());
+            return CompletableFuture.completedFuture(ResponseEntity.ok(
+                    Map.of("message", "Image already uploaded", "id", image.getId(), "imageLink", image.getLink())));
+        }
+
+        // Optimizing and saving run on the processing pool: not on the request thread, and not on the
+        // thread that completed the store, which in reactive mode is one of the few Imgur response threads.
+        return CompletableFuture.supplyAsync(() -> imageOptimizer.optimize(content, filename, digest.size()),
+                        uploadProcessingExecutor)
+                .thenCompose(optimized -> storeAsync(optimized, digest))
+                .thenApplyAsync(push -> {
+                    Image image = newImage(push, filename, userRepository.getReferenceById(ownerId));
+                    persist(List.of(image));
+                    imageMetadataCache.added(ownerId, ImageSummary.from(image));
+                    thumbnailService.generate(image.getId(), content);
+                    log.debug("Image saved for user {} with id {}", username, image.getId());
+
+                    publishEvent(ImageEvent.Type.UPLOADED, ownerId, username, image);
+                    return ResponseEntity.ok((Map) Map.of("message", "Image uploaded successfully", "id", image.getId(), "imageLink", image.getLink()));
+                }, uploadProcessingExecutor)
+                .exceptionally(ImageService::storageFailure);
+    }
+
+    /**
+     * Uploads several images to the storage backend in parallel and saves all successful uploads in one batch.
+     * Each file gets its own result, so a failed upload does not fail the rest of the batch.
+     * Files the user has already uploaded are answered with the existing image, and content repeated
+     * within the batch is pushed once and shared by every file that carries it.
+     *
+     * @param files the image files
+     * @param userId the uploader's id from the access token, or null to look it up by username
+     * @param username the username of the uploader
+     * @return ResponseEntity with per-file results
+     */
+    public ResponseEntity<Map> uploadImages(List<MultipartFile> files, Long userId, String username) {
+        log.info("Uploading batch of {} images for user: {}", files.size(), username);
+        if (files.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "No files provided"));
+        }
+        Long ownerId = resolveUserId(userId, username);
+        if (ownerId == null) {
             log.error("User not found: {}", username);
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(Map.of("error", "User not found"));
         }
-        User user = userOptional.get();
+        User user = userRepository.getReferenceById(ownerId);
 
-        Image image = new Image();
-        image.setImgurId(imgurId);
-        image.setLink(imageLink);
-        image.setDeleteHash(deleteHash);
-        image.setFilename(file.getOriginalFilename());  // Set the original file name.
-        image.setUser(user);
-        imageRepository.save(image);
-        log.debug("Image saved for user {} with id {}", username, image.getId());
+        List<CompletableFuture<ContentDigest>> digests = files.stream()
+                .map(file -> CompletableFuture.supplyAsync(() -> digest(file), imgurBatchExecutor))
+                .toList();
+        // Each content is pushed by the first file that carries it; later files repeat its result.
+        Map<String, Integer> firstWithContent = new HashMap<>();
+        int[] repeatOf = new int[files.size()];
+        List<CompletableFuture<Push>> pushes = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            MultipartFile file = files.get(i);
+            ContentDigest digest;
+            try {
+                digest = digests.get(i).join();
+            } catch (CompletionException e) {
+                repeatOf[i] = -1;
+                pushes.add(CompletableFuture.failedFuture(e.getCause()));
+                continue;
+            }
+            Integer first = firstWithContent.putIfAbsent(digest.sha256(), i);
+            repeatOf[i] = first == null ? -1 : first;
+            pushes.add(first != null ? CompletableFuture.completedFuture(new Push(digest, null, null, digest.size()))
+                    : CompletableFuture.supplyAsync(() -> push(file, digest, ownerId), imgurBatchExecutor));
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>(files.size());
+        List<Image> images = new ArrayList<>(files.size());
+        Image[] imageForFile = new Image[files.size()];
+        for (int i = 0; i < files.size(); i++) {
+            String filename = files.get(i).getOriginalFilename();
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("filename", filename);
+            results.add(result);
+            if (repeatOf[i] >= 0) {
+                continue;
+            }
+            Push push;
+            try {
+                push = pushes.get(i).join();
+            } catch (CompletionException e) {
+                log.error("Upload of '{}' failed", filename, e.getCause());
+                Object error = e.getCause() instanceof ImageStorageException storageException
+                        && storageException.getBody() != null ? storageException.getBody().get("error") : null;
+                result.put("status", "failed");
+                result.put("error", error != null ? error : "Upload failed: " + e.getCause().getMessage());
+                continue;
+            }
+            if (push.existing() != null) {
+                recordDuplicate(push.digest());
+                result.put("status", "duplicate");
+                result.put("id", push.existing().getId());
+                result.put("imageLink", push.existing().getLink());
+                continue;
+            }
+            Image image = newImage(push, filename, user);
+            images.add(image);
+            imageForFile[i] = image;
+            result.put("status", "uploaded");
+        }
 
-        if (kafkaEnabled && kafkaTemplate != null) {
-            String eventMessage = String.format("{\"username\":\"%s\", \"imageLink\":\"%s\"}", username, imageLink);
-            kafkaTemplate.send("image-uploads", eventMessage);
-            log.info("Published Kafka event: {}", eventMessage);
+        persist(images);
+        log.debug("Saved {} images for user {}", images.size(), username);
+
+        for (int i = 0; i < imageForFile.length; i++) {
+            Image image = imageForFile[i];
+            if (image != null) {
+                imageMetadataCache.added(ownerId, ImageSummary.from(image));
+                thumbnailService.generate(image.getId(), files.get(i).getResource());
+                results.get(i).put("id", image.getId());
+                results.get(i).put("imageLink", image.getLink());
+                publishEvent(ImageEvent.Type.UPLOADED, ownerId, username, image);
+            }
+        }
+        for (int i = 0; i < repeatOf.length; i++) {
+            if (repeatOf[i] >= 0) {
+                Map<String, Object> first = results.get(repeatOf[i]);
+                if ("failed".equals(first.get("status"))) {
+                    results.get(i).put("status", "failed");
+                    results.get(i).put("error", first.get("error"));
+                } else {
+                    recordDuplicate(pushes.get(i).join().digest());
+                    results.get(i).put("status", "duplicate");
+                    results.get(i).put("id", first.get("id"));
+                    results.get(i).put("imageLink", first.get("imageLink"));
+                }
+            }
+        }
+        long failed = results.stream().filter(result -> "failed".equals(result.get("status"))).count();
+        return ResponseEntity.ok(Map.of(
+                "uploaded", (long) images.size(),
+                "duplicates", files.size() - images.size() - failed,
+                "failed", failed,
+                "results", results));
+    }
+
+    private static String encodeCursor(long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(Long.toString(lastId).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static long decodeCursor(String cursor) {
+        try {
+            return Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    private static List<String> parseFields(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        List<String> selected = Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(field -> !field.isEmpty())
+                .distinct()
+                .toList();
+        for (String field : selected) {
+            if (!ImageSummary.FIELDS.contains(field)) {
+                throw new IllegalArgumentException("Unknown field: " + field + ". Allowed fields: " + ImageSummary.FIELDS);
+            }
+        }
+        return selected;
+    }
+
+    private void publishEvent(ImageEvent.Type type, Long userId, String username, Image image) {
+        if (eventPublisher != null) {
+            ImageEvent event = new ImageEvent(type, userId, username, image.getId(), image.getLink(),
+                    image.getOptimizedSize() != null ? image.getOptimizedSize() : 0L, System.currentTimeMillis());
+            eventPublisher.publish(ImageEvent.TOPIC, event.key(), ImageEventSerializer.toBytes(event));
+            log.info("Queued Kafka event: {}", event);
         } else {
             log.debug("Kafka not enabled; skipping event publication");
         }
-        return ResponseEntity.ok(Map.of("message", "Image uploaded successfully", "imageLink", imageLink));
     }
 
     /**
-     * Retrieves images associated with the given user.
+     * Retrieves one page of the images associated with the given user, ordered by id.
      *
+     * @param userId the user's id from the access token, or null to look it up by username
      * @param username the username
-     * @return ResponseEntity with the user's images
+     * @param cursor the nextCursor token from the previous page, or null for the first page
+     * @param size the page size, or null for the default
+     * @param fields comma-separated fields to include for each image, or null for all fields
+     * @return ResponseEntity with the page of images and the cursor for the next page, if any
      */
-    public ResponseEntity<Map> getUserImages(String username) {
+    public ResponseEntity<Map> getUserImages(Long userId, String username, String cursor, Integer size, String fields) {
         log.info("Retrieving images for user: {}", username);
-        Optional<User> userOptional = userRepository.findByUsername(username);
-        if (userOptional.isEmpty()) {
+        long afterId;
+        List<String> selectedFields;
+        try {
+            afterId = cursor == null ? 0L : decodeCursor(cursor);
+            selectedFields = parseFields(fields);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid listing request from user {}: {}", username, e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        int pageSize = size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+
+        Long ownerId = resolveUserId(userId, username);
+        if (ownerId == null) {
             log.error("User not found: {}", username);
             throw new RuntimeException("User not found");
         }
-        User user = userOptional.get();
-        List<Image> images = imageRepository.findByUser(user);
-        if (images.isEmpty()) {
+        // Fetch one extra row to learn whether another page follows.
+        List<ImageSummary> images = imageMetadataCache.images(ownerId)
+                .map(cached -> cached.tailMap(afterId, false).values().stream().limit(pageSize + 1L).toList())
+                .orElseGet(() -> imageRepository.findPageByUserId(ownerId, afterId, Limit.of(pageSize + 1)));
+        if (images.isEmpty() && cursor == null) {
             log.info("No images found for user: {}", username);
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message", "No image is associated with your account"));
-        } else {
-            log.info("Found {} images for user: {}", images.size(), username);
-            return ResponseEntity.ok(Map.of("user", user.getUsername(), "images", images));
         }
+        boolean hasNext = images.size() > pageSize;
+        if (hasNext) {
+            images = images.subList(0, pageSize);
+        }
+        log.info("Found {} images for user: {}", images.size(), username);
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("user", username);
+        body.put("images", selectedFields == null ? images
+                : images.stream().map(image -> image.select(selectedFields)).toList());
+        if (hasNext) {
+            body.put("nextCursor", encodeCursor(images.get(images.size() - 1).getId()));
+        }
+        return ResponseEntity.ok(body);
     }
 
     /**
      * Retrieves a specific image by its ID if it is associated with the given user.
      *
      * @param id the image ID
+     * @param userId the user's id from the access token, or null to look it up by username
      * @param username the username
      * @return ResponseEntity with the image details or error message
      */
-    public ResponseEntity<Map> getImageById(Long id, String username) {
+    public ResponseEntity<Map> getImageById(Long id, Long userId, String username) {
         log.info("Retrieving image with id {} for user {}", id, username);
-        Optional<User> userOptional = userRepository.findByUsername(username);
-        if (userOptional.isEmpty()) {
+        Long ownerId = resolveUserId(userId, username);
+        if (ownerId == null) {
             log.error("User not found: {}", username);
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "User not found"));
         }
-        User user = userOptional.get();
-        Optional<Image> imageOptional = imageRepository.findByIdAndUser(id, user);
+        Optional<ImageSummary> imageOptional = imageMetadataCache.images(ownerId)
+                .map(cached -> Optional.ofNullable(cached.get(id)))
+                .orElseGet(() -> imageRepository.findSummaryByIdAndUserId(id, ownerId));
         if (imageOptional.isEmpty()) {
             log.error("Image with id {} not found for user {}", id, username);
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Image not found"));
         }
-        Image image = imageOptional.get();
+        ImageSummary image = imageOptional.get();
         log.debug("Image found: {}", image);
-        return ResponseEntity.ok(Map.of(
-                "id", image.getId(),
-                "imgurId", image.getImgurId(),
-                "link", image.getLink(),
-                "filename", image.getFilename(),
-                "deleteHash", image.getDeleteHash()
-        ));
+        return ResponseEntity.ok(image.select(ImageSummary.FIELDS));
+    }
+
+    /**
+     * Locates the bytes of an image associated with the given user.
+     *
+     * @param id the image ID
+     * @param userId the user's id from the access token, or null to look it up by username
+     * @param username the username
+     * @return the image content, or empty if the image does not exist for the user or its locally
+     *         stored file is missing
+     */
+    public Optional<ImageContent> getImageContent(Long id, Long userId, String username) {
+        log.info("Retrieving content of image {} for user {}", id, username);
+        Long ownerId = resolveUserId(userId, username);
+        if (ownerId == null) {
+            log.error("User not found: {}", username);
+            return Optional.empty();
+        }
+        // Stored bytes never change, so a hash of them is a strong validator. The hash of the uploaded
+        // content only identifies them if the optimizer left the upload as it was; otherwise, and for
+        // images saved before content hashes were recorded, the tag is weak.
+        return imageRepository.findByIdAndUserId(id, ownerId)
+                .flatMap(image -> {
+                    Path file = imageStorage.localFile(image).orElse(null);
+                    // Only remote links can be redirected to; a local image's link is this endpoint.
+                    if (file == null && !isRemote(image.getLink())) {
+                        log.error("File of image {} is missing from storage", id);
+                        return Optional.empty();
+                    }
+                    Optional<String> storedHash = imageStorage.contentHash(image);
+                    if (storedHash.isPresent()) {
+                        return Optional.of(new ImageContent(image.getFilename(), image.getLink(), file,
+                                storedHash.get(), false));
+                    }
+                    boolean hashed = image.getContentHash() != null;
+                    return Optional.of(new ImageContent(image.getFilename(), image.getLink(), file,
+                            hashed ? image.getContentHash() : image.getImgurId(), !hashed || optimized(image)));
+                });
+    }
+
+    private static boolean optimized(Image image) {
+        return image.getOptimizedSize() != null && !image.getOptimizedSize().equals(image.getOriginalSize());
+    }
+
+    private static boolean isRemote(String link) {
+        return link != null && (link.startsWith("https://") || link.startsWith("http://"));
+    }
+
+    /**
+     * Locates a thumbnail of an image associated with the given user.
+     *
+     * @param id the image ID
+     * @param size the thumbnail size, which must be one of the configured sizes
+     * @param userId the user's id from the access token, or null to look it up by username
+     * @param username the username
+     * @return the thumbnail content, with a null file and the original image link if it has not been generated,
+     *         or empty if the image does not exist for the user or the size is not configured
+     */
+    public Optional<ImageContent> getThumbnail(Long id, int size, Long userId, String username) {
+        log.info("Retrieving {}px thumbnail of image {} for user {}", size, id, username);
+        if (!thumbnailService.supports(size)) {
+            return Optional.empty();
+        }
+        Long ownerId = resolveUserId(userId, username);
+        if (ownerId == null) {
+            log.error("User not found: {}", username);
+            return Optional.empty();
+        }
+        Optional<ImageSummary> image = imageMetadataCache.images(ownerId)
+                .map(cached -> Optional.ofNullable(cached.get(id)))
+                .orElseGet(() -> imageRepository.findSummaryByIdAndUserId(id, ownerId));
+        // A thumbnail is a rendering of the image rather than its bytes, so its tag is weak.
+        return image.map(summary -> new ImageContent(size + ".jpg", summary.getLink(),
+                thumbnailService.find(id, size).orElse(null), summary.getImgurId() + "-" + size, true));
+    }
+
+    /**
+     * Returns the user's usage from the projection maintained by the image events consumer: a single
+     * primary key lookup, however many images the user has.
+     *
+     * @param userId the user's id from the access token, or null to look it up by username
+     * @param username the username
+     * @return ResponseEntity with the image count, total stored bytes and last upload time
+     */
+    public ResponseEntity<Map> getUsageStats(Long userId, String username) {
+        log.info("Retrieving usage stats for user {}", username);
+        Long ownerId = resolveUserId(userId, username);
+        if (ownerId == null) {
+            log.error("User not found: {}", username);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "User not found"));
+        }
+        UserUsage usage = userUsageRepository.findById(ownerId).orElseGet(() -> new UserUsage(ownerId, 0L, 0L, null));
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("imageCount", usage.getImageCount());
+        stats.put("totalBytes", usage.getTotalBytes());
+        stats.put("lastUploadAt", usage.getLastUploadAt());
+        return ResponseEntity.ok(stats);
     }
 
     /**
      * Deletes an image by its delete hash if associated with the given user.
      *
      * @param deleteHash the delete hash
+     * @param userId the user's id from the access token, or null to look it up by username
      * @param username the username
      * @return ResponseEntity with deletion result
      */
-    public ResponseEntity<Map> deleteImage(String deleteHash, String username) {
+    public ResponseEntity<Map> deleteImage(String deleteHash, Long userId, String username) {
+        return join(deleteImageAsync(deleteHash, userId, username));
+    }
+
+    /**
+     * Deletes an image like {@link #deleteImage}, returning while the storage backend works, so that
+     * the request thread is not held when the backend is non-blocking.
+     *
+     * @param deleteHash the delete hash
+     * @param userId the user's id from the access token, or null to look it up by username
+     * @param username the username
+     * @return a future of the ResponseEntity with deletion result
+     */
+    public CompletableFuture<ResponseEntity<Map>> deleteImageAsync(String deleteHash, Long userId, String username) {
         log.info("Deleting image with deleteHash {} for user {}", deleteHash, username);
-        Optional<User> userOptional = userRepository.findByUsername(username);
-        if (userOptional.isEmpty()) {
+        Long ownerId = resolveUserId(userId, username);
+        if (ownerId == null) {
             log.error("User not found: {}", username);
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "User not found"));
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "User not found")));
         }
-        User user = userOptional.get();
-        Optional<Image> imageOptional = imageRepository.findByDeleteHashAndUser(deleteHash, user);
+        Optional<Image> imageOptional = imageRepository.findByDeleteHashAndUserId(deleteHash, ownerId);
         if (imageOptional.isEmpty()) {
             log.error("Image with deleteHash {} not found for user {}", deleteHash, username);
-            return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                    .body(Map.of("error", "Image not found or not associated with the user"));
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "Image not found or not associated with the user")));
         }
         Image image = imageOptional.get();
-        ResponseEntity<Map> deleteResponse = imgurClientService.deleteImage(deleteHash);
-        if (!deleteResponse.getStatusCode().is2xxSuccessful()) {
-            log.error("Imgur deletion failed with status: {}", deleteResponse.getStatusCode());
-            return deleteResponse;
-        }
-        imageRepository.delete(image);
-        log.info("Image with deleteHash {} deleted for user {}", deleteHash, username);
-        return ResponseEntity.ok(Map.of("message", "Image deleted successfully"));
+        return imageStorage.deleteAsync(image)
+                .thenApplyAsync(deleted -> {
+                    imageRepository.delete(image);
+                    imageMetadataCache.removed(ownerId, image.getId());
+                    thumbnailService.delete(image.getId());
+                    publishEvent(ImageEvent.Type.DELETED, ownerId, username, image);
+                    log.info("Image with deleteHash {} deleted for user {}", deleteHash, username);
+                    return ResponseEntity.ok((Map) Map.of("message", "Image deleted successfully"));
+                }, uploadProcessingExecutor)
+                .exceptionally(ImageService::storageFailure);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("images.dedup.hits", dedupHits, LongAdder::sum)
+                .description("Uploads answered with an existing image instead of a storage upload")
+                .register(registry);
+        FunctionCounter.builder("images.dedup.bytes.saved", dedupBytesSaved, LongAdder::sum)
+                .description("Upload bytes not sent to storage because the image already existed")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    private static ContentDigest digest(MultipartFile file) {
+        try {
+            return ContentDigest.of(file.getResource());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Stores one batch file unless the user already has an image with the same content.
+     */
+    private Push push(MultipartFile file, ContentDigest digest, Long ownerId) {
+        Optional<Image> existing = imageRepository.findFirstByUserIdAndContentHash(ownerId, digest.sha256());
+        if (existing.isPresent()) {
+            return new Push(digest, existing.get(), null, digest.size());
+        }
+        return store(file.getResource(), file.getOriginalFilename(), digest);
+    }
+
+    /**
+     * Optimizes content, if enabled, and pushes it to the storage backend.
+     */
+    private Push store(Resource content, String filename, ContentDigest digest) {
+        ImageOptimizer.Optimized optimized = imageOptimizer.optimize(content, filename, digest.size());
+        try {
+            StoredImage stored = imageStorage.store(optimized.content(), optimized.filename());
+            return new Push(digest, null, stored, optimized.size());
+        } finally {
+            optimized.discard();
+        }
+    }
+
+    /**
+     * Pushes optimized content to the storage backend without waiting for it.
+     */
+    private CompletableFuture<Push> storeAsync(ImageOptimizer.Optimized optimized, ContentDigest digest) {
+        CompletableFuture<StoredImage> stored;
+        try {
+            stored = imageStorage.storeAsync(optimized.content(), optimized.filename());
+        } catch (RuntimeException e) {
+            optimized.discard();
+            throw e;
+        }
+        return stored
+                .whenComplete((result, error) -> optimized.discard())
+                .thenApply(result -> new Push(digest, null, result, optimized.size()));
+    }
+
+    private record Push(ContentDigest digest, Image existing, StoredImage stored, long storedSize) {
+    }
+
+    /**
+     * Answers a storage backend rejection with the backend's status and error; any other failure is rethrown.
+     */
+    private static ResponseEntity<Map> storageFailure(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof ImageStorageException e) {
+            return ResponseEntity.status(e.getStatus()).body(e.getBody());
+        }
+        throw error instanceof CompletionException completion ? completion : new CompletionException(cause);
+    }
+
+    /**
+     * Waits for an upload or delete, rethrowing its failure as it would have been thrown on the calling thread.
+     */
+    private static ResponseEntity<Map> join(CompletableFuture<ResponseEntity<Map>> response) {
+        try {
+            return response.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private void recordDuplicate(ContentDigest digest) {
+        dedupHits.increment();
+        dedupBytesSaved.add(digest.size());
+    }
+
+    private static Image newImage(Push push, String filename, User user) {
+        Image image = new Image();
+        image.setImgurId(push.stored().imgurId());
+        image.setLink(push.stored().link());
+        image.setDeleteHash(push.stored().deleteHash());
+        image.setContentHash(push.digest().sha256());
+        image.setOriginalSize(push.digest().size());
+        image.setOptimizedSize(push.storedSize());
+        image.setFilename(filename);  // Set the original file name.
+        image.setUser(user);
+        return image;
+    }
+
+    /**
+     * Saves new images in one transaction. Images whose backend has no public link are linked to
+     * the content endpoint; their ids are assigned on save, before the rows are flushed.
+     */
+    private void persist(List<Image> images) {
+        transactionTemplate.executeWithoutResult(status -> {
+            imageRepository.saveAll(images);
+            for (Image image : images) {
+                if (image.getLink() == null) {
+                    image.setLink("/api/images/" + image.getId() + "/content");
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the user id carried by the access token, falling back to a lookup by username for
+     * tokens issued before the id claim was added.
+     */
+    private Long resolveUserId(Long userId, String username) {
+        if (userId != null) {
+            return userId;
+        }
+        log.debug("No user id in token for {}; looking it up", username);
+        return userLookupCache.findUserId(username);
     }
 }
@@ -0,0 +1,84 @@
+package com.syfproject.img_store.service;
+
+import com.syfproject.img_store.service.resilience.CircuitBreaker;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The resilience counters of an Imgur client, published as the imgur.circuit.*, imgur.calls.* and
+ * imgur.bulkhead.* metrics. Shared by {@link ImgurClientService} and {@link ReactiveImgurClientService},
+ * only one of which exists at a time.
+ */
+@Slf4j
+class ImgurClientMetrics {
+
+    private final Map<CircuitBreaker.State, LongAdder> transitions = new EnumMap<>(CircuitBreaker.State.class);
+    private final LongAdder rejectedOpen = new LongAdder();
+    private final LongAdder rejectedBulkhead = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+
+    ImgurClientMetrics() {
+        for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+            transitions.put(state, new LongAdder());
+        }
+    }
+
+    /**
+     * Records a circuit breaker transition; pass as the breaker's transition callback.
+     */
+    void transitioned(CircuitBreaker.State state) {
+        log.warn("Imgur circuit breaker is now {}", state);
+        transitions.get(state).increment();
+    }
+
+    void rejectedByCircuit() {
+        rejectedOpen.increment();
+    }
+
+    void rejectedByBulkhead() {
+        rejectedBulkhead.increment();
+    }
+
+    void retried() {
+        retries.increment();
+    }
+
+    /**
+     * Registers the counters, the breaker state and the bulkhead occupancy.
+     *
+     * @param registry the meter registry
+     * @param circuitBreaker the client's circuit breaker
+     * @param bulkhead the client's bulkhead
+     * @param bulkheadSize the bulkhead's permits when no call is in flight
+     */
+    void bindTo(MeterRegistry registry, CircuitBreaker circuitBreaker, Semaphore bulkhead, int bulkheadSize) {
+        Gauge.builder("imgur.circuit.state", circuitBreaker, breaker -> breaker.state().ordinal())
+                .description("Imgur circuit breaker state: 0 closed, 1 open, 2 half-open")
+                .register(registry);
+        transitions.forEach((state, counter) -> FunctionCounter.builder("imgur.circuit.transitions", counter, LongAdder::sum)
+                .description("Imgur circuit breaker transitions into each state")
+                .tag("state", state.name().toLowerCase())
+                .register(registry));
+        FunctionCounter.builder("imgur.calls.rejected", rejectedOpen, LongAdder::sum)
+                .description("Imgur calls rejected without being made")
+                .tag("reason", "circuit_open")
+                .register(registry);
+        FunctionCounter.builder("imgur.calls.rejected", rejectedBulkhead, LongAdder::sum)
+                .description("Imgur calls rejected without being made")
+                .tag("reason", "bulkhead_full")
+                .register(registry);
+        FunctionCounter.builder("imgur.calls.retries", retries, LongAdder::sum)
+                .description("Imgur calls retried after a failure")
+                .register(registry);
+        Gauge.builder("imgur.bulkhead.in-flight", bulkhead, b -> bulkheadSize - b.availablePermits())
+                .description("Imgur calls in flight")
+                .register(registry);
+    }
+}
@@ -1,29 +1,97 @@
 /**
  * Service responsible for interacting with the Imgur API.
+ * Calls go through a bulkhead that caps how many are in flight, and a circuit breaker that fails
+ * fast with 503 while Imgur keeps failing. Failures that are safe to repeat are retried with
+ * jittered exponential backoff. This is the blocking client, used unless imgur.client.mode=reactive;
+ * see {@link ReactiveImgurClientService}.
  */
 package com.syfproject.img_store.service;
 
+import com.syfproject.img_store.service.resilience.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ByteArrayResource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.core.io.Resource;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 @Slf4j
 @Service
-public class ImgurClientService {
+@ConditionalOnProperty(name = "imgur.client.mode", havingValue = "blocking", matchIfMissing = true)
+public class ImgurClientService implements MeterBinder {
 
-    @Value("${imgur.client-id}")
-    private String clientId;
+    // Any failure of an idempotent call may be retried; an upload only when Imgur says it did not take it.
+    static final Predicate<HttpStatusCode> RETRY_IDEMPOTENT = status -> status == null || isFailure(status);
+    static final Predicate<HttpStatusCode> RETRY_UPLOAD = status -> status != null
+            && (status.value() == HttpStatus.TOO_MANY_REQUESTS.value() || status.value() == HttpStatus.SERVICE_UNAVAILABLE.value());
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final RestTemplate restTemplate;
+    private final String clientId;
+    private final String apiUrl;
+    private final CircuitBreaker circuitBreaker;
+    private final Semaphore bulkhead;
+    private final int maxConcurrent;
+    private final Duration bulkheadMaxWait;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final ImgurClientMetrics metrics = new ImgurClientMetrics();
+
+    /**
+     * Constructs an ImgurClientService.
+     *
+     * @param imgurRestTemplate the RestTemplate backed by the pooled Imgur HTTP client
+     * @param clientId the Imgur client id
+     * @param apiUrl the Imgur API base URL
+     * @param failureThreshold consecutive failed calls that open the circuit
+     * @param openDuration how long the open circuit rejects calls before letting a probe through
+     * @param maxConcurrent the most Imgur calls in flight at once
+     * @param bulkheadMaxWait how long a call waits for a free slot before it is rejected
+     * @param maxAttempts attempts per call, including the first
+     * @param initialBackoff the backoff cap before the first retry; it doubles with each retry
+     * @param maxBackoff the largest backoff cap
+     */
+    @Autowired
+    public ImgurClientService(@Qualifier("imgurRestTemplate") RestTemplate imgurRestTemplate,
+                              @Value("${imgur.client-id}") String clientId,
+                              @Value("${imgur.api-url:https://api.imgur.com/3}") String apiUrl,
+                              @Value("${imgur.circuit.failure-threshold:5}") int failureThreshold,
+                              @Value("${imgur.circuit.open-duration:30s}") Duration openDuration,
+                              @Value("${imgur.bulkhead.max-concurrent:20}") int maxConcurrent,
+                              @Value("${imgur.bulkhead.max-wait:1s}") Duration bulkheadMaxWait,
+                              @Value("${imgur.retry.max-attempts:3}") int maxAttempts,
+                              @Value("${imgur.retry.initial-backoff:200ms}") Duration initialBackoff,
+                              @Value("${imgur.retry.max-backoff:2s}") Duration maxBackoff) {
+        this.restTemplate = imgurRestTemplate;
+        this.clientId = clientId;
+        this.apiUrl = apiUrl;
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, openDuration.toNanos(), System::nanoTime,
+                metrics::transitioned);
+        this.maxConcurrent = maxConcurrent;
+        this.bulkhead = new Semaphore(maxConcurrent);
+        this.bulkheadMaxWait = bulkheadMaxWait;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+    }
 
     /**
      * Deletes an image on Imgur using the provided delete hash.
@@ -32,12 +100,12 @@ public class ImgurClientService {
      * @return ResponseEntity with the response from Imgur
      */
     public ResponseEntity<Map> deleteImage(String deleteHash) {
-        String url = "https://api.imgur.com/3/image/" + deleteHash;
+        String url = apiUrl + "/image/" + deleteHash;
         HttpHeaders headers = new HttpHeaders();
         headers.set("Authorization", "Client-ID " + clientId);
         HttpEntity<Void> entity = new HttpEntity<>(headers);
         log.debug("Deleting image from Imgur with deleteHash: {}", deleteHash);
-        return restTemplate.exchange(url, HttpMethod.DELETE, entity, Map.class);
+        return call("Delete", RETRY_IDEMPOTENT, () -> restTemplate.exchange(url, HttpMethod.DELETE, entity, Map.class));
     }
 
     /**
@@ -47,37 +115,130 @@ public class ImgurClientService {
      * @return ResponseEntity with the response from Imgur
      */
     public ResponseEntity<Map> uploadImage(MultipartFile file) {
-        try {
-            String url = "https://api.imgur.com/3/image";
+        // The multipart resource streams from the part's InputStream, so large uploads spooled
+        // to disk by the container are never materialized as a byte array.
+        return uploadImage(file.getResource());
+    }
 
-            // Convert file to ByteArrayResource
-            Resource fileResource = new ByteArrayResource(file.getBytes()) {
-                @Override
-                public String getFilename() {
-                    return file.getOriginalFilename();
-                }
-            };
+    /**
+     * Uploads an image to Imgur, streaming the resource content into the outbound request body.
+     *
+     * @param image the image content; its filename is sent as the part filename
+     * @return ResponseEntity with the response from Imgur
+     */
+    public ResponseEntity<Map> uploadImage(Resource image) {
+        String url = apiUrl + "/image";
 
-            // Prepare request body
-            MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-            body.add("image", fileResource);
+        // Prepare request body
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("image", image);
 
-            // Set headers
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("Authorization", "Client-ID " + clientId);
-            headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        // Set headers
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Authorization", "Client-ID " + clientId);
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
 
-            // Create request entity
-            HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
+        // Create request entity
+        HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
 
-            log.info("Uploading image '{}' to Imgur", file.getOriginalFilename());
+        log.info("Uploading image '{}' to Imgur", image.getFilename());
+        // A resource over an already open stream can only be sent once.
+        Predicate<HttpStatusCode> retry = image.isOpen() ? status -> false : RETRY_UPLOAD;
+        return call("Upload", retry, () -> {
             ResponseEntity<Map> response = restTemplate.exchange(url, HttpMethod.POST, requestEntity, Map.class);
             log.debug("Imgur response status: {}", response.getStatusCode());
-            return ResponseEntity.status(response.getStatusCode()).body(response.getBody());
-        } catch (Exception e) {
-            log.error("Error uploading image to Imgur", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(Map.of("error", "Upload failed: " + e.getMessage()));
+            return response;
+        });
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        metrics.bindTo(registry, circuitBreaker, bulkhead, maxConcurrent);
+    }
+
+    /**
+     * Makes an Imgur call through the bulkhead and circuit breaker, retrying failures the policy allows.
+     *
+     * @param operation the operation name, used in error messages
+     * @param retry decides from the failed attempt's status, or null for an I/O failure, whether to try again
+     * @param request the call
+     * @return Imgur's response, Imgur's error status with an error body, 500 for an I/O failure,
+     *         or 503 when the call was rejected
+     */
+    private ResponseEntity<Map> call(String operation, Predicate<HttpStatusCode> retry,
+                                     Supplier<ResponseEntity<Map>> request) {
+        try {
+            if (!bulkhead.tryAcquire(bulkheadMaxWait.toNanos(), TimeUnit.NANOSECONDS)) {
+                metrics.rejectedByBulkhead();
+                log.warn("{} rejected: too many Imgur calls in flight", operation);
+                return unavailable();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return unavailable();
+        }
+        try {
+            for (int attempt = 1; ; attempt++) {
+                if (!circuitBreaker.tryAcquire()) {
+                    metrics.rejectedByCircuit();
+                    log.warn("{} rejected: Imgur circuit breaker is open", operation);
+                    return unavailable();
+                }
+                HttpStatusCode status;
+                RestClientException failure;
+                try {
+                    ResponseEntity<Map> response = request.get();
+                    circuitBreaker.onSuccess();
+                    return ResponseEntity.status(response.getStatusCode()).body(response.getBody());
+                } catch (HttpStatusCodeException e) {
+                    status = e.getStatusCode();
+                    failure = e;
+                    if (isFailure(status)) {
+                        circuitBreaker.onFailure();
+                    } else {
+                        circuitBreaker.onSuccess();
+                    }
+                } catch (RestClientException e) {
+                    status = null;
+                    failure = e;
+                    circuitBreaker.onFailure();
+                }
+                if (attempt >= maxAttempts || !retry.test(status) || !backOff(attempt)) {
+                    log.error("{} to Imgur failed after {} attempt(s)", operation, attempt, failure);
+                    return ResponseEntity.status(status != null ? status : HttpStatus.INTERNAL_SERVER_ERROR)
+                            .body(Map.of("error", operation + " failed: " + failure.getMessage()));
+                }
+                metrics.retried();
+                log.warn("{} to Imgur failed on attempt {}, retrying: {}", operation, attempt, failure.getMessage());
+            }
+        } finally {
+            bulkhead.release();
         }
     }
+
+    /**
+     * Sleeps for a random time up to the exponential backoff cap for the attempt ("full jitter"),
+     * so callers that failed together do not retry together.
+     *
+     * @return false if interrupted
+     */
+    private boolean backOff(int attempt) {
+        long cap = Math.min(maxBackoff.toNanos(), initialBackoff.toNanos() << Math.min(attempt - 1, 20));
+        try {
+            TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(cap + 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    static boolean isFailure(HttpStatusCode status) {
+        return status.is5xxServerError() || status.value() == HttpStatus.TOO_MANY_REQUESTS.value();
+    }
+
+    static ResponseEntity<Map> unavailable() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(Map.of("error", "Imgur is unavailable, try again later"));
+    }
 }
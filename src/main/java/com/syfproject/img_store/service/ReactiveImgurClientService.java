@@ -0,0 +1,270 @@
+/**
+ * Non-blocking client for the Imgur API, used when imgur.client.mode=reactive. Calls return at once
+ * with a future that completes when Imgur answers, so no thread waits on Imgur or on the upload stream. It applies the same
+ * circuit breaker, retry policy and metrics as {@link ImgurClientService}; its bulkhead never waits
+ * for a slot, so it caps in-flight calls at imgur.client.max-in-flight and rejects the rest.
+ */
+package com.syfproject.img_store.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.syfproject.img_store.service.resilience.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "imgur.client.mode", havingValue = "reactive")
+public class ReactiveImgurClientService implements MeterBinder {
+
+    private final HttpClient httpClient;
+    private final Executor executor;
+    private final ObjectMapper objectMapper;
+    private final String clientId;
+    private final String apiUrl;
+    private final Duration readTimeout;
+    private final CircuitBreaker circuitBreaker;
+    private final Semaphore bulkhead;
+    private final int maxInFlight;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final ImgurClientMetrics metrics = new ImgurClientMetrics();
+
+    /**
+     * Constructs a ReactiveImgurClientService.
+     *
+     * @param imgurAsyncHttpClient the non-blocking HTTP client
+     * @param imgurAsyncExecutor the executor responses are completed on, also used to schedule retries
+     * @param objectMapper parses Imgur's JSON responses
+     * @param clientId the Imgur client id
+     * @param apiUrl the Imgur API base URL
+     * @param readTimeout how long to wait for Imgur's response
+     * @param failureThreshold consecutive failed calls that open the circuit
+     * @param openDuration how long the open circuit rejects calls before letting a probe through
+     * @param maxInFlight the most Imgur calls in flight at once
+     * @param maxAttempts attempts per call, including the first
+     * @param initialBackoff the backoff cap before the first retry; it doubles with each retry
+     * @param maxBackoff the largest backoff cap
+     */
+    @Autowired
+    public ReactiveImgurClientService(@Qualifier("imgurAsyncHttpClient") HttpClient imgurAsyncHttpClient,
+                                      @Qualifier("imgurAsyncExecutor") Executor imgurAsyncExecutor,
+                                      ObjectMapper objectMapper,
+                                      @Value("${imgur.client-id}") String clientId,
+                                      @Value("${imgur.api-url:https://api.imgur.com/3}") String apiUrl,
+                                      @Value("${imgur.http.read-timeout:30s}") Duration readTimeout,
+                                      @Value("${imgur.circuit.failure-threshold:5}") int failureThreshold,
+                                      @Value("${imgur.circuit.open-duration:30s}") Duration openDuration,
+                                      @Value("${imgur.client.max-in-flight:500}") int maxInFlight,
+                                      @Value("${imgur.retry.max-attempts:3}") int maxAttempts,
+                                      @Value("${imgur.retry.initial-backoff:200ms}") Duration initialBackoff,
+                                      @Value("${imgur.retry.max-backoff:2s}") Duration maxBackoff) {
+        this.httpClient = imgurAsyncHttpClient;
+        this.executor = imgurAsyncExecutor;
+        this.objectMapper = objectMapper;
+        this.clientId = clientId;
+        this.apiUrl = apiUrl;
+        this.readTimeout = readTimeout;
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, openDuration.toNanos(), System::nanoTime,
+                metrics::transitioned);
+        this.maxInFlight = maxInFlight;
+        this.bulkhead = new Semaphore(maxInFlight);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * Deletes an image on Imgur using the provided delete hash.
+     *
+     * @param deleteHash the delete hash for the image
+     * @return a future of the ResponseEntity with the response from Imgur; it never completes exceptionally
+     */
+    public CompletableFuture<ResponseEntity<Map>> deleteImage(String deleteHash) {
+        HttpRequest request = request("/image/" + deleteHash).DELETE().build();
+        log.debug("Deleting image from Imgur with deleteHash: {}", deleteHash);
+        return call("Delete", ImgurClientService.RETRY_IDEMPOTENT, () -> send(request));
+    }
+
+    /**
+     * Uploads an image to Imgur. A file is sent from disk by the HTTP client; any other content is
+     * read into memory first, on the calling thread, so the client's threads never block on the
+     * upload stream. Either way the body can be sent again, so uploads are retried like blocking ones.
+     *
+     * @param image the image content; its filename is sent as the part filename
+     * @return a future of the ResponseEntity with the response from Imgur; it never completes exceptionally
+     */
+    public CompletableFuture<ResponseEntity<Map>> uploadImage(Resource image) {
+        HttpRequest.BodyPublisher content;
+        try {
+            content = image.isFile()
+                    ? HttpRequest.BodyPublishers.ofFile(image.getFile().toPath())
+                    : HttpRequest.BodyPublishers.ofByteArray(image.getContentAsByteArray());
+        } catch (IOException e) {
+            log.error("Could not read image '{}' for upload", image.getFilename(), e);
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Upload failed: " + e)));
+        }
+        String boundary = UUID.randomUUID().toString();
+        HttpRequest request = request("/image")
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.concat(
+                        HttpRequest.BodyPublishers.ofString("--" + boundary + "\r\n"
+                                + "Content-Disposition: form-data; name=\"image\"; filename=\""
+                                + partFilename(image.getFilename()) + "\"\r\n"
+                                + "Content-Type: application/octet-stream\r\n\r\n", StandardCharsets.UTF_8),
+                        content,
+                        HttpRequest.BodyPublishers.ofString("\r\n--" + boundary + "--\r\n", StandardCharsets.UTF_8)))
+                .build();
+
+        log.info("Uploading image '{}' to Imgur", image.getFilename());
+        return call("Upload", ImgurClientService.RETRY_UPLOAD, () -> send(request));
+    }
+
+    /**
+     * Makes a client-supplied filename safe to quote in a part header: control characters, which
+     * could end the header and start new ones, are dropped, as are quotes and backslashes.
+     */
+    static String partFilename(String filename) {
+        if (filename == null) {
+            return "image";
+        }
+        String safe = filename.codePoints()
+                .filter(c -> c >= 0x20 && c != 0x7f && c != '"' && c != '\\')
+                .collect(StringBuilder::new, StringBuilder::appendCodePoint, StringBuilder::append)
+                .toString();
+        return safe.isBlank() ? "image" : safe;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        metrics.bindTo(registry, circuitBreaker, bulkhead, maxInFlight);
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(apiUrl + path))
+                .timeout(readTimeout)
+                .header("Authorization", "Client-ID " + clientId);
+    }
+
+    private CompletableFuture<HttpResponse<byte[]>> send(HttpRequest request) {
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    /**
+     * Makes an Imgur call through the bulkhead and circuit breaker, retrying failures the policy allows.
+     *
+     * @param operation the operation name, used in error messages
+     * @param retry decides from the failed attempt's status, or null for an I/O failure, whether to try again
+     * @param request starts the call
+     * @return a future of Imgur's response, Imgur's error status with an error body, 500 for an I/O
+     *         failure, or 503 when the call was rejected
+     */
+    private CompletableFuture<ResponseEntity<Map>> call(String operation, Predicate<HttpStatusCode> retry,
+                                                        Supplier<CompletableFuture<HttpResponse<byte[]>>> request) {
+        if (!bulkhead.tryAcquire()) {
+            metrics.rejectedByBulkhead();
+            log.warn("{} rejected: too many Imgur calls in flight", operation);
+            return CompletableFuture.completedFuture(ImgurClientService.unavailable());
+        }
+        CompletableFuture<ResponseEntity<Map>> result = attempt(operation, retry, request, 1);
+        result.whenComplete((response, error) -> bulkhead.release());
+        return result;
+    }
+
+    private CompletableFuture<ResponseEntity<Map>> attempt(String operation, Predicate<HttpStatusCode> retry,
+                                                           Supplier<CompletableFuture<HttpResponse<byte[]>>> request,
+                                                           int attempt) {
+        if (!circuitBreaker.tryAcquire()) {
+            metrics.rejectedByCircuit();
+            log.warn("{} rejected: Imgur circuit breaker is open", operation);
+            return CompletableFuture.completedFuture(ImgurClientService.unavailable());
+        }
+        CompletableFuture<HttpResponse<byte[]>> sent;
+        try {
+            sent = request.get();
+        } catch (RuntimeException e) {
+            sent = CompletableFuture.failedFuture(e);
+        }
+        return sent.handle((response, error) -> {
+            HttpStatusCode status;
+            String failure;
+            if (error != null) {
+                status = null;
+                failure = (error instanceof CompletionException && error.getCause() != null ? error.getCause() : error).toString();
+                circuitBreaker.onFailure();
+            } else {
+                status = HttpStatusCode.valueOf(response.statusCode());
+                if (!status.isError()) {
+                    circuitBreaker.onSuccess();
+                    return CompletableFuture.completedFuture(success(operation, status, response.body()));
+                }
+                failure = status + " from Imgur";
+                if (ImgurClientService.isFailure(status)) {
+                    circuitBreaker.onFailure();
+                } else {
+                    circuitBreaker.onSuccess();
+                }
+            }
+            if (attempt >= maxAttempts || !retry.test(status)) {
+                log.error("{} to Imgur failed after {} attempt(s): {}", operation, attempt, failure);
+                return CompletableFuture.completedFuture(ResponseEntity.status(status != null ? status : HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body((Map) Map.of("error", operation + " failed: " + failure)));
+            }
+            metrics.retried();
+            log.warn("{} to Imgur failed on attempt {}, retrying: {}", operation, attempt, failure);
+            return CompletableFuture.runAsync(() -> { }, CompletableFuture.delayedExecutor(backOff(attempt), TimeUnit.NANOSECONDS, executor))
+                    .thenCompose(ignored -> attempt(operation, retry, request, attempt + 1));
+        }).thenCompose(next -> next);
+    }
+
+    /**
+     * Picks a random delay up to the exponential backoff cap for the attempt ("full jitter"),
+     * so callers that failed together do not retry together.
+     */
+    private long backOff(int attempt) {
+        long cap = Math.min(maxBackoff.toNanos(), initialBackoff.toNanos() << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    private ResponseEntity<Map> success(String operation, HttpStatusCode status, byte[] body) {
+        if (body.length == 0) {
+            return ResponseEntity.status(status).build();
+        }
+        try {
+            return ResponseEntity.status(status).body(objectMapper.readValue(body, Map.class));
+        } catch (IOException e) {
+            log.error("{} to Imgur returned an unreadable response", operation, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", operation + " failed: " + e.getMessage()));
+        }
+    }
+}
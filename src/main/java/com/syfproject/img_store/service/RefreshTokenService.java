@@ -0,0 +1,114 @@
+package com.syfproject.img_store.service;
+
+import com.syfproject.img_store.domain.entity.RefreshToken;
+import com.syfproject.img_store.domain.repository.RefreshTokenRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Issues and rotates opaque refresh tokens, so clients can renew access tokens without sending
+ * their password again. A refresh is one lookup by the token's hash instead of a BCrypt check.
+ * Every exchange replaces the token; presenting an already exchanged token is treated as theft and
+ * revokes all tokens descended from the same login.
+ */
+@Slf4j
+@Service
+public class RefreshTokenService {
+
+    /**
+     * The result of a successful exchange: whose token it was and the token replacing it.
+     */
+    public record Rotation(Long userId, String username, String refreshToken) {
+    }
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final Duration validity;
+    private final SecureRandom random = new SecureRandom();
+
+    @Autowired
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository,
+                               @Value("${jwt.refresh-expiration:30d}") Duration validity) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.validity = validity;
+    }
+
+    /**
+     * Issues a refresh token for a fresh login, starting a new token family. The user's expired
+     * tokens are removed at the same time.
+     *
+     * @param userId the user's id
+     * @param username the username
+     * @return the opaque refresh token
+     */
+    @Transactional
+    public String issue(Long userId, String username) {
+        refreshTokenRepository.deleteExpired(userId, Instant.now());
+        return save(UUID.randomUUID().toString(), userId, username);
+    }
+
+    /**
+     * Exchanges a refresh token for a new one.
+     *
+     * @param token the opaque refresh token presented by the client
+     * @return the rotation, or empty if the token is unknown, expired, revoked or was already used
+     */
+    @Transactional
+    public Optional<Rotation> rotate(String token) {
+        if (token == null || token.isEmpty()) {
+            return Optional.empty();
+        }
+        Instant now = Instant.now();
+        Optional<RefreshToken> found = refreshTokenRepository.findByTokenHash(hash(token));
+        if (found.isEmpty()) {
+            return Optional.empty();
+        }
+        RefreshToken current = found.get();
+        if (current.isRevoked() || current.getExpiresAt().isBefore(now)) {
+            return Optional.empty();
+        }
+        if (refreshTokenRepository.markUsed(current.getId(), now) == 0) {
+            log.warn("Refresh token reuse detected for user {}, revoking its token family", current.getUsername());
+            refreshTokenRepository.revokeFamily(current.getFamilyId());
+            return Optional.empty();
+        }
+        String next = save(current.getFamilyId(), current.getUserId(), current.getUsername());
+        return Optional.of(new Rotation(current.getUserId(), current.getUsername(), next));
+    }
+
+    private String save(String familyId, Long userId, String username) {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        RefreshToken refreshToken = new RefreshToken();
+        refreshToken.setTokenHash(hash(token));
+        refreshToken.setFamilyId(familyId);
+        refreshToken.setUserId(userId);
+        refreshToken.setUsername(username);
+        refreshToken.setExpiresAt(Instant.now().plus(validity));
+        refreshTokenRepository.save(refreshToken);
+        return token;
+    }
+
+    private static String hash(String token) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.syfproject.img_store.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Renders JPEG thumbnails of uploaded images on the bounded thumbnail executor.
+ * Thumbnails are stored as {@code <dir>/<image id>/<size>.jpg}, where size is the longest edge in pixels.
+ */
+@Slf4j
+@Component
+public class ThumbnailService implements MeterBinder {
+
+    private final ThreadPoolTaskExecutor thumbnailExecutor;
+    private final Path dir;
+    private final Path staging;
+    private final List<Integer> sizes;
+    private final float quality;
+    private final long maxPixels;
+    private final LongAdder generated = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    @Autowired
+    public ThumbnailService(@Qualifier("thumbnailExecutor") ThreadPoolTaskExecutor thumbnailExecutor,
+                            @Value("${thumbnails.dir:${java.io.tmpdir}/img-store/thumbnails}") String dir,
+                            @Value("${thumbnails.sizes:200,800}") Integer[] sizes,
+                            @Value("${thumbnails.jpeg-quality:0.8}") float quality,
+                            @Value("${thumbnails.max-pixels:50000000}") long maxPixels) {
+        this.thumbnailExecutor = thumbnailExecutor;
+        this.dir = Paths.get(dir);
+        // Named so that it cannot clash with an image id.
+        this.staging = this.dir.resolve(".staging");
+        this.sizes = Arrays.stream(sizes).sorted().toList();
+        this.quality = quality;
+        this.maxPixels = maxPixels;
+    }
+
+    /**
+     * Queues thumbnail generation for a newly stored image. The content is first staged as a file the
+     * thumbnail step owns, hard-linked where the filesystem allows and copied otherwise, so the caller
+     * may delete its upload or spool file as soon as this returns; the staged file is read and decoded
+     * on the thumbnail executor and deleted once rendered. If the queue is full the thumbnails are
+     * skipped and the image is served at full size instead.
+     *
+     * @param imageId the image ID
+     * @param content the image content
+     */
+    public void generate(Long imageId, Resource content) {
+        if (sizes.isEmpty()) {
+            return;
+        }
+        Path source;
+        try {
+            source = stage(content);
+        } catch (IOException e) {
+            log.error("Could not stage image {} for thumbnail generation", imageId, e);
+            failed.increment();
+            return;
+        }
+        try {
+            thumbnailExecutor.execute(() -> render(imageId, source));
+        } catch (TaskRejectedException e) {
+            log.warn("Thumbnail queue is full, skipping thumbnails for image {}", imageId);
+            rejected.increment();
+            deleteQuietly(source);
+        }
+    }
+
+    /**
+     * Locates a generated thumbnail.
+     *
+     * @param imageId the image ID
+     * @param size the thumbnail size
+     * @return the thumbnail file, or empty if it has not been generated
+     */
+    public Optional<Path> find(Long imageId, int size) {
+        Path path = pathFor(imageId, size);
+        return Files.isRegularFile(path) ? Optional.of(path) : Optional.empty();
+    }
+
+    /**
+     * @param size a thumbnail size
+     * @return whether the size is one of the configured thumbnail sizes
+     */
+    public boolean supports(int size) {
+        return sizes.contains(size);
+    }
+
+    /**
+     * Deletes the thumbnails of an image.
+     *
+     * @param imageId the image ID
+     */
+    public void delete(Long imageId) {
+        try {
+            FileSystemUtils.deleteRecursively(dir.resolve(imageId.toString()));
+        } catch (IOException e) {
+            log.warn("Could not delete thumbnails of image {}", imageId, e);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new ExecutorServiceMetrics(thumbnailExecutor.getThreadPoolExecutor(), "thumbnails", Tags.empty())
+                .bindTo(registry);
+        FunctionCounter.builder("thumbnails.generated", generated, LongAdder::sum)
+                .description("Thumbnails rendered")
+                .register(registry);
+        FunctionCounter.builder("thumbnails.rejected", rejected, LongAdder::sum)
+                .description("Images whose thumbnails were skipped because the queue was full")
+                .register(registry);
+        FunctionCounter.builder("thumbnails.failed", failed, LongAdder::sum)
+                .description("Images whose thumbnails could not be rendered")
+                .register(registry);
+    }
+
+    private void render(Long imageId, Path source) {
+        try (InputStream in = Files.newInputStream(source)) {
+            BufferedImage original = ImageCodec.read(in, maxPixels);
+            if (original == null) {
+                log.warn("Image {} is not in a format ImageIO can decode, skipping thumbnails", imageId);
+                failed.increment();
+                return;
+            }
+            Path imageDir = Files.createDirectories(dir.resolve(imageId.toString()));
+            for (int size : sizes) {
+                Path temp = Files.createTempFile(imageDir, size + "-", ".tmp");
+                ImageCodec.writeJpeg(ImageCodec.scale(original, size, BufferedImage.TYPE_INT_RGB), quality, temp);
+                Files.move(temp, pathFor(imageId, size), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                generated.increment();
+            }
+            log.debug("Generated thumbnails {} for image {}", sizes, imageId);
+        } catch (IOException | RuntimeException e) {
+            log.error("Thumbnail generation failed for image {}", imageId, e);
+            failed.increment();
+        } finally {
+            deleteQuietly(source);
+        }
+    }
+
+    private Path pathFor(Long imageId, int size) {
+        return dir.resolve(imageId.toString()).resolve(size + ".jpg");
+    }
+
+    /**
+     * Links or copies the content into the staging directory.
+     */
+    private Path stage(Resource content) throws IOException {
+        Path staged = staging.resolve(UUID.randomUUID() + ".src");
+        Files.createDirectories(staging);
+        if (content.isFile()) {
+            try {
+                return Files.createLink(staged, content.getFile().toPath());
+            } catch (IOException | UnsupportedOperationException e) {
+                log.debug("Could not link {} for thumbnails, copying it", content, e);
+            }
+        }
+        try (InputStream in = content.getInputStream()) {
+            Files.copy(in, staged);
+        } catch (IOException e) {
+            deleteQuietly(staged);
+            throw e;
+        }
+        return staged;
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete staged thumbnail source {}", path, e);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.syfproject.img_store.service;
+
+import com.syfproject.img_store.domain.entity.UploadJob;
+import com.syfproject.img_store.domain.repository.UploadJobRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Accepts uploads for background processing and tracks their progress.
+ * Jobs are recorded in the database so queued work is resumed after a restart.
+ */
+@Slf4j
+@Service
+public class UploadJobService {
+
+    private final UploadJobRepository uploadJobRepository;
+    private final ImageService imageService;
+    private final UploadSpooler uploadSpooler;
+    private final ThreadPoolTaskExecutor uploadJobExecutor;
+
+    @Autowired
+    public UploadJobService(UploadJobRepository uploadJobRepository,
+                            ImageService imageService,
+                            UploadSpooler uploadSpooler,
+                            @Qualifier("uploadJobExecutor") ThreadPoolTaskExecutor uploadJobExecutor) {
+        this.uploadJobRepository = uploadJobRepository;
+        this.imageService = imageService;
+        this.uploadSpooler = uploadSpooler;
+        this.uploadJobExecutor = uploadJobExecutor;
+    }
+
+    /**
+     * Spools the file, records a job and queues it for upload.
+     *
+     * @param file the image file
+     * @param userId the uploader's id from the access token, or null to look it up by username
+     * @param username the username of the uploader
+     * @return ResponseEntity with 202 Accepted and the job id, or 503 if the job queue is full
+     */
+    public ResponseEntity<Map> submit(MultipartFile file, Long userId, String username) {
+        log.info("Queueing asynchronous upload for user: {}", username);
+        Path spooled;
+        try {
+            spooled = uploadSpooler.spool(file);
+        } catch (IOException e) {
+            log.error("Failed to spool upload for user {}", username, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Upload failed: " + e.getMessage()));
+        }
+
+        Instant now = Instant.now();
+        UploadJob job = new UploadJob();
+        job.setId(UUID.randomUUID().toString());
+        job.setUserId(userId);
+        job.setUsername(username);
+        job.setFilename(file.getOriginalFilename());
+        job.setSpoolPath(spooled.toString());
+        job.setStatus(UploadJob.Status.QUEUED);
+        job.setCreatedAt(now);
+        job.setUpdatedAt(now);
+        uploadJobRepository.save(job);
+
+        if (!enqueue(job.getId())) {
+            markFailed(job, "Upload queue is full");
+            uploadSpooler.discard(spooled);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "Upload queue is full, try again later"));
+        }
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/images/jobs/" + job.getId()))
+                .body(Map.of("jobId", job.getId(), "status", job.getStatus().name()));
+    }
+
+    /**
+     * Retrieves the status of a job owned by the given user.
+     *
+     * @param id the job id
+     * @param username the username
+     * @return ResponseEntity with the job status or 404 if the job does not exist for the user
+     */
+    public ResponseEntity<Map> getJob(String id, String username) {
+        Optional<UploadJob> jobOptional = uploadJobRepository.findByIdAndUsername(id, username);
+        if (jobOptional.isEmpty()) {
+            log.error("Upload job {} not found for user {}", id, username);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Upload job not found"));
+        }
+        UploadJob job = jobOptional.get();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("jobId", job.getId());
+        body.put("status", job.getStatus().name());
+        body.put("filename", job.getFilename());
+        body.put("createdAt", job.getCreatedAt());
+        body.put("updatedAt", job.getUpdatedAt());
+        if (job.getImageId() != null) {
+            body.put("imageId", job.getImageId());
+            body.put("imageLink", job.getImageLink());
+        }
+        if (job.getError() != null) {
+            body.put("error", job.getError());
+        }
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * Re-queues jobs that were queued or in flight when the application last stopped. Jobs that do
+     * not fit in the queue are failed, as they would be on submission, rather than left queued.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePendingJobs() {
+        List<UploadJob> pending = uploadJobRepository.findByStatusInOrderByCreatedAt(
+                EnumSet.of(UploadJob.Status.QUEUED, UploadJob.Status.UPLOADING));
+        if (!pending.isEmpty()) {
+            log.info("Resuming {} pending upload jobs", pending.size());
+        }
+        for (UploadJob job : pending) {
+            if (!Files.exists(Paths.get(job.getSpoolPath()))) {
+                markFailed(job, "Spooled upload was lost");
+            } else if (!enqueue(job.getId())) {
+                markFailed(job, "Upload queue is full");
+                uploadSpooler.discard(Paths.get(job.getSpoolPath()));
+            }
+        }
+    }
+
+    private boolean enqueue(String jobId) {
+        try {
+            uploadJobExecutor.execute(() -> process(jobId));
+            return true;
+        } catch (TaskRejectedException e) {
+            log.warn("Upload job {} rejected: queue is full", jobId);
+            return false;
+        }
+    }
+
+    private void process(String jobId) {
+        Optional<UploadJob> jobOptional = uploadJobRepository.findById(jobId);
+        if (jobOptional.isEmpty()) {
+            log.warn("Upload job {} disappeared before processing", jobId);
+            return;
+        }
+        UploadJob job = jobOptional.get();
+        Path spooled = Paths.get(job.getSpoolPath());
+        updateStatus(job, UploadJob.Status.UPLOADING);
+        try {
+            ResponseEntity<Map> response = imageService.uploadImage(
+                    uploadSpooler.open(spooled, job.getFilename()), job.getFilename(), job.getUserId(), job.getUsername());
+            Map<?, ?> body = response.getBody();
+            if (response.getStatusCode().is2xxSuccessful()) {
+                job.setImageId(((Number) body.get("id")).longValue());
+                job.setImageLink((String) body.get("imageLink"));
+                updateStatus(job, UploadJob.Status.COMPLETED);
+                log.info("Upload job {} completed for user {}", jobId, job.getUsername());
+            } else {
+                Object error = body != null ? body.get("error") : null;
+                markFailed(job, error != null ? error.toString() : "Upload failed with status " + response.getStatusCode());
+            }
+        } catch (Exception e) {
+            log.error("Upload job {} failed", jobId, e);
+            markFailed(job, "Upload failed: " + e.getMessage());
+        } finally {
+            uploadSpooler.discard(spooled);
+        }
+    }
+
+    private void markFailed(UploadJob job, String error) {
+        job.setError(error.length() > 1024 ? error.substring(0, 1024) : error);
+        updateStatus(job, UploadJob.Status.FAILED);
+        log.warn("Upload job {} failed: {}", job.getId(), error);
+    }
+
+    private void updateStatus(UploadJob job, UploadJob.Status status) {
+        job.setStatus(status);
+        job.setUpdatedAt(Instant.now());
+        uploadJobRepository.save(job);
+    }
+}
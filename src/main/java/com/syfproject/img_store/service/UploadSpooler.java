@@ -0,0 +1,73 @@
+package com.syfproject.img_store.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.UUID;
+
+/**
+ * Copies uploads to a local spool directory so they outlive the request that carried them.
+ */
+@Slf4j
+@Component
+public class UploadSpooler {
+
+    private final Path spoolDir;
+
+    public UploadSpooler(@Value("${upload.spool-dir:${java.io.tmpdir}/img-store/spool}") String spoolDir) {
+        this.spoolDir = Paths.get(spoolDir);
+    }
+
+    /**
+     * Spools a multipart file to disk. Parts the container already wrote to a temp file are moved
+     * rather than copied.
+     *
+     * @param file the uploaded file
+     * @return the path of the spooled file
+     * @throws IOException if the file cannot be written
+     */
+    public Path spool(MultipartFile file) throws IOException {
+        Files.createDirectories(spoolDir);
+        Path target = spoolDir.resolve(UUID.randomUUID() + ".upload");
+        file.transferTo(target);
+        log.debug("Spooled upload '{}' to {}", file.getOriginalFilename(), target);
+        return target;
+    }
+
+    /**
+     * Opens a spooled file as a Resource that reports the original filename.
+     *
+     * @param path the spooled file
+     * @param filename the original filename
+     * @return a Resource streaming the spooled file
+     */
+    public Resource open(Path path, String filename) {
+        return new FileSystemResource(path) {
+            @Override
+            public String getFilename() {
+                return filename;
+            }
+        };
+    }
+
+    /**
+     * Deletes a spooled file, logging rather than failing if it cannot be removed.
+     *
+     * @param path the spooled file
+     */
+    public void discard(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete spooled upload {}", path, e);
+        }
+    }
+}
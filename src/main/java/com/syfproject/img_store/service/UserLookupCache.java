@@ -0,0 +1,110 @@
+package com.syfproject.img_store.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.syfproject.img_store.domain.entity.User;
+import com.syfproject.img_store.domain.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Size- and TTL-bounded cache of user lookups by username, shared by the login path, the
+ * registration duplicate check and the username to id fallback for older tokens.
+ * Unknown usernames are cached too, for a shorter time, so repeated lookups of a missing user
+ * do not reach the database. Hit, miss and eviction counts are published as "cache.*" metrics
+ * tagged cache=users.
+ */
+@Slf4j
+@Component
+public class UserLookupCache implements MeterBinder {
+
+    /**
+     * The cached view of a user. UserDetails instances are built from it per request, because
+     * Spring Security erases the credentials of the UserDetails it authenticates.
+     */
+    public record CachedUser(Long id, String username, String passwordHash) {
+    }
+
+    private final UserRepository userRepository;
+    private final Cache<String, Optional<CachedUser>> cache;
+
+    @Autowired
+    public UserLookupCache(UserRepository userRepository,
+                           @Value("${users.cache.maximum-size:10000}") long maximumSize,
+                           @Value("${users.cache.ttl:10m}") Duration ttl,
+                           @Value("${users.cache.negative-ttl:30s}") Duration negativeTtl) {
+        this.userRepository = userRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, Optional<CachedUser>>() {
+                    @Override
+                    public long expireAfterCreate(String username, Optional<CachedUser> user, long currentTime) {
+                        return (user.isPresent() ? ttl : negativeTtl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String username, Optional<CachedUser> user,
+                                                  long currentTime, long currentDuration) {
+                        return expireAfterCreate(username, user, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String username, Optional<CachedUser> user,
+                                                long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Looks up a user by username, loading it from the database on a miss.
+     *
+     * @param username the username
+     * @return the user, or empty if no user has that username
+     */
+    public Optional<CachedUser> find(String username) {
+        return cache.get(username, this::load);
+    }
+
+    /**
+     * Looks up a user's id by username.
+     *
+     * @param username the username
+     * @return the user id, or null if no user has that username
+     */
+    public Long findUserId(String username) {
+        return find(username).map(CachedUser::id).orElse(null);
+    }
+
+    /**
+     * Drops the cached entry for a username. Must be called whenever a user is created or their
+     * password changes.
+     *
+     * @param username the username
+     */
+    public void invalidate(String username) {
+        cache.invalidate(username);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "users");
+    }
+
+    private Optional<CachedUser> load(String username) {
+        log.debug("User cache miss for username: {}", username);
+        return userRepository.findByUsername(username)
+                .map(user -> new CachedUser(user.getId(), user.getUsername(), user.getPassword()));
+    }
+}
@@ -0,0 +1,256 @@
+package com.syfproject.img_store.service.events;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publishes events to Kafka without ever blocking the caller.
+ *
+ * <p>Events go into a bounded in-memory buffer that a single background thread sends from. When the
+ * buffer is full, for example while the broker is down, events spill to a memory-mapped journal on disk.
+ * While the journal holds events, new events are appended to it too, so that everything is sent in the
+ * order it was published once the broker is back. Failed sends are retried from the first unacknowledged
+ * event, so delivery is at least once. Events that arrive while the journal is also full are dropped.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "kafka.enabled", havingValue = "true")
+public class EventPublisher implements MeterBinder {
+
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final BlockingQueue<PendingEvent> buffer;
+    private final SpillJournal journal;
+    private final int batchSize;
+    private final Duration retryBackoff;
+    private final Thread sender = new Thread(this::run, "event-publisher");
+    private final LongAdder published = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder sendFailures = new LongAdder();
+    private volatile boolean spilling;
+    private volatile boolean running = true;
+
+    /** Events taken from the buffer or journal that have not been acknowledged yet. */
+    private List<PendingEvent> inFlight = List.of();
+    /** Journal positions to commit as the in-flight events are acknowledged, or null if they came from the buffer. */
+    private List<Long> inFlightJournalPositions;
+
+    @Autowired
+    public EventPublisher(KafkaTemplate<String, byte[]> kafkaTemplate,
+                          @Value("${kafka.publisher.buffer-capacity:10000}") int bufferCapacity,
+                          @Value("${kafka.publisher.journal-file:${java.io.tmpdir}/img-store/events.journal}") String journalFile,
+                          @Value("${kafka.publisher.journal-size:64MB}") DataSize journalSize,
+                          @Value("${kafka.publisher.batch-size:500}") int batchSize,
+                          @Value("${kafka.publisher.retry-backoff:1s}") Duration retryBackoff) throws IOException {
+        this.kafkaTemplate = kafkaTemplate;
+        this.buffer = new ArrayBlockingQueue<>(bufferCapacity);
+        this.journal = new SpillJournal(Paths.get(journalFile), (int) journalSize.toBytes());
+        this.batchSize = batchSize;
+        this.retryBackoff = retryBackoff;
+        // Events left over from a previous run go out before anything new.
+        this.spilling = !journal.isEmpty();
+        sender.setDaemon(true);
+    }
+
+    @PostConstruct
+    void start() {
+        if (spilling) {
+            log.info("Replaying {} bytes of journaled events", journal.pendingBytes());
+        }
+        sender.start();
+    }
+
+    /**
+     * Queues an event for sending. Never blocks.
+     *
+     * @param topic the topic to send to
+     * @param key the record key, or null
+     * @param value the serialized event
+     */
+    public void publish(String topic, String key, byte[] value) {
+        PendingEvent event = new PendingEvent(topic, key, value);
+        if (!spilling && buffer.offer(event)) {
+            return;
+        }
+        synchronized (journal) {
+            spilling = true;
+            if (journal.append(event)) {
+                spilled.increment();
+            } else {
+                dropped.increment();
+                log.error("Event journal is full, dropping event for topic {}", topic);
+            }
+        }
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException, IOException {
+        running = false;
+        sender.interrupt();
+        sender.join(TimeUnit.SECONDS.toMillis(10));
+        // Keep whatever was not sent for the next run. Buffered events are older than journaled ones,
+        // so they go in front of them.
+        List<PendingEvent> unsent = new ArrayList<>(inFlightJournalPositions == null ? inFlight : List.of());
+        buffer.drainTo(unsent);
+        synchronized (journal) {
+            if (!unsent.isEmpty()) {
+                dropped.add(journal.prepend(unsent));
+            }
+            journal.close();
+        }
+        if (!unsent.isEmpty()) {
+            log.info("Journaled {} unsent events on shutdown", unsent.size());
+        }
+    }
+
+    /**
+     * @return the number of events written to the journal so far
+     */
+    long spilledCount() {
+        return spilled.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("events.buffer.size", buffer, BlockingQueue::size)
+                .description("Events waiting in memory to be sent")
+                .register(registry);
+        Gauge.builder("events.journal.pending", journal, SpillJournal::pendingBytes)
+                .description("Bytes of spilled events waiting to be replayed")
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder("events.published", published, LongAdder::sum)
+                .description("Events acknowledged by Kafka")
+                .register(registry);
+        FunctionCounter.builder("events.spilled", spilled, LongAdder::sum)
+                .description("Events written to the disk journal")
+                .register(registry);
+        FunctionCounter.builder("events.dropped", dropped, LongAdder::sum)
+                .description("Events dropped because the buffer and journal were full")
+                .register(registry);
+        FunctionCounter.builder("events.send.failures", sendFailures, LongAdder::sum)
+                .description("Failed attempts to send a batch of events")
+                .register(registry);
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                if (inFlight.isEmpty() && !nextBatch()) {
+                    continue;
+                }
+                int sent = send(inFlight);
+                boolean failed = sent < inFlight.size();
+                if (inFlightJournalPositions != null) {
+                    // Journal entries stay on disk until acknowledged; unsent ones are read again next time.
+                    if (sent > 0) {
+                        journal.commit(inFlightJournalPositions.get(sent - 1));
+                    }
+                    inFlight = List.of();
+                } else {
+                    inFlight = sent == inFlight.size() ? List.of() : new ArrayList<>(inFlight.subList(sent, inFlight.size()));
+                }
+                if (failed) {
+                    sendFailures.increment();
+                    Thread.sleep(retryBackoff.toMillis());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Unexpected error in event publisher", e);
+            }
+        }
+    }
+
+    /**
+     * Takes the next batch: buffered events first, since they were published before anything that spilled,
+     * then the journal. Waits briefly when there is nothing to send.
+     *
+     * @return whether a batch was taken
+     */
+    private boolean nextBatch() throws InterruptedException {
+        List<PendingEvent> batch = new ArrayList<>();
+        buffer.drainTo(batch, batchSize);
+        if (!batch.isEmpty()) {
+            inFlight = batch;
+            inFlightJournalPositions = null;
+            return true;
+        }
+        if (spilling) {
+            SpillJournal.Batch replay = journal.peek(batchSize);
+            if (!replay.events().isEmpty()) {
+                inFlight = replay.events();
+                inFlightJournalPositions = replay.endPositions();
+                return true;
+            }
+            synchronized (journal) {
+                if (journal.isEmpty()) {
+                    spilling = false;
+                    log.info("Event journal replayed");
+                }
+            }
+            return false;
+        }
+        PendingEvent event = buffer.poll(100, TimeUnit.MILLISECONDS);
+        if (event != null) {
+            inFlight = List.of(event);
+            inFlightJournalPositions = null;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sends a batch and waits for the acknowledgements.
+     *
+     * @return the number of leading events that were acknowledged
+     */
+    private int send(List<PendingEvent> batch) throws InterruptedException {
+        List<CompletableFuture<?>> results = new ArrayList<>(batch.size());
+        try {
+            for (PendingEvent event : batch) {
+                results.add(kafkaTemplate.send(event.topic(), event.key(), event.value()));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not send events: {}", e.getMessage());
+        }
+        int acknowledged = 0;
+        for (CompletableFuture<?> result : results) {
+            try {
+                result.get();
+            } catch (Exception e) {
+                if (e instanceof InterruptedException interrupted) {
+                    throw interrupted;
+                }
+                log.warn("Event was not acknowledged: {}", e.getMessage());
+                break;
+            }
+            acknowledged++;
+        }
+        published.add(acknowledged);
+        return acknowledged;
+    }
+}
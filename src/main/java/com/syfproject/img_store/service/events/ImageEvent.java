@@ -0,0 +1,30 @@
+package com.syfproject.img_store.service.events;
+
+/**
+ * An event about a user's images, published to the image-uploads topic keyed by user id.
+ *
+ * @param type what happened to the image
+ * @param userId the owner's id
+ * @param username the owner's username
+ * @param imageId the image ID
+ * @param imageLink the image link
+ * @param size the stored size of the image in bytes
+ * @param timestamp when the event happened, in epoch milliseconds
+ */
+public record ImageEvent(Type type, long userId, String username, long imageId, String imageLink,
+                         long size, long timestamp) {
+
+    public static final String TOPIC = "image-uploads";
+
+    public enum Type {
+        UPLOADED,
+        DELETED
+    }
+
+    /**
+     * @return the record key, which keeps each user's events on one partition and in order
+     */
+    public String key() {
+        return Long.toString(userId);
+    }
+}
@@ -0,0 +1,56 @@
+package com.syfproject.img_store.service.events;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads events written by {@link ImageEventSerializer}.
+ */
+public class ImageEventDeserializer implements Deserializer<ImageEvent> {
+
+    @Override
+    public ImageEvent deserialize(String topic, byte[] data) {
+        return data == null ? null : fromBytes(data);
+    }
+
+    /**
+     * @param data a serialized event
+     * @return the event
+     * @throws SerializationException if the data is not a serialized event
+     */
+    public static ImageEvent fromBytes(byte[] data) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            byte version = buffer.get();
+            if (version != ImageEventSerializer.VERSION) {
+                throw new SerializationException("Unsupported image event version " + version);
+            }
+            ImageEvent.Type type = ImageEvent.Type.values()[buffer.get()];
+            long userId = buffer.getLong();
+            long imageId = buffer.getLong();
+            long size = buffer.getLong();
+            long timestamp = buffer.getLong();
+            return new ImageEvent(type, userId, getString(buffer), imageId, getString(buffer), size, timestamp);
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new SerializationException("Malformed image event", e);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        short length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new SerializationException("Malformed image event: string of " + length + " bytes with only "
+                    + buffer.remaining() + " left");
+        }
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,57 @@
+package com.syfproject.img_store.service.events;
+
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes an ImageEvent in a compact binary layout:
+ * {@code byte version | byte type | long userId | long imageId | long size | long timestamp |
+ * short length + UTF-8 username | short length + UTF-8 imageLink}, where a length of -1 means null.
+ */
+public class ImageEventSerializer implements Serializer<ImageEvent> {
+
+    static final byte VERSION = 1;
+
+    @Override
+    public byte[] serialize(String topic, ImageEvent event) {
+        return event == null ? null : toBytes(event);
+    }
+
+    /**
+     * @param event the event
+     * @return the serialized event
+     */
+    public static byte[] toBytes(ImageEvent event) {
+        byte[] username = utf8(event.username());
+        byte[] link = utf8(event.imageLink());
+        ByteBuffer buffer = ByteBuffer.allocate(2 + 4 * Long.BYTES + 2 * Short.BYTES
+                + (username != null ? username.length : 0) + (link != null ? link.length : 0));
+        buffer.put(VERSION);
+        buffer.put((byte) event.type().ordinal());
+        buffer.putLong(event.userId());
+        buffer.putLong(event.imageId());
+        buffer.putLong(event.size());
+        buffer.putLong(event.timestamp());
+        putString(buffer, username);
+        putString(buffer, link);
+        return buffer.array();
+    }
+
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        if (value.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Event field is too long: " + value.length + " bytes");
+        }
+        buffer.putShort((short) value.length);
+        buffer.put(value);
+    }
+}
@@ -0,0 +1,11 @@
+package com.syfproject.img_store.service.events;
+
+/**
+ * An event waiting to be sent to Kafka.
+ *
+ * @param topic the topic to send to
+ * @param key the record key, or null to let the producer pick a partition
+ * @param value the serialized event
+ */
+public record PendingEvent(String topic, String key, byte[] value) {
+}
@@ -0,0 +1,210 @@
+package com.syfproject.img_store.service.events;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only journal of events, memory-mapped from a fixed-size file so appends are plain memory writes.
+ * The file starts with the read and write positions, so events that were not replayed survive a restart.
+ * Entries are replayed in append order; once everything has been replayed the journal starts over from
+ * the beginning of the file. Once half the file has been replayed, or when an append does not fit, the
+ * entries still waiting are moved to the front, but only when they do not overlap their new place, so a
+ * crash during the move leaves the old entries intact. When no room can be made, appends are refused.
+ *
+ * <p>The file is locked while it is open, so two processes configured with the same path fail fast
+ * instead of overwriting each other's entries.
+ *
+ * <p>Entry layout: {@code int length | short topic length | topic | int key length (-1 for none) | key | value}.
+ */
+class SpillJournal implements Closeable {
+
+    private static final int HEADER = 8;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private int readPosition;
+    private int writePosition;
+    /** Bytes moved out from under the positions handed out by {@link #peek}, which are offset by it. */
+    private long shifted;
+
+    /**
+     * Opens or creates a journal.
+     *
+     * @param file the journal file
+     * @param capacity the size of the file in bytes
+     * @throws IOException if the file cannot be mapped, or is locked by another journal
+     */
+    SpillJournal(Path file, int capacity) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.tryLock() == null) {
+                throw new IOException("Event journal " + file + " is in use by another process");
+            }
+        } catch (OverlappingFileLockException e) {
+            channel.close();
+            throw new IOException("Event journal " + file + " is already open", e);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        readPosition = buffer.getInt(0);
+        writePosition = buffer.getInt(4);
+        if (readPosition < HEADER || writePosition < readPosition || writePosition > capacity) {
+            readPosition = HEADER;
+            writePosition = HEADER;
+            storePositions();
+        }
+    }
+
+    /**
+     * Appends an event.
+     *
+     * @param event the event
+     * @return false if the journal has no room for it
+     */
+    synchronized boolean append(PendingEvent event) {
+        byte[] topic = event.topic().getBytes(StandardCharsets.UTF_8);
+        byte[] key = event.key() != null ? event.key().getBytes(StandardCharsets.UTF_8) : null;
+        int length = 2 + topic.length + 4 + (key != null ? key.length : 0) + event.value().length;
+        if (writePosition + 4 + length > buffer.capacity() && (!compact() || writePosition + 4 + length > buffer.capacity())) {
+            return false;
+        }
+        buffer.position(writePosition);
+        buffer.putInt(length);
+        buffer.putShort((short) topic.length);
+        buffer.put(topic);
+        buffer.putInt(key != null ? key.length : -1);
+        if (key != null) {
+            buffer.put(key);
+        }
+        buffer.put(event.value());
+        // Publish the entry only after its bytes are in place.
+        writePosition = buffer.position();
+        storePositions();
+        return true;
+    }
+
+    /**
+     * Reads the oldest entries without removing them.
+     *
+     * @param max the maximum number of entries to read
+     * @return the entries and, for each, the position to {@link #commit} once it has been sent
+     */
+    synchronized Batch peek(int max) {
+        List<PendingEvent> events = new ArrayList<>();
+        List<Long> endPositions = new ArrayList<>();
+        int position = readPosition;
+        while (position < writePosition && events.size() < max) {
+            buffer.position(position);
+            int length = buffer.getInt();
+            byte[] topic = new byte[buffer.getShort()];
+            buffer.get(topic);
+            int keyLength = buffer.getInt();
+            byte[] key = keyLength >= 0 ? new byte[keyLength] : null;
+            if (key != null) {
+                buffer.get(key);
+            }
+            byte[] value = new byte[position + 4 + length - buffer.position()];
+            buffer.get(value);
+            events.add(new PendingEvent(new String(topic, StandardCharsets.UTF_8),
+                    key != null ? new String(key, StandardCharsets.UTF_8) : null, value));
+            position = buffer.position();
+            endPositions.add(shifted + position);
+        }
+        return new Batch(events, endPositions);
+    }
+
+    /**
+     * Removes the entries up to a position returned by {@link #peek}.
+     *
+     * @param position the position after the last sent entry
+     */
+    synchronized void commit(long position) {
+        readPosition = (int) (position - shifted);
+        if (readPosition == writePosition) {
+            shifted += readPosition - HEADER;
+            readPosition = HEADER;
+            writePosition = HEADER;
+        } else if (readPosition >= buffer.capacity() / 2) {
+            compact();
+        }
+        storePositions();
+    }
+
+    /**
+     * Moves the entries waiting to be replayed to the front of the file, if they fit in front of where
+     * they are now.
+     *
+     * @return whether the entries were moved
+     */
+    private boolean compact() {
+        int pending = writePosition - readPosition;
+        if (readPosition == HEADER || pending > readPosition - HEADER) {
+            return false;
+        }
+        buffer.put(HEADER, buffer, readPosition, pending);
+        shifted += readPosition - HEADER;
+        readPosition = HEADER;
+        writePosition = HEADER + pending;
+        storePositions();
+        return true;
+    }
+
+    /**
+     * Puts events in front of the entries already in the journal, rewriting it.
+     *
+     * @param events the events, which are older than everything in the journal
+     * @return the number of events, old or new, that no longer fit and were dropped
+     */
+    synchronized int prepend(List<PendingEvent> events) {
+        List<PendingEvent> all = new ArrayList<>(events);
+        all.addAll(peek(Integer.MAX_VALUE).events());
+        shifted += readPosition - HEADER;
+        readPosition = HEADER;
+        writePosition = HEADER;
+        storePositions();
+        int dropped = 0;
+        for (PendingEvent event : all) {
+            if (!append(event)) {
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    synchronized boolean isEmpty() {
+        return readPosition == writePosition;
+    }
+
+    /**
+     * @return the number of bytes of entries waiting to be replayed
+     */
+    synchronized int pendingBytes() {
+        return writePosition - readPosition;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private void storePositions() {
+        buffer.putInt(0, readPosition);
+        buffer.putInt(4, writePosition);
+    }
+
+    record Batch(List<PendingEvent> events, List<Long> endPositions) {
+    }
+}
@@ -0,0 +1,150 @@
+package com.syfproject.img_store.service.events;
+
+import com.syfproject.img_store.domain.entity.ProjectionOffset;
+import com.syfproject.img_store.domain.entity.UserUsage;
+import com.syfproject.img_store.domain.repository.ImageRepository;
+import com.syfproject.img_store.domain.repository.ProjectionOffsetRepository;
+import com.syfproject.img_store.domain.repository.UserUsageRepository;
+import com.syfproject.img_store.dto.UsageTotals;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps per-user usage (image count, stored bytes, last upload) up to date from the image events topic.
+ *
+ * <p>Each batch is applied in one database transaction together with the next offset of every partition
+ * it touched. On assignment the consumer seeks to the stored offsets, and records below them are skipped,
+ * so redelivered or replayed events are never counted twice.
+ *
+ * <p>When no offset has been stored yet, for example on the first start against an existing database,
+ * usage is seeded from the images table and the consumer starts at the end of the topic, since the
+ * history is already in the totals. Images do not record when they were uploaded, so the last upload
+ * time starts empty. Events for changes made while the seed runs may be missed or counted twice.
+ *
+ * <p>Events are keyed by user, so one user's events are applied in the order they were published. A
+ * delete is published after its transaction commits, so in the short window between an upload's
+ * commit and its event being queued, a delete of that image can be queued first. The deleted image
+ * then stays counted; counts never go below zero.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "kafka.enabled", havingValue = "true")
+public class UsageProjection implements ConsumerSeekAware {
+
+    static final String NAME = "usage";
+
+    private final UserUsageRepository userUsageRepository;
+    private final ProjectionOffsetRepository projectionOffsetRepository;
+    private final ImageRepository imageRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public UsageProjection(UserUsageRepository userUsageRepository,
+                           ProjectionOffsetRepository projectionOffsetRepository,
+                           ImageRepository imageRepository,
+                           PlatformTransactionManager transactionManager) {
+        this.userUsageRepository = userUsageRepository;
+        this.projectionOffsetRepository = projectionOffsetRepository;
+        this.imageRepository = imageRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        if (!projectionOffsetRepository.existsByIdStartingWith(NAME + ":")) {
+            seed();
+            assignments.keySet().forEach(partition -> callback.seekToEnd(partition.topic(), partition.partition()));
+            return;
+        }
+        for (TopicPartition partition : assignments.keySet()) {
+            projectionOffsetRepository.findById(offsetId(partition.topic(), partition.partition()))
+                    .ifPresent(offset -> callback.seek(partition.topic(), partition.partition(), offset.getNextOffset()));
+        }
+    }
+
+    /**
+     * Applies a batch of image events.
+     *
+     * @param records the records, in offset order per partition
+     */
+    @KafkaListener(id = "usage-projection", topics = ImageEvent.TOPIC,
+            containerFactory = "imageEventListenerContainerFactory", properties = "auto.offset.reset=earliest")
+    public void onEvents(List<ConsumerRecord<String, ImageEvent>> records) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<String, ProjectionOffset> offsets = new HashMap<>();
+            Map<Long, UserUsage> usages = new HashMap<>();
+            for (ConsumerRecord<String, ImageEvent> record : records) {
+                String offsetId = offsetId(record.topic(), record.partition());
+                ProjectionOffset offset = offsets.computeIfAbsent(offsetId, id -> projectionOffsetRepository.findById(id)
+                        .orElseGet(() -> new ProjectionOffset(id, 0L)));
+                if (record.offset() < offset.getNextOffset()) {
+                    log.debug("Skipping already applied event at {}:{}", offsetId, record.offset());
+                    continue;
+                }
+                ImageEvent event = record.value();
+                if (event != null) {
+                    apply(usages.computeIfAbsent(event.userId(), userId -> userUsageRepository.findById(userId)
+                            .orElseGet(() -> new UserUsage(userId, 0L, 0L, null))), event);
+                }
+                offset.setNextOffset(record.offset() + 1);
+            }
+            userUsageRepository.saveAll(usages.values());
+            projectionOffsetRepository.saveAll(offsets.values());
+        });
+    }
+
+    /**
+     * Sets every user's image count and stored bytes to the totals of the images table.
+     */
+    void seed() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<Long, UserUsage> usages = new HashMap<>();
+            for (UserUsage usage : userUsageRepository.findAll()) {
+                usage.setImageCount(0);
+                usage.setTotalBytes(0);
+                usages.put(usage.getUserId(), usage);
+            }
+            for (UsageTotals totals : imageRepository.sumUsageByUser()) {
+                UserUsage usage = usages.computeIfAbsent(totals.userId(), userId -> new UserUsage(userId, 0L, 0L, null));
+                usage.setImageCount(totals.imageCount());
+                usage.setTotalBytes(totals.totalBytes());
+            }
+            userUsageRepository.saveAll(usages.values());
+            log.info("Seeded usage of {} users from the images table", usages.size());
+        });
+    }
+
+    private static void apply(UserUsage usage, ImageEvent event) {
+        switch (event.type()) {
+            case UPLOADED -> {
+                usage.setImageCount(usage.getImageCount() + 1);
+                usage.setTotalBytes(usage.getTotalBytes() + event.size());
+                Instant uploadedAt = Instant.ofEpochMilli(event.timestamp());
+                if (usage.getLastUploadAt() == null || uploadedAt.isAfter(usage.getLastUploadAt())) {
+                    usage.setLastUploadAt(uploadedAt);
+                }
+            }
+            case DELETED -> {
+                usage.setImageCount(Math.max(0, usage.getImageCount() - 1));
+                usage.setTotalBytes(Math.max(0, usage.getTotalBytes() - event.size()));
+            }
+        }
+    }
+
+    private static String offsetId(String topic, int partition) {
+        return NAME + ":" + topic + ":" + partition;
+    }
+}
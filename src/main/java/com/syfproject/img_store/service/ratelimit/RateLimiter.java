@@ -0,0 +1,140 @@
+package com.syfproject.img_store.service.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A per-key token bucket combined with one bucket shared by all keys. A request needs a permit
+ * from both. Per-key buckets live in a concurrent cache and are dropped once idle long enough to
+ * have refilled, since a new bucket is full too. A rate of 0 or less disables that limit.
+ * Rejections are counted per limit.
+ */
+public class RateLimiter {
+
+    /**
+     * Which limit turned a request away.
+     */
+    public enum Scope { USER, GLOBAL }
+
+    /**
+     * The outcome of an acquire: allowed, or rejected by a limit with the time until a retry can succeed.
+     */
+    public record Decision(Scope rejectedBy, long retryAfterNanos) {
+
+        public static final Decision ALLOWED = new Decision(null, 0);
+
+        public boolean allowed() {
+            return rejectedBy == null;
+        }
+
+        /**
+         * @return the wait before a retry can succeed, rounded up to whole seconds for Retry-After
+         */
+        public long retryAfterSeconds() {
+            return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos + 999_999_999L));
+        }
+    }
+
+    private final double userRate;
+    private final int userBurst;
+    private final Cache<String, TokenBucket> userBuckets;
+    private final TokenBucket globalBucket;
+    private final Map<Scope, LongAdder> rejected = new EnumMap<>(Scope.class);
+
+    /**
+     * @param userRate permits per second for each key
+     * @param userBurst permits each key may use at once
+     * @param globalRate permits per second across all keys
+     * @param globalBurst permits all keys together may use at once
+     * @param maxKeys the most per-key buckets kept
+     */
+    public RateLimiter(double userRate, int userBurst, double globalRate, int globalBurst, long maxKeys) {
+        long now = System.nanoTime();
+        this.userRate = userRate;
+        this.userBurst = userBurst;
+        this.userBuckets = userRate > 0
+                ? Caffeine.newBuilder()
+                        .maximumSize(maxKeys)
+                        .expireAfterAccess(Duration.ofNanos(new TokenBucket(userRate, userBurst, now).refillNanos()))
+                        .build()
+                : null;
+        this.globalBucket = globalRate > 0 ? new TokenBucket(globalRate, globalBurst, now) : null;
+        for (Scope scope : Scope.values()) {
+            rejected.put(scope, new LongAdder());
+        }
+    }
+
+    /**
+     * Takes a permit for the key and from the global bucket.
+     *
+     * @param key the caller, usually the user id
+     * @return the decision
+     */
+    public Decision tryAcquire(String key) {
+        return tryAcquire(key, 1);
+    }
+
+    /**
+     * Takes several permits for the key and from the global bucket, all or none. A request for
+     * more permits than a bucket's burst is always rejected by that bucket.
+     *
+     * @param key the caller, usually the user id
+     * @param permits the number of permits, for example one per file of a batch
+     * @return the decision
+     */
+    public Decision tryAcquire(String key, int permits) {
+        long now = System.nanoTime();
+        TokenBucket userBucket = null;
+        if (userBuckets != null) {
+            userBucket = userBuckets.get(key, k -> new TokenBucket(userRate, userBurst, now));
+            long wait = userBucket.tryAcquire(permits, now);
+            if (wait > 0) {
+                return reject(Scope.USER, wait);
+            }
+        }
+        if (globalBucket != null) {
+            long wait = globalBucket.tryAcquire(permits, now);
+            if (wait > 0) {
+                // The request is not served, so it should not count against the user.
+                if (userBucket != null) {
+                    userBucket.refund(permits);
+                }
+                return reject(Scope.GLOBAL, wait);
+            }
+        }
+        return Decision.ALLOWED;
+    }
+
+    /**
+     * @return the most permits a single request can be granted, or {@link Integer#MAX_VALUE} when unlimited
+     */
+    public int maxPermits() {
+        int max = Integer.MAX_VALUE;
+        if (userBuckets != null) {
+            max = Math.min(max, Math.max(1, userBurst));
+        }
+        if (globalBucket != null) {
+            max = Math.min(max, globalBucket.burst());
+        }
+        return max;
+    }
+
+    /**
+     * @param scope a limit
+     * @return the number of requests that limit has rejected
+     */
+    public long rejected(Scope scope) {
+        return rejected.get(scope).sum();
+    }
+
+    private Decision reject(Scope scope, long waitNanos) {
+        rejected.get(scope).increment();
+        return new Decision(scope, waitNanos);
+    }
+}
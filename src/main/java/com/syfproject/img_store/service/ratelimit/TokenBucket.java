@@ -0,0 +1,83 @@
+package com.syfproject.img_store.service.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket. Rather than a token count and a refill timestamp, it keeps the single
+ * time at which the bucket will be full again (the generic cell rate algorithm), so acquiring a
+ * permit is one compare-and-set on an AtomicLong.
+ */
+public final class TokenBucket {
+
+    private final long intervalNanos;
+    private final long capacityNanos;
+    // The time the bucket is full again; at or before now the bucket is full.
+    private final AtomicLong fullAt;
+
+    /**
+     * @param permitsPerSecond the refill rate
+     * @param burst the bucket capacity, the number of permits available at once
+     * @param nowNanos the current {@link System#nanoTime()}
+     */
+    public TokenBucket(double permitsPerSecond, int burst, long nowNanos) {
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / permitsPerSecond));
+        this.capacityNanos = intervalNanos * Math.max(1, burst);
+        this.fullAt = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * Takes one permit if available.
+     *
+     * @param nowNanos the current {@link System#nanoTime()}
+     * @return 0 if a permit was taken, otherwise the nanoseconds until one is available
+     */
+    public long tryAcquire(long nowNanos) {
+        return tryAcquire(1, nowNanos);
+    }
+
+    /**
+     * Takes several permits at once if they are all available. More permits than the burst are
+     * never granted.
+     *
+     * @param permits the number of permits
+     * @param nowNanos the current {@link System#nanoTime()}
+     * @return 0 if the permits were taken, otherwise the nanoseconds until they are available
+     */
+    public long tryAcquire(int permits, long nowNanos) {
+        long costNanos = intervalNanos * permits;
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current - nowNanos, 0) + nowNanos + costNanos;
+            long wait = next - nowNanos - capacityNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Returns permits taken by {@link #tryAcquire}, for when a later check rejects the request.
+     *
+     * @param permits the number of permits taken
+     */
+    public void refund(int permits) {
+        fullAt.addAndGet(-intervalNanos * permits);
+    }
+
+    /**
+     * @return the number of permits available at once
+     */
+    public int burst() {
+        return (int) (capacityNanos / intervalNanos);
+    }
+
+    /**
+     * @return how long an untouched bucket takes to refill completely
+     */
+    public long refillNanos() {
+        return capacityNanos;
+    }
+}
@@ -0,0 +1,100 @@
+package com.syfproject.img_store.service.resilience;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * A consecutive-failure circuit breaker. After {@code failureThreshold} failures in a row it opens
+ * and rejects calls for {@code openNanos}; then a single probe call is let through (half-open),
+ * whose outcome closes the circuit or opens it again.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * The state together with the time the circuit last opened, swapped as one so that a reader
+     * never pairs a state with the opening time of another transition.
+     */
+    private record Status(State state, long openedAt) {
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+    private final Consumer<State> onTransition;
+    private final AtomicReference<Status> status = new AtomicReference<>(new Status(State.CLOSED, 0));
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    /**
+     * @param failureThreshold consecutive failures that open the circuit
+     * @param openNanos how long the circuit stays open before a probe is allowed
+     * @param nanoClock the time source, normally {@link System#nanoTime}
+     * @param onTransition called with the new state on every transition
+     */
+    public CircuitBreaker(int failureThreshold, long openNanos, LongSupplier nanoClock, Consumer<State> onTransition) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = openNanos;
+        this.nanoClock = nanoClock;
+        this.onTransition = onTransition;
+    }
+
+    /**
+     * Asks to make a call. Every permitted call must be followed by {@link #onSuccess} or {@link #onFailure}.
+     *
+     * @return true if the call may go ahead
+     */
+    public boolean tryAcquire() {
+        Status current = status.get();
+        if (current.state() == State.CLOSED) {
+            return true;
+        }
+        return current.state() == State.OPEN
+                && nanoClock.getAsLong() - current.openedAt() >= openNanos
+                && transition(current, new Status(State.HALF_OPEN, current.openedAt()));
+    }
+
+    /**
+     * Records a call that succeeded, or failed in a way that says nothing about the dependency's health.
+     */
+    public void onSuccess() {
+        consecutiveFailures.set(0);
+        Status current = status.get();
+        if (current.state() == State.HALF_OPEN) {
+            transition(current, new Status(State.CLOSED, current.openedAt()));
+        }
+    }
+
+    /**
+     * Records a failed call. Only the failure that opens the circuit sets the time it opened, so late
+     * failures of calls let through before it opened do not hold it open longer.
+     */
+    public void onFailure() {
+        Status current = status.get();
+        if (current.state() == State.HALF_OPEN) {
+            transition(current, new Status(State.OPEN, nanoClock.getAsLong()));
+        } else if (consecutiveFailures.incrementAndGet() >= failureThreshold && current.state() == State.CLOSED) {
+            transition(current, new Status(State.OPEN, nanoClock.getAsLong()));
+        }
+    }
+
+    /**
+     * @return the current state
+     */
+    public State state() {
+        return status.get().state();
+    }
+
+    private boolean transition(Status from, Status to) {
+        if (!status.compareAndSet(from, to)) {
+            return false;
+        }
+        if (to.state() == State.CLOSED) {
+            consecutiveFailures.set(0);
+        }
+        onTransition.accept(to.state());
+        return true;
+    }
+}
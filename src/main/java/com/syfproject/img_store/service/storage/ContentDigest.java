@@ -0,0 +1,40 @@
+package com.syfproject.img_store.service.storage;
+
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * SHA-256 and length of image content.
+ *
+ * @param sha256 the hex-encoded SHA-256 of the content
+ * @param size the content length in bytes
+ */
+public record ContentDigest(String sha256, long size) {
+
+    /**
+     * Hashes content by streaming it once; the content is never held in memory.
+     *
+     * @param content the content to hash
+     * @return the digest of the content
+     * @throws IOException if the content cannot be read
+     */
+    public static ContentDigest of(Resource content) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        try (InputStream in = new DigestInputStream(content.getInputStream(), digest)) {
+            long size = in.transferTo(OutputStream.nullOutputStream());
+            return new ContentDigest(HexFormat.of().formatHex(digest.digest()), size);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.syfproject.img_store.service.storage;
+
+import java.nio.file.Path;
+
+/**
+ * How to serve the bytes of an image.
+ *
+ * @param filename the original file name
+ * @param link the image link
+ * @param file the local file holding the bytes, or null if the storage backend keeps them elsewhere
+ * @param etag an identifier that changes whenever the bytes change, used as the ETag
+ * @param weak whether the ETag is weak: the same tag may be served for bytes that differ but are
+ *             equivalent, such as a thumbnail rendered again with other encoder settings
+ */
+public record ImageContent(String filename, String link, Path file, String etag, boolean weak) {
+}
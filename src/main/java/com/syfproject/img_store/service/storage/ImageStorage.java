@@ -0,0 +1,86 @@
+package com.syfproject.img_store.service.storage;
+
+import com.syfproject.img_store.domain.entity.Image;
+import com.syfproject.img_store.exception.ImageStorageException;
+import org.springframework.core.io.Resource;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Backend that holds image bytes. Selected with the storage.backend property.
+ */
+public interface ImageStorage {
+
+    /**
+     * Stores image content.
+     *
+     * @param content the image content, read once as a stream
+     * @param filename the original file name
+     * @return where the image was stored
+     * @throws ImageStorageException if the backend rejects the upload
+     */
+    StoredImage store(Resource content, String filename);
+
+    /**
+     * Stores image content without holding the calling thread while the backend works, if the backend
+     * supports it. By default the content is stored on the calling thread.
+     *
+     * @param content the image content, read once as a stream
+     * @param filename the original file name
+     * @return a future of where the image was stored, failed with {@link ImageStorageException} if the
+     *         backend rejects the upload
+     */
+    default CompletableFuture<StoredImage> storeAsync(Resource content, String filename) {
+        try {
+            return CompletableFuture.completedFuture(store(content, filename));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Deletes an image's bytes. The image's row is left to the caller, which removes it once this returns.
+     *
+     * @param image the image to delete
+     * @throws ImageStorageException if the backend rejects the delete
+     */
+    void delete(Image image);
+
+    /**
+     * Deletes an image's bytes without holding the calling thread while the backend works, if the
+     * backend supports it. By default the bytes are deleted on the calling thread.
+     *
+     * @param image the image to delete
+     * @return a future completed once the bytes are deleted, failed with {@link ImageStorageException}
+     *         if the backend rejects the delete
+     */
+    default CompletableFuture<Void> deleteAsync(Image image) {
+        try {
+            delete(image);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Tells the hash of the bytes the backend holds for an image, for backends that address content
+     * by it. These are the bytes served, which differ from the uploaded bytes once optimized.
+     *
+     * @param image the image
+     * @return the hex SHA-256 of the stored bytes, or empty if the backend does not know it
+     */
+    default Optional<String> contentHash(Image image) {
+        return Optional.empty();
+    }
+
+    /**
+     * Locates the image bytes on the local filesystem, so they can be served without going through the heap.
+     *
+     * @param image the image
+     * @return the file, or empty if the backend keeps the bytes elsewhere
+     */
+    Optional<Path> localFile(Image image);
+}
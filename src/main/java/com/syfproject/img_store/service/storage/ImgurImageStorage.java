@@ -0,0 +1,115 @@
+package com.syfproject.img_store.service.storage;
+
+import com.syfproject.img_store.domain.entity.Image;
+import com.syfproject.img_store.exception.ImageStorageException;
+import com.syfproject.img_store.service.ImgurClientService;
+import com.syfproject.img_store.service.ReactiveImgurClientService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Stores images on Imgur. This is the default backend.
+ * With imgur.client.mode=reactive, {@link #storeAsync} and {@link #deleteAsync} return before Imgur
+ * answers, and the blocking methods wait on the same non-blocking calls. In blocking mode they run the
+ * blocking calls on the Imgur blocking executor, sized to the bulkhead, so that asynchronous callers
+ * never hold their own threads, such as the upload processing pool, while Imgur works.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "imgur", matchIfMissing = true)
+public class ImgurImageStorage implements ImageStorage {
+
+    private final ImgurClientService imgurClientService;
+    private final ReactiveImgurClientService reactiveImgurClientService;
+    private final Executor imgurBlockingExecutor;
+
+    /**
+     * Constructs an ImgurImageStorage. Exactly one of the clients is present, depending on imgur.client.mode.
+     *
+     * @param imgurClientService the blocking client, or null in reactive mode
+     * @param reactiveImgurClientService the non-blocking client, or null in blocking mode
+     * @param imgurBlockingExecutor the executor for asynchronous blocking calls, or null in reactive mode
+     */
+    @Autowired
+    public ImgurImageStorage(@Autowired(required = false) ImgurClientService imgurClientService,
+                             @Autowired(required = false) ReactiveImgurClientService reactiveImgurClientService,
+                             @Autowired(required = false) @Qualifier("imgurBlockingExecutor") Executor imgurBlockingExecutor) {
+        this.imgurClientService = imgurClientService;
+        this.reactiveImgurClientService = reactiveImgurClientService;
+        this.imgurBlockingExecutor = imgurBlockingExecutor;
+    }
+
+    @Override
+    public StoredImage store(Resource content, String filename) {
+        if (reactiveImgurClientService != null) {
+            return join(storeAsync(content, filename));
+        }
+        return stored(imgurClientService.uploadImage(content));
+    }
+
+    @Override
+    public CompletableFuture<StoredImage> storeAsync(Resource content, String filename) {
+        if (reactiveImgurClientService == null) {
+            return CompletableFuture.supplyAsync(() -> store(content, filename), imgurBlockingExecutor);
+        }
+        return reactiveImgurClientService.uploadImage(content).thenApply(ImgurImageStorage::stored);
+    }
+
+    @Override
+    public void delete(Image image) {
+        if (reactiveImgurClientService != null) {
+            join(deleteAsync(image));
+            return;
+        }
+        deleted(imgurClientService.deleteImage(image.getDeleteHash()));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteAsync(Image image) {
+        if (reactiveImgurClientService == null) {
+            return CompletableFuture.runAsync(() -> delete(image), imgurBlockingExecutor);
+        }
+        return reactiveImgurClientService.deleteImage(image.getDeleteHash()).thenAccept(ImgurImageStorage::deleted);
+    }
+
+    @Override
+    public Optional<Path> localFile(Image image) {
+        return Optional.empty();
+    }
+
+    private static StoredImage stored(ResponseEntity<Map> imgurResponse) {
+        if (!imgurResponse.getStatusCode().is2xxSuccessful()) {
+            log.error("Imgur upload failed with status: {}", imgurResponse.getStatusCode());
+            throw new ImageStorageException(imgurResponse.getStatusCode(), imgurResponse.getBody());
+        }
+        Map<?, ?> data = (Map<?, ?>) imgurResponse.getBody().get("data");
+        return new StoredImage((String) data.get("id"), (String) data.get("link"), (String) data.get("deletehash"));
+    }
+
+    private static void deleted(ResponseEntity<Map> deleteResponse) {
+        if (!deleteResponse.getStatusCode().is2xxSuccessful()) {
+            log.error("Imgur deletion failed with status: {}", deleteResponse.getStatusCode());
+            throw new ImageStorageException(deleteResponse.getStatusCode(), deleteResponse.getBody());
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+}
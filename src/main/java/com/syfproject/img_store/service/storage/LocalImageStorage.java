@@ -0,0 +1,188 @@
+package com.syfproject.img_store.service.storage;
+
+import com.syfproject.img_store.domain.entity.Image;
+import com.syfproject.img_store.domain.repository.ImageRepository;
+import com.syfproject.img_store.exception.ImageStorageException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Stores images on the local filesystem, addressed by the SHA-256 of their content.
+ * Files live at {@code <root>/<first 2 hex>/<next 2 hex>/<hash>}; identical uploads share one file.
+ * The image's imgurId is the hash followed by a random suffix, which keeps imgurIds unique per image
+ * while still naming the shared file.
+ * <p>
+ * Storing and deleting a hash are serialized by a lock striped over hashes. The caller removes an
+ * image's row after deleting it here, so a delete marks the image as being deleted and counts only
+ * the rows of the hash not so marked; concurrent deletes of duplicates therefore cannot each count
+ * the other's row. The mark is dropped once the row is gone. An upload that reused the file holds a
+ * lease on it until its row is visible, so a delete in between keeps the file.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local")
+public class LocalImageStorage implements ImageStorage {
+
+    /**
+     * How long an upload may take, from storing its bytes to committing its row, before its lease
+     * on the file lapses.
+     */
+    static final Duration LEASE = Duration.ofMinutes(10);
+
+    private final Path root;
+    private final ImageRepository imageRepository;
+    private final Lock[] locks = new Lock[64];
+    private final Map<String, Instant> leases = new ConcurrentHashMap<>();
+    private final Set<String> deleting = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public LocalImageStorage(@Value("${storage.local.root:${java.io.tmpdir}/img-store/images}") String root,
+                             ImageRepository imageRepository) {
+        this.root = Paths.get(root);
+        this.imageRepository = imageRepository;
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public StoredImage store(Resource content, String filename) {
+        try {
+            Path incoming = root.resolve("incoming");
+            Files.createDirectories(incoming);
+            Path temp = Files.createTempFile(incoming, "upload-", ".tmp");
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = new DigestInputStream(content.getInputStream(), digest)) {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            String imgurId = hash + "-" + randomHex().substring(0, 12);
+            Path target = pathFor(hash);
+            Files.createDirectories(target.getParent());
+            Lock lock = lockFor(hash);
+            lock.lock();
+            try {
+                if (Files.exists(target)) {
+                    log.debug("Content of '{}' already stored as {}", filename, target);
+                } else {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                    log.debug("Stored '{}' as {}", filename, target);
+                }
+                leases.put(imgurId, Instant.now().plus(LEASE));
+            } finally {
+                lock.unlock();
+                Files.deleteIfExists(temp);
+            }
+            return new StoredImage(imgurId, null, randomHex());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            log.error("Error storing image '{}' locally", filename, e);
+            throw new ImageStorageException(HttpStatus.INTERNAL_SERVER_ERROR,
+                    Map.of("error", "Upload failed: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Deletes the image's file if no other image or in-flight upload shares the content. Rows of
+     * images whose deletes have reached this point are not counted, whether or not the caller has
+     * removed them yet.
+     */
+    @Override
+    public void delete(Image image) {
+        String hash = hashOf(image.getImgurId());
+        leases.remove(image.getImgurId());
+        Lock lock = lockFor(hash);
+        lock.lock();
+        try {
+            if (referenced(hash, image.getImgurId()) || leased(hash)) {
+                log.debug("Content {} is still referenced; keeping the file", hash);
+                return;
+            }
+            Files.deleteIfExists(pathFor(hash));
+        } catch (IOException e) {
+            log.error("Error deleting local image {}", image.getImgurId(), e);
+            throw new ImageStorageException(HttpStatus.INTERNAL_SERVER_ERROR,
+                    Map.of("error", "Delete failed: " + e.getMessage()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<String> contentHash(Image image) {
+        return Optional.ofNullable(image.getImgurId()).map(LocalImageStorage::hashOf);
+    }
+
+    @Override
+    public Optional<Path> localFile(Image image) {
+        if (image.getImgurId() == null) {
+            return Optional.empty();
+        }
+        Path path = pathFor(hashOf(image.getImgurId()));
+        return Files.isRegularFile(path) ? Optional.of(path) : Optional.empty();
+    }
+
+    /**
+     * Whether an image other than those being deleted still has a row for the content. Marks of
+     * deletes whose rows are gone are dropped first; a row never comes back once deleted.
+     */
+    private boolean referenced(String hash, String imgurId) {
+        deleting.removeIf(marked -> !imageRepository.existsByImgurId(marked));
+        deleting.add(imgurId);
+        List<String> excluded = deleting.stream().filter(marked -> marked.startsWith(hash)).toList();
+        return imageRepository.countByImgurIdStartingWithAndImgurIdNotIn(hash, excluded) > 0;
+    }
+
+    /**
+     * Whether an upload of the content still holds a lease on its file. Leases of uploads whose row
+     * is now visible, and expired leases, are dropped; the row is counted instead.
+     */
+    private boolean leased(String hash) {
+        Instant now = Instant.now();
+        leases.entrySet().removeIf(lease -> lease.getValue().isBefore(now)
+                || lease.getKey().startsWith(hash) && imageRepository.existsByImgurId(lease.getKey()));
+        return leases.keySet().stream().anyMatch(imgurId -> imgurId.startsWith(hash));
+    }
+
+    private Lock lockFor(String hash) {
+        return locks[Math.floorMod(hash.hashCode(), locks.length)];
+    }
+
+    private static String hashOf(String imgurId) {
+        // Images stored before imgurIds gained a suffix use the bare hash.
+        return imgurId.length() > 64 ? imgurId.substring(0, 64) : imgurId;
+    }
+
+    private static String randomHex() {
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+
+    private Path pathFor(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+}
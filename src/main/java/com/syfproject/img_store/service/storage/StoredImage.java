@@ -0,0 +1,11 @@
+package com.syfproject.img_store.service.storage;
+
+/**
+ * Where a storage backend put an uploaded image.
+ *
+ * @param imgurId the backend's object id; the local backend uses the SHA-256 of the stored bytes
+ * @param link the public link to the image, or null to link to the content endpoint
+ * @param deleteHash the token used to delete the image
+ */
+public record StoredImage(String imgurId, String link, String deleteHash) {
+}
@@ -0,0 +1,78 @@
+package com.syfproject.img_store.controller;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+/**
+ * Tests that login and registration are turned away with 503 when the password hashing executor is saturated.
+ */
+@SpringBootTest(properties = {
+        "kafka.enabled=false",
+        "security.password-hashing.pool-size=1",
+        "security.password-hashing.queue-capacity=1",
+        "security.password-hashing.retry-after=5s"
+})
+@AutoConfigureMockMvc
+public class AuthControllerAdmissionTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private PasswordEncoder passwordEncoder;
+
+    /**
+     * Test that with the only worker busy and the queue full, a further registration gets 503 with
+     * Retry-After, and the admitted ones complete once hashing resumes.
+     */
+    @Test
+    public void testRegistrationRejectedWhenHashingQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(passwordEncoder.encode(any())).thenAnswer(invocation -> {
+            release.await();
+            return "$2a$10$Encoded1";
+        });
+
+        MvcResult running = register("runningUser");
+        MvcResult queued = register("queuedUser");
+        MvcResult rejected = register("rejectedUser");
+
+        mockMvc.perform(asyncDispatch(rejected))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "5"))
+                .andExpect(jsonPath("$.error").exists());
+
+        release.countDown();
+        mockMvc.perform(asyncDispatch(running)).andExpect(status().isOk());
+        mockMvc.perform(asyncDispatch(queued)).andExpect(status().isOk());
+    }
+
+    private MvcResult register(String username) throws Exception {
+        String userJson = "{" +
+                "\"username\":\"" + username + "\"," +
+                "\"password\":\"Test123423\"," +
+                "\"email\":\"" + username + "@example.com\"," +
+                "\"firstname\":\"Queue\"," +
+                "\"lastname\":\"User\"" +
+                "}";
+        return mockMvc.perform(post("/api/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(userJson))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+    }
+}
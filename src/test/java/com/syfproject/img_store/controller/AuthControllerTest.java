@@ -2,11 +2,26 @@ package com.syfproject.img_store.controller;
 
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.syfproject.img_store.domain.entity.User;
+import com.syfproject.img_store.domain.repository.UserRepository;
+import jakarta.servlet.ServletException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
@@ -14,11 +29,15 @@ import org.junit.jupiter.api.TestMethodOrder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors;
 import org.springframework.test.context.TestPropertySource;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
 /**
  * Integration tests for AuthController endpoints.
@@ -39,6 +58,19 @@ public class AuthControllerTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private UserRepository userRepository;
+
+    /**
+     * Performs a request, following it through the async dispatch when the controller completed it
+     * on the password hashing executor.
+     */
+    private ResultActions perform(MockHttpServletRequestBuilder request) throws Exception {
+        ResultActions actions = mockMvc.perform(request);
+        MvcResult result = actions.andReturn();
+        return result.getRequest().isAsyncStarted() ? mockMvc.perform(asyncDispatch(result)) : actions;
+    }
+
     /**
      * Test valid user registration. Expects success message.
      * New user data now includes firstname and lastname.
@@ -53,7 +85,7 @@ public class AuthControllerTest {
                 "\"firstname\":\"Test\"," +
                 "\"lastname\":\"User\"" +
                 "}";
-        mockMvc.perform(post("/api/auth/register")
+        perform(post("/api/auth/register")
                         .with(SecurityMockMvcRequestPostProcessors.csrf())
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(userJson))
@@ -75,13 +107,13 @@ public class AuthControllerTest {
                 "\"lastname\":\"User\"" +
                 "}";
         // First registration should succeed.
-        mockMvc.perform(post("/api/auth/register")
+        perform(post("/api/auth/register")
                         .with(SecurityMockMvcRequestPostProcessors.csrf())
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(userJson))
                 .andExpect(status().isOk());
         // Second registration should fail with 400 Bad Request.
-        mockMvc.perform(post("/api/auth/register")
+        perform(post("/api/auth/register")
                         .with(SecurityMockMvcRequestPostProcessors.csrf())
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(userJson))
@@ -102,7 +134,7 @@ public class AuthControllerTest {
                 "\"firstname\":\"Test\"," +
                 "\"lastname\":\"User\"" +
                 "}";
-        mockMvc.perform(post("/api/auth/register")
+        perform(post("/api/auth/register")
                         .with(SecurityMockMvcRequestPostProcessors.csrf())
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(userJson))
@@ -123,7 +155,7 @@ public class AuthControllerTest {
                 "\"firstname\":\"Valid\"," +
                 "\"lastname\":\"User\"" +
                 "}";
-        mockMvc.perform(post("/api/auth/register")
+        perform(post("/api/auth/register")
                         .with(SecurityMockMvcRequestPostProcessors.csrf())
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(userJson))
@@ -144,7 +176,7 @@ public class AuthControllerTest {
                 "\"firstname\":\"Valid\"," +
                 "\"lastname\":\"User\"" +
                 "}";
-        mockMvc.perform(post("/api/auth/register")
+        perform(post("/api/auth/register")
                         .with(SecurityMockMvcRequestPostProcessors.csrf())
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(userJson))
@@ -165,7 +197,7 @@ public class AuthControllerTest {
                 "\"firstname\":\"Valid\"," +
                 "\"lastname\":\"User\"" +
                 "}";
-        mockMvc.perform(post("/api/auth/register")
+        perform(post("/api/auth/register")
                         .with(SecurityMockMvcRequestPostProcessors.csrf())
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(userJson))
@@ -186,7 +218,7 @@ public class AuthControllerTest {
                 "\"firstname\":\"Valid\"," +
                 "\"lastname\":\"User\"" +
                 "}";
-        mockMvc.perform(post("/api/auth/register")
+        perform(post("/api/auth/register")
                         .with(SecurityMockMvcRequestPostProcessors.csrf())
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(userJson))
@@ -208,7 +240,7 @@ public class AuthControllerTest {
                 "\"firstname\":\"Login\"," +
                 "\"lastname\":\"User\"" +
                 "}";
-        mockMvc.perform(post("/api/auth/register")
+        perform(post("/api/auth/register")
                         .with(SecurityMockMvcRequestPostProcessors.csrf())
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(userJson))
@@ -216,7 +248,7 @@ public class AuthControllerTest {
 
         // Login with correct credentials.
         String loginJson = "{\"username\":\"loginUser\",\"password\":\"Test1234\"}";
-        MvcResult result = mockMvc.perform(post("/api/auth/login")
+        MvcResult result = perform(post("/api/auth/login")
                         .with(SecurityMockMvcRequestPostProcessors.csrf())
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(loginJson))
@@ -236,11 +268,188 @@ public class AuthControllerTest {
     @Order(9)
     public void testLoginWithWrongCredentials() throws Exception {
         String loginJson = "{\"username\":\"nonexistent\",\"password\":\"wrongpass\"}";
-        mockMvc.perform(post("/api/auth/login")
+        perform(post("/api/auth/login")
                         .with(SecurityMockMvcRequestPostProcessors.csrf())
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(loginJson))
                 .andExpect(status().isUnauthorized())
                 .andExpect(content().string(containsString("Invalid username or password")));
     }
+
+    /**
+     * Test concurrent registrations of one username. The unique index lets exactly one succeed.
+     */
+    @Test
+    @Order(10)
+    public void testConcurrentRegistrationOfSameUsername() throws Exception {
+        String userJson = "{" +
+                "\"username\":\"racingUser\"," +
+                "\"password\":\"Test123423\"," +
+                "\"email\":\"race@example.com\"," +
+                "\"firstname\":\"Race\"," +
+                "\"lastname\":\"User\"" +
+                "}";
+        int attempts = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(attempts);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> statuses = new ArrayList<>();
+        try {
+            for (int i = 0; i < attempts; i++) {
+                statuses.add(executor.submit(() -> {
+                    start.await();
+                    return perform(post("/api/auth/register")
+                                    .with(SecurityMockMvcRequestPostProcessors.csrf())
+                                    .contentType(MediaType.APPLICATION_JSON)
+                                    .content(userJson))
+                            .andReturn().getResponse().getStatus();
+                }));
+            }
+            start.countDown();
+            int ok = 0;
+            for (Future<Integer> status : statuses) {
+                int code = status.get(30, TimeUnit.SECONDS);
+                if (code == 200) {
+                    ok++;
+                } else {
+                    assertEquals(400, code);
+                }
+            }
+            assertEquals(1, ok);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Test that a password hashed with a lower BCrypt cost is rehashed with the current cost on login.
+     */
+    @Test
+    @Order(11)
+    public void testLoginUpgradesPasswordHash() throws Exception {
+        User user = new User();
+        user.setUsername("legacyUser");
+        user.setPassword(new BCryptPasswordEncoder(4).encode("Test1234"));
+        user.setFirstname("Legacy");
+        user.setLastname("User");
+        user.setEmail("legacy@example.com");
+        userRepository.save(user);
+
+        perform(post("/api/auth/login")
+                        .with(SecurityMockMvcRequestPostProcessors.csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"legacyUser\",\"password\":\"Test1234\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.token", notNullValue()));
+
+        String upgraded = userRepository.findByUsername("legacyUser").orElseThrow().getPassword();
+        assertTrue(upgraded.startsWith("$2a$10$"), upgraded);
+        perform(post("/api/auth/login")
+                        .with(SecurityMockMvcRequestPostProcessors.csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"legacyUser\",\"password\":\"Test1234\"}"))
+                .andExpect(status().isOk());
+    }
+
+    /**
+     * Test that a refresh token is exchanged once for new tokens, and that replaying it revokes the
+     * tokens issued from it.
+     */
+    @Test
+    @Order(12)
+    public void testRefreshTokenRotationAndReuse() throws Exception {
+        String loginJson = "{\"username\":\"loginUser\",\"password\":\"Test1234\"}";
+        MvcResult login = perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(loginJson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.refreshToken", notNullValue()))
+                .andReturn();
+        String first = (String) objectMapper.readValue(login.getResponse().getContentAsString(), Map.class)
+                .get("refreshToken");
+
+        MvcResult refreshed = perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(refreshJson(first)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.token", notNullValue()))
+                .andExpect(jsonPath("$.refreshToken", notNullValue()))
+                .andReturn();
+        String second = (String) objectMapper.readValue(refreshed.getResponse().getContentAsString(), Map.class)
+                .get("refreshToken");
+
+        // Replaying the first token is rejected and revokes the token that replaced it.
+        perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(refreshJson(first)))
+                .andExpect(status().isUnauthorized());
+        perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(refreshJson(second)))
+                .andExpect(status().isUnauthorized());
+    }
+
+    /**
+     * Test that an unknown refresh token is rejected.
+     */
+    @Test
+    @Order(13)
+    public void testRefreshWithUnknownToken() throws Exception {
+        perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(refreshJson("not-a-refresh-token")))
+                .andExpect(status().isUnauthorized())
+                .andExpect(content().string(containsString("Invalid refresh token")));
+    }
+
+    /**
+     * Test that a constraint violation other than the unique username index is not reported as a
+     * taken username.
+     */
+    @Test
+    @Order(14)
+    public void testRegisterOtherConstraintViolationIsNotUsernameTaken() throws Exception {
+        String userJson = "{" +
+                "\"username\":\"longNameUser\"," +
+                "\"password\":\"Test123423\"," +
+                "\"email\":\"longname@example.com\"," +
+                "\"firstname\":\"" + "F".repeat(300) + "\"," +
+                "\"lastname\":\"User\"" +
+                "}";
+        ServletException thrown = assertThrows(ServletException.class, () ->
+                perform(post("/api/auth/register")
+                        .with(SecurityMockMvcRequestPostProcessors.csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(userJson)));
+        assertInstanceOf(DataIntegrityViolationException.class, thrown.getCause());
+        assertTrue(userRepository.findByUsername("longNameUser").isEmpty());
+    }
+
+    /**
+     * Test that a password hashed with a higher BCrypt cost is rehashed with the lower current cost on
+     * login, so lowering the cost reaches existing users.
+     */
+    @Test
+    @Order(15)
+    public void testLoginDowngradesPasswordHash() throws Exception {
+        User user = new User();
+        user.setUsername("costlyUser");
+        user.setPassword(new BCryptPasswordEncoder(11).encode("Test1234"));
+        user.setFirstname("Costly");
+        user.setLastname("User");
+        user.setEmail("costly@example.com");
+        userRepository.save(user);
+
+        perform(post("/api/auth/login")
+                        .with(SecurityMockMvcRequestPostProcessors.csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"costlyUser\",\"password\":\"Test1234\"}"))
+                .andExpect(status().isOk());
+
+        String rehashed = userRepository.findByUsername("costlyUser").orElseThrow().getPassword();
+        assertTrue(rehashed.startsWith("$2a$10$"), rehashed);
+    }
+
+    private static String refreshJson(String refreshToken) {
+        return "{\"refreshToken\":\"" + refreshToken + "\"}";
+    }
 }
@@ -1,9 +1,16 @@
 package com.syfproject.img_store.controller;
 
 import static org.hamcrest.Matchers.*;
+import static java.util.concurrent.CompletableFuture.completedFuture;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
@@ -11,11 +18,22 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.syfproject.img_store.service.ImageService;
+import com.syfproject.img_store.service.UploadJobService;
+import com.syfproject.img_store.service.ratelimit.RateLimiter;
+import com.syfproject.img_store.service.storage.ImageContent;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.mock.web.MockMultipartFile;
@@ -23,8 +41,12 @@ import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
 @WebMvcTest(controllers = ImageController.class)
+@Import(ImageControllerTest.UploadRateLimit.class)
 @TestPropertySource(properties = {
         "kafka.enabled=false",
         "jwt.secret=abcdefghijklmnopqrstuvwxyz012345",
@@ -32,6 +54,18 @@ import org.springframework.test.web.servlet.MockMvc;
 })
 public class ImageControllerTest {
 
+    /**
+     * An upload limit of three files per user that does not refill while the tests run.
+     */
+    @TestConfiguration
+    static class UploadRateLimit {
+
+        @Bean
+        RateLimiter uploadRateLimiter() {
+            return new RateLimiter(1.0 / 3600, 3, 0, 0, 100);
+        }
+    }
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -41,6 +75,18 @@ public class ImageControllerTest {
     @MockitoBean
     private ImageService imageService;
 
+    @MockitoBean
+    private UploadJobService uploadJobService;
+
+    /**
+     * Performs a request, following it through the async dispatch when the controller returned a future.
+     */
+    private ResultActions perform(MockHttpServletRequestBuilder request) throws Exception {
+        ResultActions actions = mockMvc.perform(request);
+        MvcResult result = actions.andReturn();
+        return result.getRequest().isAsyncStarted() ? mockMvc.perform(asyncDispatch(result)) : actions;
+    }
+
     /**
      * Test uploading an image successfully. Verifies that the response contains the expected message,
      * image link, and that the original filename is saved.
@@ -56,13 +102,13 @@ public class ImageControllerTest {
                 "dummy content".getBytes());
 
         // Configure the ImageService mock to simulate a successful upload.
-        when(imageService.uploadImage(file, "testuser"))
-                .thenReturn(ResponseEntity.ok(Map.of(
+        when(imageService.uploadImageAsync(file, null, "testuser"))
+                .thenReturn(completedFuture(ResponseEntity.ok(Map.of(
                         "message", "Image uploaded successfully",
                         "imageLink", "http://imgur.com/fakeImage.jpg"
-                )));
+                ))));
 
-        mockMvc.perform(multipart("/api/images/upload")
+        perform(multipart("/api/images/upload")
                         .file(file)
                         .with(csrf())
                         .with(request -> { request.setMethod("POST"); return request; }))
@@ -71,6 +117,124 @@ public class ImageControllerTest {
                 .andExpect(jsonPath("$.imageLink", is("http://imgur.com/fakeImage.jpg")));
     }
 
+    /**
+     * Test an asynchronous upload. Expects 202 Accepted with the job id and its status location.
+     */
+    @Test
+    @WithMockUser(username = "testuser")
+    public void testUploadImageAsync() throws Exception {
+        MockMultipartFile file = new MockMultipartFile(
+                "file",
+                "test.jpg",
+                MediaType.IMAGE_JPEG_VALUE,
+                "dummy content".getBytes());
+
+        when(uploadJobService.submit(file, null, "testuser"))
+                .thenReturn(ResponseEntity.accepted()
+                        .location(URI.create("/api/images/jobs/job-1"))
+                        .body(Map.of("jobId", "job-1", "status", "QUEUED")));
+
+        perform(multipart("/api/images/upload")
+                        .file(file)
+                        .param("async", "true")
+                        .with(csrf())
+                        .with(request -> { request.setMethod("POST"); return request; }))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/images/jobs/job-1"))
+                .andExpect(jsonPath("$.jobId", is("job-1")))
+                .andExpect(jsonPath("$.status", is("QUEUED")));
+    }
+
+    /**
+     * Test a batch upload where one file fails. Expects per-file results rather than a failed batch.
+     */
+    @Test
+    @WithMockUser(username = "testuser")
+    public void testUploadImagesBatch() throws Exception {
+        MockMultipartFile first = new MockMultipartFile(
+                "files", "first.jpg", MediaType.IMAGE_JPEG_VALUE, "first".getBytes());
+        MockMultipartFile second = new MockMultipartFile(
+                "files", "second.jpg", MediaType.IMAGE_JPEG_VALUE, "second".getBytes());
+
+        when(imageService.uploadImages(List.of(first, second), null, "testuser"))
+                .thenReturn(ResponseEntity.ok(Map.of(
+                        "uploaded", 1,
+                        "failed", 1,
+                        "results", List.of(
+                                Map.of("filename", "first.jpg", "status", "uploaded", "id", 1),
+                                Map.of("filename", "second.jpg", "status", "failed", "error", "Upload failed")))));
+
+        mockMvc.perform(multipart("/api/images/upload/batch")
+                        .file(first)
+                        .file(second)
+                        .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.uploaded", is(1)))
+                .andExpect(jsonPath("$.results", hasSize(2)))
+                .andExpect(jsonPath("$.results[1].status", is("failed")));
+    }
+
+    /**
+     * Test that a batch with more files than the upload burst is refused without uploading anything.
+     */
+    @Test
+    @WithMockUser(username = "bigbatchuser")
+    public void testBatchOverMaxFilesIsRejected() throws Exception {
+        MockHttpServletRequestBuilder request = multipart("/api/images/upload/batch")
+                .file(new MockMultipartFile("files", "1.jpg", MediaType.IMAGE_JPEG_VALUE, "1".getBytes()))
+                .file(new MockMultipartFile("files", "2.jpg", MediaType.IMAGE_JPEG_VALUE, "2".getBytes()))
+                .file(new MockMultipartFile("files", "3.jpg", MediaType.IMAGE_JPEG_VALUE, "3".getBytes()))
+                .file(new MockMultipartFile("files", "4.jpg", MediaType.IMAGE_JPEG_VALUE, "4".getBytes()))
+                .with(csrf());
+
+        mockMvc.perform(request)
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", is("At most 3 files per batch")));
+        verifyNoInteractions(imageService);
+    }
+
+    /**
+     * Test that each file of a batch takes an upload permit, so a batch the remaining permits cannot
+     * cover is rejected with 429.
+     */
+    @Test
+    @WithMockUser(username = "batchuser")
+    public void testBatchIsChargedPerFile() throws Exception {
+        MockMultipartFile first = new MockMultipartFile(
+                "files", "first.jpg", MediaType.IMAGE_JPEG_VALUE, "first".getBytes());
+        MockMultipartFile second = new MockMultipartFile(
+                "files", "second.jpg", MediaType.IMAGE_JPEG_VALUE, "second".getBytes());
+        when(imageService.uploadImages(List.of(first, second), null, "batchuser"))
+                .thenReturn(ResponseEntity.ok(Map.of("uploaded", 2, "failed", 0, "results", List.of())));
+
+        mockMvc.perform(multipart("/api/images/upload/batch").file(first).file(second).with(csrf()))
+                .andExpect(status().isOk());
+        mockMvc.perform(multipart("/api/images/upload/batch").file(first).file(second).with(csrf()))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"))
+                .andExpect(jsonPath("$.error", is("Rate limit exceeded, try again later")));
+        verify(imageService, times(1)).uploadImages(List.of(first, second), null, "batchuser");
+    }
+
+    /**
+     * Test polling an upload job. Expects the job status and resulting image once completed.
+     */
+    @Test
+    @WithMockUser(username = "testuser")
+    public void testGetUploadJob() throws Exception {
+        when(uploadJobService.getJob("job-1", "testuser"))
+                .thenReturn(ResponseEntity.ok(Map.of(
+                        "jobId", "job-1",
+                        "status", "COMPLETED",
+                        "imageId", 7,
+                        "imageLink", "http://imgur.com/fakeImage.jpg")));
+
+        mockMvc.perform(get("/api/images/jobs/{id}", "job-1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", is("COMPLETED")))
+                .andExpect(jsonPath("$.imageId", is(7)));
+    }
+
     /**
      * Test uploading an invalid file type. Expects a 400 Bad Request with an appropriate error message.
      */
@@ -84,11 +248,11 @@ public class ImageControllerTest {
                 MediaType.TEXT_PLAIN_VALUE,
                 "not an image".getBytes());
 
-        when(imageService.uploadImage(file, "testuser"))
-                .thenReturn(ResponseEntity.status(400)
-                        .body(Map.of("error", "Invalid file type. Only image files (jpg, jpeg, png, apng, gif, tiff) are allowed")));
+        when(imageService.uploadImageAsync(file, null, "testuser"))
+                .thenReturn(completedFuture(ResponseEntity.status(400)
+                        .body(Map.of("error", "Invalid file type. Only image files (jpg, jpeg, png, apng, gif, tiff) are allowed"))));
 
-        mockMvc.perform(multipart("/api/images/upload")
+        perform(multipart("/api/images/upload")
                         .file(file)
                         .with(csrf())
                         .with(request -> { request.setMethod("POST"); return request; }))
@@ -111,11 +275,11 @@ public class ImageControllerTest {
                 MediaType.IMAGE_JPEG_VALUE,
                 largeContent);
 
-        when(imageService.uploadImage(file, "testuser"))
-                .thenReturn(ResponseEntity.status(400)
-                        .body(Map.of("error", "File size exceeds the maximum limit of 10 MB")));
+        when(imageService.uploadImageAsync(file, null, "testuser"))
+                .thenReturn(completedFuture(ResponseEntity.status(400)
+                        .body(Map.of("error", "File size exceeds the maximum limit of 10 MB"))));
 
-        mockMvc.perform(multipart("/api/images/upload")
+        perform(multipart("/api/images/upload")
                         .file(file)
                         .with(csrf())
                         .with(request -> { request.setMethod("POST"); return request; }))
@@ -130,7 +294,7 @@ public class ImageControllerTest {
     @Test
     @WithMockUser(username = "testuser")
     public void testGetUserImagesEmpty() throws Exception {
-        when(imageService.getUserImages("testuser"))
+        when(imageService.getUserImages(null, "testuser", null, null, null))
                 .thenReturn(ResponseEntity.status(404).body(Map.of("message", "No image is associated with your account")));
 
         mockMvc.perform(get("/api/images/all"))
@@ -138,6 +302,31 @@ public class ImageControllerTest {
                 .andExpect(jsonPath("$.message", is("No image is associated with your account")));
     }
 
+    /**
+     * Test retrieving a page of images with a cursor, page size and sparse fieldset.
+     * Expects only the requested fields and the cursor for the following page.
+     */
+    @Test
+    @WithMockUser(username = "testuser")
+    public void testGetUserImagesPage() throws Exception {
+        when(imageService.getUserImages(null, "testuser", "MTA", 2, "id,link"))
+                .thenReturn(ResponseEntity.ok(Map.of(
+                        "user", "testuser",
+                        "images", List.of(
+                                Map.of("id", 11, "link", "http://imgur.com/a.jpg"),
+                                Map.of("id", 12, "link", "http://imgur.com/b.jpg")),
+                        "nextCursor", "MTI")));
+
+        mockMvc.perform(get("/api/images/all")
+                        .param("cursor", "MTA")
+                        .param("size", "2")
+                        .param("fields", "id,link"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.images", hasSize(2)))
+                .andExpect(jsonPath("$.images[0].filename").doesNotExist())
+                .andExpect(jsonPath("$.nextCursor", is("MTI")));
+    }
+
     /**
      * Test retrieving a specific image by its ID.
      * Expects a successful response containing the image details including the filename.
@@ -153,7 +342,7 @@ public class ImageControllerTest {
                 "filename", "test.jpg",
                 "deleteHash", "fakeDeleteHash"
         );
-        when(imageService.getImageById(eq(imageId), eq("testuser")))
+        when(imageService.getImageById(eq(imageId), isNull(), eq("testuser")))
                 .thenReturn(ResponseEntity.ok(fakeImage));
 
         mockMvc.perform(get("/api/images/{id}", imageId))
@@ -163,6 +352,164 @@ public class ImageControllerTest {
                 .andExpect(jsonPath("$.link", is("http://imgur.com/fakeImage.jpg")));
     }
 
+    /**
+     * Test that the user id claim of a JWT is passed through, so the service can skip the user lookup.
+     */
+    @Test
+    public void testGetImageByIdUsesTokenUserId() throws Exception {
+        when(imageService.getImageById(eq(1L), eq(42L), eq("testuser")))
+                .thenReturn(ResponseEntity.ok(Map.of("id", 1L, "filename", "test.jpg")));
+
+        mockMvc.perform(get("/api/images/{id}", 1L)
+                        .with(jwt().jwt(token -> token.subject("testuser").claim("uid", 42L))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.filename", is("test.jpg")));
+    }
+
+    /**
+     * Test that a locally stored image is written from its file with the content type of the original name.
+     */
+    @Test
+    @WithMockUser(username = "testuser")
+    public void testGetImageContentFromLocalFile(@TempDir Path dir) throws Exception {
+        Path file = Files.write(dir.resolve("stored"), "local bytes".getBytes());
+        when(imageService.getImageContent(eq(1L), isNull(), eq("testuser")))
+                .thenReturn(Optional.of(new ImageContent("test.png", "/api/images/1/content", file, "abc123", false)));
+
+        mockMvc.perform(get("/api/images/{id}/content", 1L))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.IMAGE_PNG))
+                .andExpect(header().longValue("Content-Length", 11L))
+                .andExpect(header().string("ETag", "\"abc123\""))
+                .andExpect(header().string("Accept-Ranges", "bytes"))
+                .andExpect(content().string("local bytes"));
+    }
+
+    /**
+     * Test that a matching If-None-Match revalidates the cached copy with 304 and no body.
+     */
+    @Test
+    @WithMockUser(username = "testuser")
+    public void testGetImageContentNotModified(@TempDir Path dir) throws Exception {
+        mockLocalContent(dir);
+
+        mockMvc.perform(get("/api/images/{id}/content", 1L).header("If-None-Match", "\"abc123\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    /**
+     * Test that a single byte range is answered with 206 and only the requested bytes.
+     */
+    @Test
+    @WithMockUser(username = "testuser")
+    public void testGetImageContentRange(@TempDir Path dir) throws Exception {
+        mockLocalContent(dir);
+
+        mockMvc.perform(get("/api/images/{id}/content", 1L).header("Range", "bytes=6-"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 6-10/11"))
+                .andExpect(header().longValue("Content-Length", 5L))
+                .andExpect(content().string("bytes"));
+    }
+
+    /**
+     * Test that several ranges are returned as multipart/byteranges, and a stale If-Range returns the whole image.
+     */
+    @Test
+    @WithMockUser(username = "testuser")
+    public void testGetImageContentMultiRangeAndIfRange(@TempDir Path dir) throws Exception {
+        mockLocalContent(dir);
+
+        mockMvc.perform(get("/api/images/{id}/content", 1L).header("Range", "bytes=0-4,-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Type", startsWith("multipart/byteranges; boundary=")))
+                .andExpect(content().string(allOf(
+                        containsString("Content-Range: bytes 0-4/11\r\n\r\nlocal"),
+                        containsString("Content-Range: bytes 6-10/11\r\n\r\nbytes"))));
+
+        mockMvc.perform(get("/api/images/{id}/content", 1L).header("Range", "bytes=0-4").header("If-Range", "\"old\""))
+                .andExpect(status().isOk())
+                .andExpect(content().string("local bytes"));
+    }
+
+    /**
+     * Test that a range beyond the end of the image is rejected with 416.
+     */
+    @Test
+    @WithMockUser(username = "testuser")
+    public void testGetImageContentUnsatisfiableRange(@TempDir Path dir) throws Exception {
+        mockLocalContent(dir);
+
+        mockMvc.perform(get("/api/images/{id}/content", 1L).header("Range", "bytes=50-60"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string("Content-Range", "bytes */11"));
+    }
+
+    /**
+     * Test that an image held by Imgur redirects to its link instead of being proxied.
+     */
+    @Test
+    @WithMockUser(username = "testuser")
+    public void testGetImageContentRedirectsToImgur() throws Exception {
+        when(imageService.getImageContent(eq(1L), isNull(), eq("testuser")))
+                .thenReturn(Optional.of(new ImageContent("test.jpg", "http://imgur.com/fakeImage.jpg", null, "fakeId", false)));
+
+        mockMvc.perform(get("/api/images/{id}/content", 1L))
+                .andExpect(status().isFound())
+                .andExpect(header().string("Location", "http://imgur.com/fakeImage.jpg"));
+    }
+
+    /**
+     * Test that a thumbnail that has not been rendered yet redirects to the full-size image.
+     */
+    @Test
+    @WithMockUser(username = "testuser")
+    public void testGetThumbnailNotReadyRedirectsToImage() throws Exception {
+        when(imageService.getThumbnail(eq(1L), eq(200), isNull(), eq("testuser")))
+                .thenReturn(Optional.of(new ImageContent("200.jpg", "http://imgur.com/fakeImage.jpg", null, "fakeId-200", true)));
+
+        mockMvc.perform(get("/api/images/{id}/thumb/{size}", 1L, 200))
+                .andExpect(status().isFound())
+                .andExpect(header().string("Location", "http://imgur.com/fakeImage.jpg"));
+    }
+
+    /**
+     * Test that a rendered thumbnail carries a weak ETag that revalidates with 304 but cannot satisfy If-Range.
+     */
+    @Test
+    @WithMockUser(username = "testuser")
+    public void testGetThumbnailHasWeakETag(@TempDir Path dir) throws Exception {
+        Path file = Files.write(dir.resolve("200.jpg"), "thumbnail bytes".getBytes());
+        when(imageService.getThumbnail(eq(1L), eq(200), isNull(), eq("testuser")))
+                .thenReturn(Optional.of(new ImageContent("200.jpg", "/api/images/1/content", file, "abc123-200", true)));
+
+        mockMvc.perform(get("/api/images/{id}/thumb/{size}", 1L, 200))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "W/\"abc123-200\""));
+        mockMvc.perform(get("/api/images/{id}/thumb/{size}", 1L, 200).header("If-None-Match", "W/\"abc123-200\""))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/images/{id}/thumb/{size}", 1L, 200)
+                        .header("Range", "bytes=0-4").header("If-Range", "W/\"abc123-200\""))
+                .andExpect(status().isOk())
+                .andExpect(content().string("thumbnail bytes"));
+    }
+
+    /**
+     * Test that usage stats are served for the authenticated user.
+     */
+    @Test
+    @WithMockUser(username = "testuser")
+    public void testGetUsageStats() throws Exception {
+        when(imageService.getUsageStats(isNull(), eq("testuser")))
+                .thenReturn(ResponseEntity.ok(Map.of("imageCount", 3, "totalBytes", 4096)));
+
+        mockMvc.perform(get("/api/images/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imageCount", is(3)))
+                .andExpect(jsonPath("$.totalBytes", is(4096)));
+    }
+
     /**
      * Test deleting an image that does not exist.
      * Expects a 404 Not Found response with an error message.
@@ -170,10 +517,10 @@ public class ImageControllerTest {
     @Test
     @WithMockUser(username = "testuser")
     public void testDeleteImageNotFound() throws Exception {
-        when(imageService.deleteImage("nonexistentHash", "testuser"))
-                .thenReturn(ResponseEntity.status(404).body(Map.of("error", "Image not found or not associated with the user")));
+        when(imageService.deleteImageAsync("nonexistentHash", null, "testuser"))
+                .thenReturn(completedFuture(ResponseEntity.status(404).body(Map.of("error", "Image not found or not associated with the user"))));
 
-        mockMvc.perform(delete("/api/images/delete/nonexistentHash").with(csrf()))
+        perform(delete("/api/images/delete/nonexistentHash").with(csrf()))
                 .andExpect(status().isNotFound())
                 .andExpect(jsonPath("$.error", is("Image not found or not associated with the user")));
     }
@@ -185,11 +532,17 @@ public class ImageControllerTest {
     @Test
     @WithMockUser(username = "testuser")
     public void testDeleteImageSuccess() throws Exception {
-        when(imageService.deleteImage("fakeDeleteHash", "testuser"))
-                .thenReturn(ResponseEntity.ok(Map.of("message", "Image deleted successfully")));
+        when(imageService.deleteImageAsync("fakeDeleteHash", null, "testuser"))
+                .thenReturn(completedFuture(ResponseEntity.ok(Map.of("message", "Image deleted successfully"))));
 
-        mockMvc.perform(delete("/api/images/delete/fakeDeleteHash").with(csrf()))
+        perform(delete("/api/images/delete/fakeDeleteHash").with(csrf()))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.message", is("Image deleted successfully")));
     }
+
+    private void mockLocalContent(Path dir) throws Exception {
+        Path file = Files.write(dir.resolve("stored"), "local bytes".getBytes());
+        when(imageService.getImageContent(eq(1L), isNull(), eq("testuser")))
+                .thenReturn(Optional.of(new ImageContent("test.png", "/api/images/1/content", file, "abc123", false)));
+    }
 }
@@ -0,0 +1,74 @@
+package com.syfproject.img_store.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import java.util.Date;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+/**
+ * Tests the shared JWT verifier and its cache of verified tokens.
+ */
+public class CachingJwtDecoderTest {
+
+    private static final String SECRET = "abcdefghijklmnopqrstuvwxyz012345";
+
+    /**
+     * Test that a token verified once is served from the cache afterwards.
+     */
+    @Test
+    public void testVerifiedTokenIsCached() {
+        CachingJwtDecoder decoder = new CachingJwtDecoder(SECRET, 100);
+        String token = token(SECRET, "cacheduser", 60_000);
+
+        Jwt first = decoder.decode(token);
+        Jwt second = decoder.decode(token);
+
+        assertThat(first.getSubject()).isEqualTo("cacheduser");
+        assertThat(second).isSameAs(first);
+    }
+
+    /**
+     * Test that with the cache disabled every call verifies the token again.
+     */
+    @Test
+    public void testCacheCanBeDisabled() {
+        CachingJwtDecoder decoder = new CachingJwtDecoder(SECRET, 0);
+        String token = token(SECRET, "uncacheduser", 60_000);
+
+        assertThat(decoder.decode(token)).isNotSameAs(decoder.decode(token));
+    }
+
+    /**
+     * Test that tokens signed with another key, expired tokens and tampered tokens are rejected,
+     * even when a valid token is already cached.
+     */
+    @Test
+    public void testInvalidTokensAreRejected() {
+        CachingJwtDecoder decoder = new CachingJwtDecoder(SECRET, 100);
+        String valid = token(SECRET, "validuser", 60_000);
+        decoder.decode(valid);
+
+        assertThatThrownBy(() -> decoder.decode(token("zyxwvutsrqponmlkjihgfedcba543210", "validuser", 60_000)))
+                .isInstanceOf(JwtException.class);
+        assertThatThrownBy(() -> decoder.decode(token(SECRET, "expireduser", -120_000)))
+                .isInstanceOf(JwtException.class);
+        assertThatThrownBy(() -> decoder.decode(valid.substring(0, valid.length() - 2) + "xx"))
+                .isInstanceOf(JwtException.class);
+    }
+
+    private static String token(String secret, String subject, long validityMillis) {
+        Date now = new Date();
+        return Jwts.builder()
+                .setSubject(subject)
+                .setIssuedAt(now)
+                .setExpiration(new Date(now.getTime() + validityMillis))
+                .signWith(Keys.hmacShaKeyFor(secret.getBytes()), SignatureAlgorithm.HS256)
+                .compact();
+    }
+}
@@ -0,0 +1,74 @@
+package com.syfproject.img_store.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.syfproject.img_store.service.ratelimit.RateLimiter;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * Tests that the rate limit filter answers 429 with Retry-After once a user's bucket is empty.
+ */
+public class RateLimitFilterTest {
+
+    private final RateLimitFilter filter = new RateLimitFilter(List.of(
+            new RateLimitFilter.Rule("upload", "POST", "/api/images/upload",
+                    new RateLimiter(0.5, 2, 0, 0, 100))));
+
+    @BeforeEach
+    public void authenticate() {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                "limiteduser", null, AuthorityUtils.createAuthorityList("ROLE_USER")));
+    }
+
+    @AfterEach
+    public void clear() {
+        SecurityContextHolder.clearContext();
+    }
+
+    /**
+     * Test that requests beyond the burst are rejected before reaching the controller.
+     */
+    @Test
+    public void testUploadsBeyondBurstAreRejected() throws Exception {
+        assertThat(upload().getStatus()).isEqualTo(200);
+        assertThat(upload().getStatus()).isEqualTo(200);
+
+        MockHttpServletResponse rejected = upload();
+        assertThat(rejected.getStatus()).isEqualTo(429);
+        assertThat(rejected.getHeader("Retry-After")).isEqualTo("2");
+        assertThat(rejected.getContentAsString()).contains("Rate limit exceeded");
+    }
+
+    /**
+     * Test that endpoints without a rule are not limited.
+     */
+    @Test
+    public void testOtherEndpointsAreNotLimited() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/images/all");
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request, response, new MockFilterChain());
+            assertThat(response.getStatus()).isEqualTo(200);
+        }
+    }
+
+    private MockHttpServletResponse upload() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/images/upload");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, response, chain);
+        if (response.getStatus() == 200) {
+            assertThat(chain.getRequest()).isNotNull();
+        }
+        return response;
+    }
+}
@@ -0,0 +1,33 @@
+package com.syfproject.img_store.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * Tests when the encoder asks for a stored hash to be rehashed.
+ */
+public class RehashingBCryptPasswordEncoderTest {
+
+    private final RehashingBCryptPasswordEncoder encoder = new RehashingBCryptPasswordEncoder(5);
+
+    /**
+     * Test that hashes with a lower or a higher cost are rehashed and hashes with the same cost are kept.
+     */
+    @Test
+    public void testRehashesAnyOtherCost() {
+        assertThat(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("secret"))).isTrue();
+        assertThat(encoder.upgradeEncoding(new BCryptPasswordEncoder(6).encode("secret"))).isTrue();
+        assertThat(encoder.upgradeEncoding(encoder.encode("secret"))).isFalse();
+    }
+
+    /**
+     * Test that missing hashes are not rehashed.
+     */
+    @Test
+    public void testKeepsMissingHash() {
+        assertThat(encoder.upgradeEncoding(null)).isFalse();
+        assertThat(encoder.upgradeEncoding("")).isFalse();
+    }
+}
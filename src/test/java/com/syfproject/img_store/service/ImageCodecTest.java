@@ -0,0 +1,48 @@
+package com.syfproject.img_store.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the image decoding and encoding helpers.
+ */
+public class ImageCodecTest {
+
+    /**
+     * Test that an image within the pixel limit is decoded and one whose header declares more pixels is refused.
+     */
+    @Test
+    public void testReadChecksPixelLimit() throws IOException {
+        byte[] png = png(400, 300);
+
+        BufferedImage decoded = ImageCodec.read(new ByteArrayInputStream(png), 400 * 300);
+        assertThat(decoded.getWidth()).isEqualTo(400);
+        assertThat(decoded.getHeight()).isEqualTo(300);
+
+        assertThatThrownBy(() -> ImageCodec.read(new ByteArrayInputStream(png), 400 * 300 - 1))
+                .isInstanceOf(IIOException.class)
+                .hasMessageContaining("400x300");
+    }
+
+    /**
+     * Test that content no installed reader understands is reported as null rather than an error.
+     */
+    @Test
+    public void testReadUnknownFormat() throws IOException {
+        assertThat(ImageCodec.read(new ByteArrayInputStream("not an image".getBytes()), 1000)).isNull();
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,133 @@
+package com.syfproject.img_store.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.stream.LongStream;
+import com.syfproject.img_store.domain.repository.ImageRepository;
+import com.syfproject.img_store.dto.ImageSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Tests the per-user image metadata cache against a mocked repository.
+ */
+public class ImageMetadataCacheTest {
+
+    private ImageRepository imageRepository;
+
+    @BeforeEach
+    void createRepository() {
+        imageRepository = mock(ImageRepository.class);
+        when(imageRepository.findPageByUserId(anyLong(), eq(0L), any())).thenReturn(List.of());
+    }
+
+    /**
+     * Test that a user's images are loaded once and then kept up to date by added and removed.
+     */
+    @Test
+    public void testAddedAndRemovedUpdateCachedImages() {
+        when(imageRepository.findPageByUserId(eq(1L), eq(0L), any())).thenReturn(List.of(image(10), image(20)));
+        ImageMetadataCache cache = new ImageMetadataCache(imageRepository, DataSize.ofMegabytes(1), 100);
+
+        assertThat(cache.images(1L).orElseThrow()).containsOnlyKeys(10L, 20L);
+        cache.added(1L, image(30));
+        cache.removed(1L, 10L);
+
+        assertThat(cache.images(1L).orElseThrow()).containsOnlyKeys(20L, 30L);
+        verify(imageRepository, times(1)).findPageByUserId(eq(1L), eq(0L), any());
+    }
+
+    /**
+     * Test that added leaves users who are not cached alone, so their next read loads every image.
+     */
+    @Test
+    public void testAddedIgnoresUncachedUser() {
+        ImageMetadataCache cache = new ImageMetadataCache(imageRepository, DataSize.ofMegabytes(1), 100);
+
+        cache.added(2L, image(10));
+
+        assertThat(cache.images(2L).orElseThrow()).isEmpty();
+    }
+
+    /**
+     * Test that clear drops every user, so the next read goes back to the repository.
+     */
+    @Test
+    public void testClearInvalidatesAllUsers() {
+        ImageMetadataCache cache = new ImageMetadataCache(imageRepository, DataSize.ofMegabytes(1), 100);
+        cache.images(1L);
+        cache.images(2L);
+
+        cache.clear();
+        cache.images(1L);
+        cache.images(2L);
+
+        verify(imageRepository, times(2)).findPageByUserId(eq(1L), eq(0L), any());
+        verify(imageRepository, times(2)).findPageByUserId(eq(2L), eq(0L), any());
+    }
+
+    /**
+     * Test that users with more images than the per-user limit are not cached, including users who
+     * grow past it.
+     */
+    @Test
+    public void testUsersOverTheLimitAreNotCached() {
+        when(imageRepository.findPageByUserId(eq(1L), eq(0L), any())).thenReturn(images(4));
+        when(imageRepository.findPageByUserId(eq(2L), eq(0L), any())).thenReturn(images(3));
+        ImageMetadataCache cache = new ImageMetadataCache(imageRepository, DataSize.ofMegabytes(1), 3);
+
+        assertThat(cache.images(1L)).isEmpty();
+        assertThat(cache.images(2L)).isPresent();
+        cache.added(2L, image(100));
+        assertThat(cache.images(2L)).isEmpty();
+    }
+
+    /**
+     * Test that a user whose images grow past the memory bound through added is re-weighed and evicted.
+     */
+    @Test
+    public void testGrowingUserIsEvictedOverMaxMemory() throws InterruptedException {
+        ImageMetadataCache cache = new ImageMetadataCache(imageRepository, DataSize.ofKilobytes(4), 1000);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+        cache.images(1L);
+
+        for (long id = 1; id <= 50; id++) {
+            cache.added(1L, image(id));
+        }
+        for (int attempt = 0; attempt < 100 && evictions(registry) == 0; attempt++) {
+            Thread.sleep(50);
+        }
+
+        assertThat(evictions(registry)).isEqualTo(1);
+        Optional<NavigableMap<Long, ImageSummary>> reloaded = cache.images(1L);
+        assertThat(reloaded.orElseThrow()).isEmpty();
+        verify(imageRepository, times(2)).findPageByUserId(eq(1L), eq(0L), any());
+    }
+
+    private static double evictions(MeterRegistry registry) {
+        return registry.get("cache.evictions").tag("cache", "imageMetadata").functionCounter().count();
+    }
+
+    private static List<ImageSummary> images(int count) {
+        return LongStream.rangeClosed(1, count).mapToObj(ImageMetadataCacheTest::image).toList();
+    }
+
+    private static ImageSummary image(long id) {
+        return new ImageSummary(id, "imgur" + id, "https://i.imgur.com/imgur" + id + ".jpg", "photo" + id + ".jpg",
+                "hash" + id);
+    }
+}
@@ -0,0 +1,166 @@
+package com.syfproject.img_store.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ByteArrayResource;
+
+/**
+ * Tests the upload optimization stage.
+ */
+public class ImageOptimizerTest {
+
+    @TempDir
+    Path workDir;
+
+    /**
+     * Test that a large opaque PNG is downscaled and converted to a smaller JPEG.
+     */
+    @Test
+    public void testOpaquePngIsDownscaledToJpeg() throws IOException {
+        ImageOptimizer optimizer = new ImageOptimizer(true, 500, 0.85f, true, workDir.toString());
+        byte[] png = png(1600, 1000, BufferedImage.TYPE_INT_RGB);
+
+        ImageOptimizer.Optimized optimized = optimizer.optimize(new ByteArrayResource(png), "screen.png", png.length);
+        try {
+            assertThat(optimized.file()).isNotNull();
+            assertThat(optimized.filename()).isEqualTo("screen.jpg");
+            assertThat(optimized.size()).isLessThan(png.length);
+            BufferedImage result = ImageIO.read(optimized.file().toFile());
+            assertThat(result.getWidth()).isEqualTo(500);
+            assertThat(result.getHeight()).isEqualTo(313);
+        } finally {
+            optimized.discard();
+        }
+        assertThat(workDir).isEmptyDirectory();
+    }
+
+    /**
+     * Test that a small PNG with transparency is left alone, since it can neither be converted nor downscaled.
+     */
+    @Test
+    public void testTransparentPngIsUnchanged() throws IOException {
+        ImageOptimizer optimizer = new ImageOptimizer(true, 500, 0.85f, true, workDir.toString());
+        byte[] png = png(100, 100, BufferedImage.TYPE_INT_ARGB);
+
+        ImageOptimizer.Optimized optimized = optimizer.optimize(new ByteArrayResource(png), "icon.png", png.length);
+
+        assertThat(optimized.file()).isNull();
+        assertThat(optimized.filename()).isEqualTo("icon.png");
+        assertThat(optimized.size()).isEqualTo(png.length);
+    }
+
+    /**
+     * Test that content ImageIO cannot decode, and any content while disabled, is uploaded unchanged.
+     */
+    @Test
+    public void testUndecodableOrDisabledIsUnchanged() throws IOException {
+        byte[] bytes = "not an image".getBytes();
+        ImageOptimizer enabled = new ImageOptimizer(true, 500, 0.85f, true, workDir.toString());
+        assertThat(enabled.optimize(new ByteArrayResource(bytes), "a.jpg", bytes.length).file()).isNull();
+
+        byte[] png = png(1600, 1000, BufferedImage.TYPE_INT_RGB);
+        ImageOptimizer disabled = new ImageOptimizer(false, 500, 0.85f, true, workDir.toString());
+        assertThat(disabled.optimize(new ByteArrayResource(png), "a.png", png.length).file()).isNull();
+    }
+
+    /**
+     * Test that a JPEG much larger than the maximum dimension is still scaled to exactly that size
+     * after being decoded at a reduced resolution.
+     */
+    @Test
+    public void testLargeJpegIsScaledToMaxDimension() throws IOException {
+        ImageOptimizer optimizer = new ImageOptimizer(true, 500, 0.85f, true, workDir.toString());
+        byte[] jpeg = jpeg(3000, 1000, null);
+
+        ImageOptimizer.Optimized optimized = optimizer.optimize(new ByteArrayResource(jpeg), "photo.jpg", jpeg.length);
+        try {
+            BufferedImage result = ImageIO.read(optimized.file().toFile());
+            assertThat(result.getWidth()).isEqualTo(500);
+            assertThat(result.getHeight()).isEqualTo(167);
+        } finally {
+            optimized.discard();
+        }
+    }
+
+    /**
+     * Test that a JPEG whose EXIF orientation says it was taken rotated is re-encoded upright.
+     */
+    @Test
+    public void testJpegIsTurnedUprightByExifOrientation() throws IOException {
+        ImageOptimizer optimizer = new ImageOptimizer(true, 200, 0.85f, true, workDir.toString());
+        byte[] jpeg = jpeg(400, 200, 6);
+
+        ImageOptimizer.Optimized optimized = optimizer.optimize(new ByteArrayResource(jpeg), "phone.jpg", jpeg.length);
+        try {
+            BufferedImage result = ImageIO.read(optimized.file().toFile());
+            assertThat(result.getWidth()).isEqualTo(100);
+            assertThat(result.getHeight()).isEqualTo(200);
+            // The red left edge of the stored image is the top edge once rotated 90 degrees clockwise.
+            assertThat(new Color(result.getRGB(50, 2)).getRed()).isGreaterThan(200);
+            assertThat(new Color(result.getRGB(50, 197)).getRed()).isLessThan(100);
+        } finally {
+            optimized.discard();
+        }
+    }
+
+    /**
+     * Writes a noisy JPEG at full quality with a red left edge, optionally with an EXIF orientation.
+     */
+    private byte[] jpeg(int width, int height, Integer orientation) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, x < width / 10 ? 0xFF0000 : random.nextInt(0x800000) & 0x00FFFF);
+            }
+        }
+        Path file = workDir.resolve("source.jpg");
+        ImageCodec.writeJpeg(image, 1.0f, file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.delete(file);
+        if (orientation == null) {
+            return bytes;
+        }
+        // An APP1 segment holding a big-endian TIFF header and one IFD with only the orientation tag.
+        ByteBuffer app1 = ByteBuffer.allocate(2 + 2 + 6 + 8 + 2 + 12 + 4);
+        app1.putShort((short) 0xFFE1).putShort((short) (app1.capacity() - 2));
+        app1.put("Exif\0\0".getBytes(StandardCharsets.ISO_8859_1));
+        app1.put((byte) 'M').put((byte) 'M').putShort((short) 42).putInt(8);
+        app1.putShort((short) 1);
+        app1.putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort(orientation.shortValue()).putShort((short) 0);
+        app1.putInt(0);
+        // It goes after the JFIF APP0 segment the writer puts first.
+        int app0End = 4 + ((bytes[4] & 0xFF) << 8 | bytes[5] & 0xFF);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(bytes, 0, app0End);
+        out.write(app1.array());
+        out.write(bytes, app0End, bytes.length - app0End);
+        return out.toByteArray();
+    }
+
+    private static byte[] png(int width, int height, int type) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int alpha = type == BufferedImage.TYPE_INT_ARGB ? (x % 2 == 0 ? 0x80 : 0xFF) : 0xFF;
+                image.setRGB(x, y, alpha << 24 | random.nextInt(0x1000000));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,314 @@
+package com.syfproject.img_store.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+import javax.imageio.ImageIO;
+import com.syfproject.img_store.domain.entity.Image;
+import com.syfproject.img_store.domain.entity.User;
+import com.syfproject.img_store.domain.repository.ImageRepository;
+import com.syfproject.img_store.domain.repository.UserRepository;
+import com.syfproject.img_store.service.storage.ImageContent;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * Tests ImageService end to end against H2 and a local Imgur stub server.
+ */
+@SpringBootTest(properties = {"kafka.enabled=false", "imgur.client-id=test-client", "upload.optimize.enabled=true",
+        "upload.processing.pool-size=1"})
+public class ImageServiceTest {
+
+    private static ImgurStubServer stub;
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("uploadProcessingExecutor")
+    private ThreadPoolTaskExecutor uploadProcessingExecutor;
+
+    private Long userId;
+
+    @DynamicPropertySource
+    static void imgurProperties(DynamicPropertyRegistry registry) throws IOException {
+        stub = new ImgurStubServer();
+        registry.add("imgur.api-url", stub::apiUrl);
+    }
+
+    @AfterAll
+    static void stopStub() {
+        stub.close();
+    }
+
+    @BeforeEach
+    void createUser() {
+        User user = new User();
+        user.setUsername("dedup" + System.nanoTime());
+        user.setPassword("Password1");
+        user.setFirstname("Test");
+        user.setLastname("User");
+        user.setEmail("dedup@example.com");
+        userId = userRepository.save(user).getId();
+    }
+
+    /**
+     * Test that uploading the same bytes twice returns the existing image without a second Imgur upload,
+     * that the saved call and bytes are counted, and that the content hash is the image's strong ETag.
+     */
+    @Test
+    public void testDuplicateUploadReturnsExistingImage() {
+        byte[] bytes = "the same image bytes".getBytes();
+        int uploadsBefore = stub.uploads();
+        double hitsBefore = meterRegistry.get("images.dedup.hits").functionCounter().count();
+        double bytesBefore = meterRegistry.get("images.dedup.bytes.saved").functionCounter().count();
+
+        ResponseEntity<Map> first = imageService.uploadImage(file("a.jpg", bytes), userId, null);
+        ResponseEntity<Map> second = imageService.uploadImage(file("b.jpg", bytes), userId, null);
+
+        assertThat(first.getStatusCode().is2xxSuccessful()).isTrue();
+        assertThat(second.getStatusCode().is2xxSuccessful()).isTrue();
+        assertThat(second.getBody().get("id")).isEqualTo(first.getBody().get("id"));
+        assertThat(second.getBody().get("imageLink")).isEqualTo(first.getBody().get("imageLink"));
+        assertThat(stub.uploads() - uploadsBefore).isEqualTo(1);
+        assertThat(meterRegistry.get("images.dedup.hits").functionCounter().count() - hitsBefore).isEqualTo(1);
+        assertThat(meterRegistry.get("images.dedup.bytes.saved").functionCounter().count() - bytesBefore)
+                .isEqualTo(bytes.length);
+
+        // The stored bytes are the uploaded ones, so their hash is a strong validator.
+        Long imageId = (Long) first.getBody().get("id");
+        ImageContent content = imageService.getImageContent(imageId, userId, null).orElseThrow();
+        assertThat(content.etag()).isEqualTo(imageRepository.findById(imageId).orElseThrow().getContentHash());
+        assertThat(content.weak()).isFalse();
+    }
+
+    /**
+     * Test that a batch reports files the user already uploaded as duplicates and only pushes new content.
+     */
+    @Test
+    public void testBatchUploadSkipsDuplicates() {
+        imageService.uploadImage(file("a.jpg", "first".getBytes()), userId, null);
+        int uploadsBefore = stub.uploads();
+
+        ResponseEntity<Map> response = imageService.uploadImages(
+                List.of(file("a.jpg", "first".getBytes()), file("b.jpg", "second".getBytes())), userId, null);
+
+        assertThat(response.getBody().get("uploaded")).isEqualTo(1L);
+        assertThat(response.getBody().get("duplicates")).isEqualTo(1L);
+        assertThat(stub.uploads() - uploadsBefore).isEqualTo(1);
+    }
+
+    /**
+     * Test that content repeated within one batch is pushed once and every repeat is answered with that image.
+     */
+    @Test
+    public void testBatchUploadPushesRepeatedContentOnce() {
+        int uploadsBefore = stub.uploads();
+
+        ResponseEntity<Map> response = imageService.uploadImages(List.of(file("a.jpg", "repeated".getBytes()),
+                file("b.jpg", "repeated".getBytes()), file("c.jpg", "unique".getBytes())), userId, null);
+
+        assertThat(response.getBody().get("uploaded")).isEqualTo(2L);
+        assertThat(response.getBody().get("duplicates")).isEqualTo(1L);
+        assertThat(response.getBody().get("failed")).isEqualTo(0L);
+        assertThat(stub.uploads() - uploadsBefore).isEqualTo(2);
+        List<Map<String, Object>> results = (List<Map<String, Object>>) response.getBody().get("results");
+        assertThat(results.get(0).get("status")).isEqualTo("uploaded");
+        assertThat(results.get(1).get("status")).isEqualTo("duplicate");
+        assertThat(results.get(1).get("id")).isEqualTo(results.get(0).get("id"));
+        assertThat(results.get(1).get("imageLink")).isEqualTo(results.get(0).get("imageLink"));
+    }
+
+    /**
+     * Test that a batch pushes every file, reports a failed push for its own file without failing the
+     * others, and saves the uploaded images for the user.
+     */
+    @Test
+    public void testBatchUploadReportsEachFile() {
+        stub.failNext(1, 400);
+
+        ResponseEntity<Map> response = imageService.uploadImages(List.of(file("a.jpg", "batch a".getBytes()),
+                file("b.jpg", "batch b".getBytes()), file("c.jpg", "batch c".getBytes())), userId, null);
+
+        assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+        assertThat(((Number) response.getBody().get("uploaded")).intValue()).isEqualTo(2);
+        assertThat(((Number) response.getBody().get("failed")).intValue()).isEqualTo(1);
+        List<Map<String, Object>> results = (List<Map<String, Object>>) response.getBody().get("results");
+        assertThat(results).extracting(result -> result.get("filename")).containsExactly("a.jpg", "b.jpg", "c.jpg");
+        assertThat(results).filteredOn(result -> "uploaded".equals(result.get("status")))
+                .hasSize(2)
+                .allSatisfy(result -> assertThat(imageService.getImageById((Long) result.get("id"), userId, null)
+                        .getStatusCode().is2xxSuccessful()).isTrue());
+        assertThat(results).filteredOn(result -> "failed".equals(result.get("status")))
+                .singleElement()
+                .satisfies(result -> assertThat(result.get("error")).isNotNull());
+    }
+
+    /**
+     * Test that the listing pages through the user's images by cursor, in id order, and returns only
+     * the requested fields.
+     */
+    @Test
+    public void testListingPagesByCursor() {
+        List<Object> uploadedIds = new ArrayList<>();
+        for (String name : List.of("p1.jpg", "p2.jpg", "p3.jpg")) {
+            uploadedIds.add(imageService.uploadImage(file(name, ("page " + name + userId).getBytes()), userId, null)
+                    .getBody().get("id"));
+        }
+
+        ResponseEntity<Map> first = imageService.getUserImages(userId, null, null, 2, "id,link");
+        List<Map<String, Object>> firstImages = (List<Map<String, Object>>) first.getBody().get("images");
+        assertThat(firstImages).hasSize(2).allSatisfy(image -> assertThat(image).containsOnlyKeys("id", "link"));
+        assertThat(first.getBody().get("nextCursor")).isNotNull();
+
+        ResponseEntity<Map> second = imageService.getUserImages(userId, null,
+                (String) first.getBody().get("nextCursor"), 2, "id,link");
+        List<Map<String, Object>> secondImages = (List<Map<String, Object>>) second.getBody().get("images");
+        assertThat(secondImages).hasSize(1);
+        assertThat(second.getBody()).doesNotContainKey("nextCursor");
+
+        List<Object> listedIds = new ArrayList<>();
+        firstImages.forEach(image -> listedIds.add(image.get("id")));
+        secondImages.forEach(image -> listedIds.add(image.get("id")));
+        assertThat(listedIds).isEqualTo(uploadedIds);
+        assertThat(imageService.getUserImages(userId, null, "not-a-cursor", 2, null).getStatusCode().value())
+                .isEqualTo(400);
+    }
+
+    /**
+     * Test that an upload gets thumbnails rendered in the background, scaled to fit the configured size.
+     */
+    @Test
+    public void testUploadGeneratesThumbnails() throws Exception {
+        BufferedImage picture = new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(picture, "png", png);
+
+        ResponseEntity<Map> response = imageService.uploadImage(file("photo.png", png.toByteArray()), userId, null);
+        Long imageId = (Long) response.getBody().get("id");
+
+        Optional<ImageContent> thumbnail = Optional.empty();
+        for (int attempt = 0; attempt < 100; attempt++) {
+            thumbnail = imageService.getThumbnail(imageId, 200, userId, null).filter(content -> content.file() != null);
+            if (thumbnail.isPresent()) {
+                break;
+            }
+            Thread.sleep(100);
+        }
+        assertThat(thumbnail).isPresent();
+        BufferedImage scaled = ImageIO.read(thumbnail.get().file().toFile());
+        assertThat(scaled.getWidth()).isEqualTo(200);
+        assertThat(scaled.getHeight()).isEqualTo(150);
+        assertThat(thumbnail.get().weak()).isTrue();
+        assertThat(imageService.getThumbnail(imageId, 123, userId, null)).isEmpty();
+
+    }
+
+    /**
+     * Test that an optimized upload records both the uploaded size and the smaller size actually stored,
+     * and that its content is served with a weak ETag.
+     */
+    @Test
+    public void testOptimizedUploadRecordsSizes() throws Exception {
+        BufferedImage picture = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(7);
+        for (int y = 0; y < picture.getHeight(); y++) {
+            for (int x = 0; x < picture.getWidth(); x++) {
+                picture.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        Path source = Files.createTempFile("optimize-", ".jpg");
+        byte[] jpeg;
+        try {
+            ImageCodec.writeJpeg(picture, 1.0f, source);
+            jpeg = Files.readAllBytes(source);
+        } finally {
+            Files.delete(source);
+        }
+
+        ResponseEntity<Map> response = imageService.uploadImage(file("large.jpg", jpeg), userId, null);
+
+        Image image = imageRepository.findById((Long) response.getBody().get("id")).orElseThrow();
+        assertThat(image.getOriginalSize()).isEqualTo(jpeg.length);
+        assertThat(image.getOptimizedSize()).isPositive().isLessThan(image.getOriginalSize());
+        assertThat(image.getFilename()).isEqualTo("large.jpg");
+        // The served bytes are not the ones the content hash was taken from.
+        assertThat(imageService.getImageContent(image.getId(), userId, null).orElseThrow().weak()).isTrue();
+    }
+
+    /**
+     * Test that an upload is optimized and saved on the upload processing pool, not on the calling
+     * thread or the thread that completed the store.
+     */
+    @Test
+    public void testUploadIsProcessedOnProcessingPool() throws InterruptedException {
+        long completedBefore = uploadProcessingExecutor.getThreadPoolExecutor().getCompletedTaskCount();
+
+        ResponseEntity<Map> response = imageService.uploadImage(file("pooled.jpg", "pooled bytes".getBytes()), userId, null);
+
+        assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+        for (int attempt = 0; attempt < 100
+                && uploadProcessingExecutor.getThreadPoolExecutor().getCompletedTaskCount() - completedBefore < 2; attempt++) {
+            Thread.sleep(50);
+        }
+        assertThat(uploadProcessingExecutor.getThreadPoolExecutor().getCompletedTaskCount() - completedBefore)
+                .isGreaterThanOrEqualTo(2);
+    }
+
+    /**
+     * Test that concurrent blocking-mode uploads reach Imgur together rather than one at a time
+     * behind the single upload processing thread.
+     */
+    @Test
+    public void testConcurrentUploadsAreNotCappedByProcessingPool() {
+        stub.delay(Duration.ofMillis(500));
+        stub.resetMaxInFlight();
+        try {
+            List<CompletableFuture<ResponseEntity<Map>>> uploads = IntStream.range(0, 4)
+                    .mapToObj(i -> imageService.uploadImageAsync(
+                            file("concurrent" + i + ".jpg", ("concurrent bytes " + i).getBytes()), userId, null))
+                    .toList();
+
+            uploads.forEach(upload -> assertThat(upload.join().getStatusCode().is2xxSuccessful()).isTrue());
+            assertThat(stub.maxInFlight()).isEqualTo(4);
+        } finally {
+            stub.heal();
+        }
+    }
+
+    private static MockMultipartFile file(String name, byte[] bytes) {
+        return new MockMultipartFile("file", name, MediaType.IMAGE_JPEG_VALUE, bytes);
+    }
+}
@@ -0,0 +1,171 @@
+package com.syfproject.img_store.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.syfproject.img_store.config.ImgurClientConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * Tests the circuit breaker, retries and bulkhead of ImgurClientService against a fault-injecting
+ * Imgur stub server.
+ */
+@SpringBootTest(classes = {ImgurClientConfig.class, ImgurClientService.class}, properties = {
+        "imgur.client-id=test-client",
+        "imgur.circuit.failure-threshold=3",
+        "imgur.circuit.open-duration=500ms",
+        "imgur.bulkhead.max-concurrent=2",
+        "imgur.bulkhead.max-wait=0s",
+        "imgur.retry.max-attempts=3",
+        "imgur.retry.initial-backoff=10ms",
+        "imgur.retry.max-backoff=50ms"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class ImgurClientResilienceTest {
+
+    private static ImgurStubServer stub;
+
+    @TempDir
+    Path tempDir;
+
+    @Autowired
+    private ImgurClientService imgurClientService;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @DynamicPropertySource
+    static void imgurProperties(DynamicPropertyRegistry registry) throws IOException {
+        stub = new ImgurStubServer();
+        registry.add("imgur.api-url", stub::apiUrl);
+    }
+
+    @AfterAll
+    static void stopStub() {
+        stub.close();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        stub.heal();
+        imgurClientService.bindTo(registry);
+    }
+
+    /**
+     * Test that a delete is retried through transient server errors and then succeeds.
+     */
+    @Test
+    public void testDeleteRetriedThroughTransientFailures() {
+        stub.failNext(2, 503);
+        int before = stub.requests();
+
+        ResponseEntity<Map> response = imgurClientService.deleteImage("hash1");
+
+        assertThat(response.getStatusCode().value()).isEqualTo(200);
+        assertThat(stub.requests() - before).isEqualTo(3);
+        assertThat(registry.get("imgur.calls.retries").functionCounter().count()).isEqualTo(2);
+    }
+
+    /**
+     * Test that an upload Imgur refused with 429 is retried, but one that failed with 500 is not,
+     * since Imgur may have stored it.
+     */
+    @Test
+    public void testUploadRetriedOnlyWhenRefused() throws IOException {
+        stub.failNext(1, 429);
+        int before = stub.requests();
+        assertThat(imgurClientService.uploadImage(image("refused.jpg")).getStatusCode().value()).isEqualTo(200);
+        assertThat(stub.requests() - before).isEqualTo(2);
+
+        stub.failNext(1, 500);
+        before = stub.requests();
+        ResponseEntity<Map> response = imgurClientService.uploadImage(image("failed.jpg"));
+        assertThat(response.getStatusCode().value()).isEqualTo(500);
+        assertThat((String) response.getBody().get("error")).startsWith("Upload failed");
+        assertThat(stub.requests() - before).isEqualTo(1);
+    }
+
+    /**
+     * Test that repeated failures open the circuit, that calls then fail fast without reaching
+     * Imgur, and that a successful probe after the open period closes it again.
+     */
+    @Test
+    public void testCircuitOpensFailsFastAndRecovers() throws InterruptedException {
+        stub.failNext(Integer.MAX_VALUE, 500);
+
+        assertThat(imgurClientService.deleteImage("hash1").getStatusCode().value()).isEqualTo(500);
+        assertThat(registry.get("imgur.circuit.state").gauge().value()).isEqualTo(1);
+
+        int before = stub.requests();
+        ResponseEntity<Map> rejected = imgurClientService.deleteImage("hash2");
+        assertThat(rejected.getStatusCode().value()).isEqualTo(503);
+        assertThat(stub.requests()).isEqualTo(before);
+        assertThat(registry.get("imgur.calls.rejected").tag("reason", "circuit_open").functionCounter().count())
+                .isEqualTo(1);
+
+        stub.heal();
+        Thread.sleep(600);
+        assertThat(imgurClientService.deleteImage("hash3").getStatusCode().value()).isEqualTo(200);
+        assertThat(registry.get("imgur.circuit.state").gauge().value()).isEqualTo(0);
+        for (String state : List.of("open", "half_open", "closed")) {
+            assertThat(registry.get("imgur.circuit.transitions").tag("state", state).functionCounter().count())
+                    .as(state).isEqualTo(1);
+        }
+    }
+
+    /**
+     * Test that calls beyond the bulkhead's capacity are rejected while Imgur is slow.
+     */
+    @Test
+    public void testBulkheadCapsConcurrentCalls() throws Exception {
+        stub.delay(Duration.ofMillis(500));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> statuses = new ArrayList<>();
+        try {
+            for (int i = 0; i < 4; i++) {
+                String deleteHash = "slow" + i;
+                statuses.add(executor.submit(() -> {
+                    start.await();
+                    return imgurClientService.deleteImage(deleteHash).getStatusCode().value();
+                }));
+            }
+            start.countDown();
+            List<Integer> codes = new ArrayList<>();
+            for (Future<Integer> status : statuses) {
+                codes.add(status.get(10, TimeUnit.SECONDS));
+            }
+            assertThat(codes).containsExactlyInAnyOrder(200, 200, 503, 503);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(registry.get("imgur.calls.rejected").tag("reason", "bulkhead_full").functionCounter().count())
+                .isEqualTo(2);
+    }
+
+    private FileSystemResource image(String filename) throws IOException {
+        Path path = Files.write(tempDir.resolve(filename), new byte[1024]);
+        return new FileSystemResource(path);
+    }
+}
@@ -0,0 +1,124 @@
+package com.syfproject.img_store.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import com.syfproject.img_store.config.ImgurClientConfig;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.pool.PoolStats;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * Tests ImgurClientService and its pooled HTTP client against a local Imgur stub server.
+ */
+@SpringBootTest(classes = {ImgurClientConfig.class, ImgurClientService.class},
+        properties = {"imgur.client-id=test-client", "imgur.http.max-connections-per-route=4"})
+public class ImgurClientServiceTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private static ImgurStubServer stub;
+
+    @TempDir
+    Path tempDir;
+
+    @Autowired
+    private ImgurClientService imgurClientService;
+
+    @Autowired
+    private PoolingHttpClientConnectionManager imgurConnectionManager;
+
+    @DynamicPropertySource
+    static void imgurProperties(DynamicPropertyRegistry registry) throws IOException {
+        stub = new ImgurStubServer();
+        registry.add("imgur.api-url", stub::apiUrl);
+    }
+
+    @AfterAll
+    static void stopStub() {
+        stub.close();
+    }
+
+    /**
+     * Test that an upload is sent in full and the Imgur response is passed through.
+     */
+    @Test
+    public void testUploadImageStreamsContent() throws IOException {
+        ResponseEntity<Map> response = imgurClientService.uploadImage(imageOfSize("small.jpg", 3 * MB));
+
+        assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+        Map<String, Object> data = (Map<String, Object>) response.getBody().get("data");
+        assertThat((String) data.get("deletehash")).startsWith("hash");
+        // The multipart envelope adds a few hundred bytes around the image part.
+        assertThat(stub.lastUploadBytes()).isBetween(3 * MB, 3 * MB + 1024);
+    }
+
+    /**
+     * Test that heap allocation on the uploading thread stays flat as the upload size grows,
+     * i.e. the file is streamed rather than copied into a byte array.
+     */
+    @Test
+    public void testUploadHeapGrowthStaysFlat() throws IOException {
+        imgurClientService.uploadImage(imageOfSize("warmup.jpg", MB));
+        int uploadsBefore = stub.uploads();
+
+        long smallUpload = allocatedDuringUpload(imageOfSize("small.jpg", 2 * MB));
+        long largeUpload = allocatedDuringUpload(imageOfSize("large.jpg", 64 * MB));
+
+        // A buffered upload would allocate at least the 62 MB size difference.
+        assertThat(largeUpload - smallUpload).isLessThan(8 * MB);
+        assertThat(stub.uploads() - uploadsBefore).isEqualTo(2);
+    }
+
+    /**
+     * Test that sequential upload and delete calls reuse one pooled keep-alive connection.
+     */
+    @Test
+    public void testConnectionsReusedAcrossUploadAndDelete() throws IOException {
+        stub.resetConnections();
+        for (int i = 0; i < 5; i++) {
+            ResponseEntity<Map> upload = imgurClientService.uploadImage(imageOfSize("reuse" + i + ".jpg", 64 * 1024));
+            Map<String, Object> data = (Map<String, Object>) upload.getBody().get("data");
+            ResponseEntity<Map> delete = imgurClientService.deleteImage((String) data.get("deletehash"));
+            assertThat(delete.getStatusCode().is2xxSuccessful()).isTrue();
+        }
+
+        assertThat(stub.distinctConnections()).isEqualTo(1);
+        PoolStats stats = imgurConnectionManager.getTotalStats();
+        assertThat(stats.getLeased()).isZero();
+        assertThat(stats.getPending()).isZero();
+        assertThat(stats.getAvailable()).isEqualTo(1);
+    }
+
+    private long allocatedDuringUpload(Resource image) {
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threadMXBean.getCurrentThreadAllocatedBytes();
+        ResponseEntity<Map> response = imgurClientService.uploadImage(image);
+        long allocated = threadMXBean.getCurrentThreadAllocatedBytes() - before;
+        assertThat(response.getStatusCode().is2xxSuccessful()).isTrue();
+        return allocated;
+    }
+
+    private Resource imageOfSize(String filename, long size) throws IOException {
+        Path path = Files.createFile(tempDir.resolve(filename));
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(size);
+        }
+        return new FileSystemResource(path);
+    }
+}
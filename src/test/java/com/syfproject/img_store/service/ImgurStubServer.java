@@ -0,0 +1,191 @@
+package com.syfproject.img_store.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal Imgur-compatible HTTP server for tests.
+ * Accepts image uploads and deletes under /3/image and records what it received.
+ * Faults can be injected: a delay before every response, and error statuses for some requests.
+ * Each request is handled on its own thread, so delayed requests overlap.
+ */
+class ImgurStubServer implements AutoCloseable {
+
+    /**
+     * Image ids are unique across stubs, because test contexts share one in-memory database.
+     */
+    private static final AtomicLong IDS = new AtomicLong();
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicInteger uploads = new AtomicInteger();
+    private final AtomicInteger deletes = new AtomicInteger();
+    private final AtomicLong lastUploadBytes = new AtomicLong();
+    private final Set<String> remoteClients = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger failuresRemaining = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private volatile int failureStatus;
+    private volatile long delayMillis;
+
+    ImgurStubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/3/image", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return the API base URL to configure as imgur.api-url
+     */
+    String apiUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/3";
+    }
+
+    int uploads() {
+        return uploads.get();
+    }
+
+    int deletes() {
+        return deletes.get();
+    }
+
+    long lastUploadBytes() {
+        return lastUploadBytes.get();
+    }
+
+    /**
+     * @return the number of distinct client sockets that have sent requests
+     */
+    int distinctConnections() {
+        return remoteClients.size();
+    }
+
+    void resetConnections() {
+        remoteClients.clear();
+    }
+
+    /**
+     * @return the number of requests received, including those answered with an injected fault
+     */
+    int requests() {
+        return requests.get();
+    }
+
+    /**
+     * @return the most requests that were being handled at once
+     */
+    int maxInFlight() {
+        return maxInFlight.get();
+    }
+
+    void resetMaxInFlight() {
+        maxInFlight.set(inFlight.get());
+    }
+
+    /**
+     * Answers the next {@code count} requests with the given error status.
+     */
+    void failNext(int count, int status) {
+        failureStatus = status;
+        failuresRemaining.set(count);
+    }
+
+    /**
+     * Delays every response.
+     */
+    void delay(Duration delay) {
+        delayMillis = delay.toMillis();
+    }
+
+    /**
+     * Removes all injected faults.
+     */
+    void heal() {
+        failuresRemaining.set(0);
+        delayMillis = 0;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            respond(exchange);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        remoteClients.add(exchange.getRemoteAddress().toString());
+        requests.incrementAndGet();
+        if (delayMillis > 0) {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (failuresRemaining.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+            drain(exchange.getRequestBody());
+            respond(exchange, failureStatus, "{\"data\":{\"error\":\"Injected fault\"},\"success\":false,\"status\":"
+                    + failureStatus + "}");
+            return;
+        }
+        String body;
+        if ("POST".equals(exchange.getRequestMethod())) {
+            lastUploadBytes.set(drain(exchange.getRequestBody()));
+            uploads.incrementAndGet();
+            long n = IDS.incrementAndGet();
+            body = "{\"data\":{\"id\":\"img" + n + "\",\"link\":\"https://i.imgur.com/img" + n
+                    + ".jpg\",\"deletehash\":\"hash" + n + "\"},\"success\":true,\"status\":200}";
+        } else if ("DELETE".equals(exchange.getRequestMethod())) {
+            drain(exchange.getRequestBody());
+            deletes.incrementAndGet();
+            body = "{\"data\":true,\"success\":true,\"status\":200}";
+        } else {
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            return;
+        }
+        respond(exchange, 200, body);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static long drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            total += read;
+        }
+        return total;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
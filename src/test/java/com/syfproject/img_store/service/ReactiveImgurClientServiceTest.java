@@ -0,0 +1,163 @@
+package com.syfproject.img_store.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.syfproject.img_store.config.ImgurClientConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * Tests the non-blocking ReactiveImgurClientService against a local Imgur stub server.
+ */
+@SpringBootTest(classes = {ImgurClientConfig.class, ReactiveImgurClientService.class, JacksonAutoConfiguration.class}, properties = {
+        "imgur.client-id=test-client",
+        "imgur.client.mode=reactive",
+        "imgur.client.max-in-flight=20",
+        "imgur.http.async-threads=2",
+        "imgur.retry.max-attempts=3",
+        "imgur.retry.initial-backoff=10ms",
+        "imgur.retry.max-backoff=50ms"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class ReactiveImgurClientServiceTest {
+
+    private static ImgurStubServer stub;
+
+    @TempDir
+    Path tempDir;
+
+    @Autowired
+    private ReactiveImgurClientService imgurClientService;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @DynamicPropertySource
+    static void imgurProperties(DynamicPropertyRegistry registry) throws IOException {
+        stub = new ImgurStubServer();
+        registry.add("imgur.api-url", stub::apiUrl);
+    }
+
+    @AfterAll
+    static void stopStub() {
+        stub.close();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        stub.heal();
+        imgurClientService.bindTo(registry);
+    }
+
+    /**
+     * Test that an upload streams the whole file to Imgur and returns Imgur's response, and that the
+     * image can then be deleted.
+     */
+    @Test
+    public void testUploadAndDelete() throws IOException {
+        Path file = Files.write(tempDir.resolve("photo.jpg"), new byte[300 * 1024]);
+
+        ResponseEntity<Map> upload = imgurClientService.uploadImage(new FileSystemResource(file)).join();
+
+        assertThat(upload.getStatusCode().is2xxSuccessful()).isTrue();
+        Map<String, Object> data = (Map<String, Object>) upload.getBody().get("data");
+        assertThat(data.get("deletehash")).isNotNull();
+        assertThat(stub.lastUploadBytes()).isGreaterThan(300 * 1024);
+
+        ResponseEntity<Map> delete = imgurClientService.deleteImage((String) data.get("deletehash")).join();
+        assertThat(delete.getStatusCode().is2xxSuccessful()).isTrue();
+        assertThat(stub.deletes()).isEqualTo(1);
+    }
+
+    /**
+     * Test that a delete is retried through transient server errors without blocking the caller.
+     */
+    @Test
+    public void testDeleteRetriedThroughTransientFailures() {
+        stub.failNext(2, 503);
+
+        ResponseEntity<Map> response = imgurClientService.deleteImage("hash").join();
+
+        assertThat(response.getStatusCode().value()).isEqualTo(200);
+        assertThat(stub.requests()).isEqualTo(3);
+        assertThat(registry.get("imgur.calls.retries").functionCounter().count()).isEqualTo(2);
+    }
+
+    /**
+     * Test that calls return before Imgur answers, so many uploads are in flight at once on two
+     * response threads, and that calls beyond the in-flight limit are rejected at once with 503.
+     */
+    @Test
+    public void testUploadsInFlightWithoutHoldingThreads() throws IOException {
+        stub.delay(Duration.ofMillis(500));
+        Path file = Files.write(tempDir.resolve("photo.jpg"), new byte[1024]);
+
+        long start = System.nanoTime();
+        List<CompletableFuture<ResponseEntity<Map>>> uploads = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            uploads.add(imgurClientService.uploadImage(new FileSystemResource(file)));
+        }
+        ResponseEntity<Map> rejected = imgurClientService.uploadImage(new FileSystemResource(file)).join();
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(500));
+        assertThat(rejected.getStatusCode().value()).isEqualTo(503);
+
+        for (CompletableFuture<ResponseEntity<Map>> upload : uploads) {
+            assertThat(upload.join().getStatusCode().value()).isEqualTo(200);
+        }
+        assertThat(stub.maxInFlight()).isEqualTo(20);
+        assertThat(registry.get("imgur.calls.rejected").tag("reason", "bulkhead_full").functionCounter().count())
+                .isEqualTo(1);
+    }
+
+    /**
+     * Test that content that is not a file is sent from memory, so the upload can be retried after
+     * Imgur turns the first attempt away.
+     */
+    @Test
+    public void testInMemoryUploadIsRetried() {
+        stub.failNext(1, 503);
+        ByteArrayResource image = new ByteArrayResource(new byte[4096]) {
+            @Override
+            public String getFilename() {
+                return "memory.jpg";
+            }
+        };
+
+        ResponseEntity<Map> response = imgurClientService.uploadImage(image).join();
+
+        assertThat(response.getStatusCode().value()).isEqualTo(200);
+        assertThat(stub.requests()).isEqualTo(2);
+        assertThat(stub.lastUploadBytes()).isGreaterThan(4096);
+    }
+
+    /**
+     * Test that control characters, quotes and backslashes are dropped from the part filename, so a
+     * client-supplied name cannot add headers or parts to the request sent to Imgur.
+     */
+    @Test
+    public void testPartFilenameCannotInjectHeaders() {
+        assertThat(ReactiveImgurClientService.partFilename("a.jpg\"\r\nContent-Type: text/html\r\n\r\n--x\\"))
+                .isEqualTo("a.jpgContent-Type: text/html--x");
+        assertThat(ReactiveImgurClientService.partFilename("\r\n\t")).isEqualTo("image");
+        assertThat(ReactiveImgurClientService.partFilename(null)).isEqualTo("image");
+    }
+}
@@ -0,0 +1,81 @@
+package com.syfproject.img_store.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Tests thumbnail generation against a temporary directory.
+ */
+public class ThumbnailServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private final ThreadPoolTaskExecutor executor = executor();
+
+    @AfterEach
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Test that thumbnails are rendered even when the caller deletes the source file before the
+     * thumbnail executor gets to it, and that the staged copy is removed afterwards.
+     */
+    @Test
+    public void testSourceMayBeDeletedOnceQueued() throws Exception {
+        ThumbnailService thumbnails = new ThumbnailService(executor, dir.resolve("thumbnails").toString(),
+                new Integer[] {100}, 0.8f, 50_000_000);
+        Path upload = dir.resolve("upload.png");
+        ImageIO.write(new BufferedImage(400, 200, BufferedImage.TYPE_INT_RGB), "png", upload.toFile());
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        thumbnails.generate(1L, new FileSystemResource(upload));
+        Files.delete(upload);
+        release.countDown();
+
+        Optional<Path> thumbnail = Optional.empty();
+        for (int attempt = 0; attempt < 100 && (thumbnail.isEmpty() || staged() > 0); attempt++) {
+            Thread.sleep(50);
+            thumbnail = thumbnails.find(1L, 100);
+        }
+        assertThat(thumbnail).isPresent();
+        assertThat(ImageIO.read(thumbnail.get().toFile()).getWidth()).isEqualTo(100);
+        assertThat(staged()).isZero();
+    }
+
+    private long staged() throws IOException {
+        try (Stream<Path> files = Files.list(dir.resolve("thumbnails").resolve(".staging"))) {
+            return files.count();
+        }
+    }
+
+    private static ThreadPoolTaskExecutor executor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(10);
+        executor.initialize();
+        return executor;
+    }
+}
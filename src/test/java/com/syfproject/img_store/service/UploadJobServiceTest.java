@@ -0,0 +1,199 @@
+package com.syfproject.img_store.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import com.syfproject.img_store.domain.entity.UploadJob;
+import com.syfproject.img_store.domain.entity.User;
+import com.syfproject.img_store.domain.repository.UploadJobRepository;
+import com.syfproject.img_store.domain.repository.UserRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * Tests the upload job lifecycle against H2 and a local Imgur stub server, with a job pool of one
+ * thread and a queue of one so that a full queue can be produced.
+ */
+@SpringBootTest(properties = {"kafka.enabled=false", "imgur.client-id=test-client",
+        "upload.async.pool-size=1", "upload.async.queue-capacity=1"})
+public class UploadJobServiceTest {
+
+    private static ImgurStubServer stub;
+
+    @Autowired
+    private UploadJobService uploadJobService;
+
+    @Autowired
+    private UploadJobRepository uploadJobRepository;
+
+    @Autowired
+    private UploadSpooler uploadSpooler;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    @Qualifier("uploadJobExecutor")
+    private ThreadPoolTaskExecutor uploadJobExecutor;
+
+    private String username;
+
+    @DynamicPropertySource
+    static void imgurProperties(DynamicPropertyRegistry registry) throws IOException {
+        stub = new ImgurStubServer();
+        registry.add("imgur.api-url", stub::apiUrl);
+    }
+
+    @AfterAll
+    static void stopStub() {
+        stub.close();
+    }
+
+    @BeforeEach
+    void createUser() {
+        stub.heal();
+        User user = new User();
+        user.setUsername("jobs" + System.nanoTime());
+        user.setPassword("Password1");
+        user.setFirstname("Test");
+        user.setLastname("User");
+        user.setEmail("jobs@example.com");
+        username = userRepository.save(user).getUsername();
+    }
+
+    /**
+     * Test that a submitted job goes from QUEUED to COMPLETED with the stored image, and that its
+     * spooled file is removed.
+     */
+    @Test
+    public void testSubmittedJobCompletes() throws Exception {
+        ResponseEntity<Map> submitted = uploadJobService.submit(file(), null, username);
+
+        assertThat(submitted.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+        assertThat(submitted.getBody().get("status")).isEqualTo("QUEUED");
+        UploadJob job = awaitFinished((String) submitted.getBody().get("jobId"));
+        assertThat(job.getStatus()).isEqualTo(UploadJob.Status.COMPLETED);
+        assertThat(job.getImageId()).isNotNull();
+        assertThat(job.getImageLink()).startsWith("https://i.imgur.com/");
+        assertThat(Files.exists(Path.of(job.getSpoolPath()))).isFalse();
+
+        ResponseEntity<Map> status = uploadJobService.getJob(job.getId(), username);
+        assertThat(status.getBody().get("status")).isEqualTo("COMPLETED");
+        assertThat(status.getBody().get("imageId")).isEqualTo(job.getImageId());
+        assertThat(uploadJobService.getJob(job.getId(), "someone-else").getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    /**
+     * Test that a job whose upload Imgur rejects ends FAILED with the error recorded.
+     */
+    @Test
+    public void testRejectedUploadFailsJob() throws Exception {
+        stub.failNext(1, 400);
+
+        ResponseEntity<Map> submitted = uploadJobService.submit(file(), null, username);
+
+        UploadJob job = awaitFinished((String) submitted.getBody().get("jobId"));
+        assertThat(job.getStatus()).isEqualTo(UploadJob.Status.FAILED);
+        assertThat(job.getError()).isNotBlank();
+        assertThat(Files.exists(Path.of(job.getSpoolPath()))).isFalse();
+    }
+
+    /**
+     * Test that jobs left pending by a restart are resumed, and that one whose spooled file is gone fails.
+     */
+    @Test
+    public void testResumePendingJobs() throws Exception {
+        UploadJob resumable = pendingJob(uploadSpooler.spool(file()));
+        UploadJob lost = pendingJob(Path.of(System.getProperty("java.io.tmpdir"), UUID.randomUUID() + ".upload"));
+
+        uploadJobService.resumePendingJobs();
+
+        assertThat(awaitFinished(resumable.getId()).getStatus()).isEqualTo(UploadJob.Status.COMPLETED);
+        UploadJob failed = uploadJobRepository.findById(lost.getId()).orElseThrow();
+        assertThat(failed.getStatus()).isEqualTo(UploadJob.Status.FAILED);
+        assertThat(failed.getError()).isEqualTo("Spooled upload was lost");
+    }
+
+    /**
+     * Test that a pending job which does not fit in the full queue on resume is failed rather than
+     * left QUEUED, and its spooled file removed.
+     */
+    @Test
+    public void testResumeWithFullQueueFailsJob() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable blocker = () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        // Wait for the worker to take the first blocker, otherwise the second finds the queue still full.
+        uploadJobExecutor.execute(blocker);
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+        uploadJobExecutor.execute(blocker);
+        try {
+            Path spooled = uploadSpooler.spool(file());
+            UploadJob job = pendingJob(spooled);
+
+            uploadJobService.resumePendingJobs();
+
+            UploadJob failed = uploadJobRepository.findById(job.getId()).orElseThrow();
+            assertThat(failed.getStatus()).isEqualTo(UploadJob.Status.FAILED);
+            assertThat(failed.getError()).isEqualTo("Upload queue is full");
+            assertThat(Files.exists(spooled)).isFalse();
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private UploadJob pendingJob(Path spooled) {
+        Instant now = Instant.now();
+        UploadJob job = new UploadJob();
+        job.setId(UUID.randomUUID().toString());
+        job.setUsername(username);
+        job.setFilename("resumed.jpg");
+        job.setSpoolPath(spooled.toString());
+        job.setStatus(UploadJob.Status.QUEUED);
+        job.setCreatedAt(now);
+        job.setUpdatedAt(now);
+        return uploadJobRepository.save(job);
+    }
+
+    private UploadJob awaitFinished(String jobId) throws InterruptedException {
+        UploadJob job = null;
+        for (int attempt = 0; attempt < 100; attempt++) {
+            job = uploadJobRepository.findById(jobId).orElseThrow();
+            if (job.getStatus() == UploadJob.Status.COMPLETED || job.getStatus() == UploadJob.Status.FAILED) {
+                return job;
+            }
+            Thread.sleep(100);
+        }
+        return job;
+    }
+
+    private static MockMultipartFile file() {
+        return new MockMultipartFile("file", "photo.jpg", MediaType.IMAGE_JPEG_VALUE,
+                UUID.randomUUID().toString().getBytes());
+    }
+}
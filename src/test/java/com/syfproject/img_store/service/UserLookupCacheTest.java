@@ -0,0 +1,93 @@
+package com.syfproject.img_store.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Optional;
+import com.syfproject.img_store.domain.entity.User;
+import com.syfproject.img_store.domain.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the user lookup cache against a mocked repository.
+ */
+public class UserLookupCacheTest {
+
+    private UserRepository userRepository;
+    private UserLookupCache cache;
+
+    @BeforeEach
+    void createCache() {
+        userRepository = mock(UserRepository.class);
+        cache = new UserLookupCache(userRepository, 100, Duration.ofMinutes(10), Duration.ofMillis(200));
+    }
+
+    /**
+     * Test that the first lookup of a username loads it from the repository and later lookups are hits.
+     */
+    @Test
+    public void testLookupIsLoadedOnceThenCached() {
+        when(userRepository.findByUsername("cached")).thenReturn(Optional.of(user(1L, "cached", "hash1")));
+
+        Optional<UserLookupCache.CachedUser> first = cache.find("cached");
+        Optional<UserLookupCache.CachedUser> second = cache.find("cached");
+
+        assertThat(first).contains(new UserLookupCache.CachedUser(1L, "cached", "hash1"));
+        assertThat(second).isEqualTo(first);
+        assertThat(cache.findUserId("cached")).isEqualTo(1L);
+        verify(userRepository, times(1)).findByUsername("cached");
+    }
+
+    /**
+     * Test that invalidating a username after its user changed makes the next lookup see the change.
+     */
+    @Test
+    public void testInvalidateReloadsChangedUser() {
+        when(userRepository.findByUsername("changed")).thenReturn(Optional.of(user(2L, "changed", "oldhash")));
+        assertThat(cache.find("changed").map(UserLookupCache.CachedUser::passwordHash)).contains("oldhash");
+
+        when(userRepository.findByUsername("changed")).thenReturn(Optional.of(user(2L, "changed", "newhash")));
+        assertThat(cache.find("changed").map(UserLookupCache.CachedUser::passwordHash)).contains("oldhash");
+
+        cache.invalidate("changed");
+        assertThat(cache.find("changed").map(UserLookupCache.CachedUser::passwordHash)).contains("newhash");
+        verify(userRepository, times(2)).findByUsername("changed");
+    }
+
+    /**
+     * Test that an unknown username is cached as missing until it is invalidated, for example by
+     * registration, or until the shorter negative TTL passes.
+     */
+    @Test
+    public void testMissingUserIsCachedBriefly() throws InterruptedException {
+        when(userRepository.findByUsername("ghost")).thenReturn(Optional.empty());
+
+        assertThat(cache.find("ghost")).isEmpty();
+        assertThat(cache.findUserId("ghost")).isNull();
+        verify(userRepository, times(1)).findByUsername("ghost");
+
+        when(userRepository.findByUsername("ghost")).thenReturn(Optional.of(user(3L, "ghost", "hash3")));
+        assertThat(cache.find("ghost")).isEmpty();
+        cache.invalidate("ghost");
+        assertThat(cache.findUserId("ghost")).isEqualTo(3L);
+
+        when(userRepository.findByUsername("vanished")).thenReturn(Optional.empty());
+        assertThat(cache.find("vanished")).isEmpty();
+        when(userRepository.findByUsername("vanished")).thenReturn(Optional.of(user(4L, "vanished", "hash4")));
+        Thread.sleep(300);
+        assertThat(cache.findUserId("vanished")).isEqualTo(4L);
+    }
+
+    private static User user(Long id, String username, String passwordHash) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        user.setPassword(passwordHash);
+        return user;
+    }
+}
@@ -0,0 +1,157 @@
+package com.syfproject.img_store.service.events;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+import kafka.server.KafkaServer;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaZKBroker;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Tests EventPublisher against an embedded Kafka broker that is stopped and restarted.
+ */
+public class EventPublisherTest {
+
+    private static final String TOPIC = "image-uploads";
+
+    @TempDir
+    Path tempDir;
+
+    private EmbeddedKafkaZKBroker broker;
+    private DefaultKafkaProducerFactory<String, byte[]> producerFactory;
+    private EventPublisher publisher;
+
+    @BeforeEach
+    void startBroker() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        broker = new EmbeddedKafkaZKBroker(1, false, 1, TOPIC).kafkaPorts(port);
+        broker.afterPropertiesSet();
+        producerFactory = new DefaultKafkaProducerFactory<>(Map.of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString(),
+                ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
+                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class,
+                ProducerConfig.MAX_BLOCK_MS_CONFIG, 1000,
+                ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, 1000,
+                ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, 2000,
+                ProducerConfig.RECONNECT_BACKOFF_MAX_MS_CONFIG, 200));
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        if (publisher != null) {
+            publisher.stop();
+        }
+        producerFactory.destroy();
+        broker.destroy();
+    }
+
+    /**
+     * Test that events published while the broker is down return immediately, spill to the journal once
+     * the buffer is full, and are all delivered in publish order after the broker restarts.
+     */
+    @Test
+    public void testEventsSurviveBrokerRestartInOrder() throws Exception {
+        publisher = newPublisher(5);
+        publishRange(0, 10);
+        assertThat(consume(10)).containsExactlyElementsOf(events(0, 10));
+
+        KafkaServer server = broker.getKafkaServer(0);
+        server.shutdown();
+        server.awaitShutdown();
+
+        long started = System.nanoTime();
+        publishRange(10, 60);
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(1));
+        assertThat(publisher.spilledCount()).isGreaterThan(0);
+
+        server.startup();
+        // Earlier events were committed by the first consume, so only the new ones are read.
+        assertThat(consume(50)).containsExactlyElementsOf(events(10, 60));
+    }
+
+    /**
+     * Test that events still in the journal at shutdown are replayed by the next publisher.
+     */
+    @Test
+    public void testJournaledEventsAreReplayedAfterRestart() throws Exception {
+        KafkaServer server = broker.getKafkaServer(0);
+        server.shutdown();
+        server.awaitShutdown();
+
+        publisher = newPublisher(5);
+        publishRange(0, 20);
+        publisher.stop();
+
+        server.startup();
+        publisher = newPublisher(5);
+        assertThat(consume(20)).containsExactlyElementsOf(events(0, 20));
+    }
+
+    private EventPublisher newPublisher(int bufferCapacity) throws IOException {
+        EventPublisher created = new EventPublisher(new KafkaTemplate<>(producerFactory), bufferCapacity,
+                tempDir.resolve("events.journal").toString(), DataSize.ofMegabytes(1), 100, Duration.ofMillis(200));
+        created.start();
+        return created;
+    }
+
+    private void publishRange(int from, int to) {
+        for (String event : events(from, to)) {
+            publisher.publish(TOPIC, null, event.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static List<String> events(int from, int to) {
+        return IntStream.range(from, to).mapToObj(i -> "event-" + i).toList();
+    }
+
+    /**
+     * Reads distinct events until {@code count} have arrived. Delivery is at least once, so retried
+     * sends may repeat an event; only the first copy counts.
+     */
+    private List<String> consume(int count) {
+        Map<String, Object> props = KafkaTestUtils.consumerProps("test", "true", broker);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        Set<String> received = new LinkedHashSet<>();
+        try (Consumer<String, byte[]> consumer = new DefaultKafkaConsumerFactory<>(props,
+                new StringDeserializer(), new ByteArrayDeserializer()).createConsumer()) {
+            consumer.subscribe(List.of(TOPIC));
+            long deadline = System.nanoTime() + Duration.ofSeconds(60).toNanos();
+            while (received.size() < count && System.nanoTime() < deadline) {
+                for (ConsumerRecord<String, byte[]> record : consumer.poll(Duration.ofMillis(200))) {
+                    received.add(new String(record.value(), StandardCharsets.UTF_8));
+                }
+            }
+            consumer.commitSync();
+        }
+        return new ArrayList<>(received);
+    }
+}
@@ -0,0 +1,55 @@
+package com.syfproject.img_store.service.events;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the binary ImageEvent serializer and deserializer.
+ */
+public class ImageEventSerializerTest {
+
+    /**
+     * Test that an event survives a round trip, including characters the old hand-built JSON did not escape.
+     */
+    @Test
+    public void testRoundTrip() {
+        ImageEvent event = new ImageEvent(ImageEvent.Type.UPLOADED, 42L, "na\"me\\ü", 7L,
+                "https://i.imgur.com/a.jpg?x=\"1\"", 12345L, 1_700_000_000_000L);
+
+        byte[] bytes = new ImageEventSerializer().serialize(ImageEvent.TOPIC, event);
+
+        assertThat(new ImageEventDeserializer().deserialize(ImageEvent.TOPIC, bytes)).isEqualTo(event);
+        assertThat(bytes.length).isLessThan(100);
+    }
+
+    /**
+     * Test that null fields are preserved and truncated data is rejected.
+     */
+    @Test
+    public void testNullFieldsAndMalformedData() {
+        ImageEvent event = new ImageEvent(ImageEvent.Type.UPLOADED, 1L, null, 2L, null, 0L, 0L);
+        byte[] bytes = ImageEventSerializer.toBytes(event);
+
+        assertThat(ImageEventDeserializer.fromBytes(bytes)).isEqualTo(event);
+        assertThatThrownBy(() -> ImageEventDeserializer.fromBytes(java.util.Arrays.copyOf(bytes, 10)))
+                .isInstanceOf(SerializationException.class);
+    }
+
+    /**
+     * Test that data cut off inside a string, whose length prefix promises more bytes than are left,
+     * is rejected as malformed rather than failing with an index error.
+     */
+    @Test
+    public void testTruncatedString() {
+        ImageEvent event = new ImageEvent(ImageEvent.Type.UPLOADED, 1L, "username", 2L,
+                "https://i.imgur.com/a.jpg", 0L, 0L);
+        byte[] bytes = ImageEventSerializer.toBytes(event);
+
+        assertThatThrownBy(() -> ImageEventDeserializer.fromBytes(java.util.Arrays.copyOf(bytes, bytes.length - 5)))
+                .isInstanceOf(SerializationException.class)
+                .hasMessageContaining("left");
+    }
+}
@@ -0,0 +1,74 @@
+package com.syfproject.img_store.service.events;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests the memory-mapped event journal.
+ */
+public class SpillJournalTest {
+
+    /** Every test event takes 4 + 2 + 1 + 4 + 8 bytes in the journal. */
+    private static final int ENTRY = 19;
+    private static final int CAPACITY = 8 + 10 * ENTRY;
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Test that a journal file cannot be opened twice, and that its entries are kept for the next
+     * journal once it is closed.
+     */
+    @Test
+    public void testJournalIsLockedWhileOpen() throws IOException {
+        Path file = tempDir.resolve("events.journal");
+        try (SpillJournal journal = new SpillJournal(file, CAPACITY)) {
+            journal.append(event(0));
+
+            assertThatThrownBy(() -> new SpillJournal(file, CAPACITY))
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining(file.toString());
+        }
+        try (SpillJournal reopened = new SpillJournal(file, CAPACITY)) {
+            assertThat(values(reopened.peek(10))).containsExactly("event-00");
+        }
+    }
+
+    /**
+     * Test that replayed space is reclaimed once half the file has been replayed, without waiting for
+     * the journal to drain, and that positions read before the entries moved still commit correctly.
+     */
+    @Test
+    public void testReplayedSpaceIsReclaimed() throws IOException {
+        try (SpillJournal journal = new SpillJournal(tempDir.resolve("events.journal"), CAPACITY)) {
+            IntStream.range(0, 10).forEach(i -> assertThat(journal.append(event(i))).isTrue());
+            assertThat(journal.append(event(10))).isFalse();
+
+            SpillJournal.Batch batch = journal.peek(7);
+            journal.commit(batch.endPositions().get(5));
+            journal.commit(batch.endPositions().get(6));
+            assertThat(journal.pendingBytes()).isEqualTo(3 * ENTRY);
+
+            IntStream.range(10, 16).forEach(i -> assertThat(journal.append(event(i))).isTrue());
+            assertThat(journal.append(event(16))).isFalse();
+            assertThat(values(journal.peek(20))).containsExactlyElementsOf(
+                    IntStream.range(7, 16).mapToObj(i -> String.format("event-%02d", i)).toList());
+        }
+    }
+
+    private static PendingEvent event(int i) {
+        return new PendingEvent("t", null, String.format("event-%02d", i).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> values(SpillJournal.Batch batch) {
+        return batch.events().stream().map(event -> new String(event.value(), StandardCharsets.UTF_8)).toList();
+    }
+}
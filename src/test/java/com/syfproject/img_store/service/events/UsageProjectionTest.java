@@ -0,0 +1,136 @@
+package com.syfproject.img_store.service.events;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import com.syfproject.img_store.domain.entity.Image;
+import com.syfproject.img_store.domain.entity.User;
+import com.syfproject.img_store.domain.repository.ImageRepository;
+import com.syfproject.img_store.domain.repository.UserRepository;
+import com.syfproject.img_store.service.ImageService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+
+/**
+ * Tests the usage projection end to end: events go through the publisher and an embedded broker,
+ * and the consumer keeps per-user stats that ignore redelivered events.
+ */
+@SpringBootTest(properties = {
+        "kafka.enabled=true",
+        "kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "kafka.publisher.journal-file=${java.io.tmpdir}/img-store/usage-projection-test-${random.uuid}.journal",
+        "kafka.publisher.retry-backoff=100ms"
+})
+@EmbeddedKafka(partitions = 1, topics = ImageEvent.TOPIC)
+public class UsageProjectionTest {
+
+    @Autowired
+    private EventPublisher eventPublisher;
+
+    @Autowired
+    private UsageProjection usageProjection;
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private KafkaListenerEndpointRegistry listenerRegistry;
+
+    @BeforeEach
+    void awaitAssignment() {
+        // On first start the projection seeks to the end of the topic, so publish only once that is done.
+        ContainerTestUtils.waitForAssignment(listenerRegistry.getListenerContainer("usage-projection"), 1);
+    }
+
+    /**
+     * Test that uploads and deletes are counted once each, even when a batch is delivered again.
+     */
+    @Test
+    public void testProjectionCountsEventsOnce() throws Exception {
+        long userId = newUser("projection").getId();
+
+        List<ImageEvent> events = List.of(
+                event(ImageEvent.Type.UPLOADED, userId, 1, 100, 1_000),
+                event(ImageEvent.Type.UPLOADED, userId, 2, 200, 2_000),
+                event(ImageEvent.Type.UPLOADED, userId, 3, 300, 3_000),
+                event(ImageEvent.Type.DELETED, userId, 1, 100, 4_000));
+        for (ImageEvent event : events) {
+            eventPublisher.publish(ImageEvent.TOPIC, event.key(), ImageEventSerializer.toBytes(event));
+        }
+
+        Map<String, Object> stats = Map.of();
+        for (int attempt = 0; attempt < 300; attempt++) {
+            stats = imageService.getUsageStats(userId, null).getBody();
+            if (Long.valueOf(2).equals(stats.get("imageCount"))) {
+                break;
+            }
+            Thread.sleep(100);
+        }
+        assertThat(stats).containsEntry("imageCount", 2L).containsEntry("totalBytes", 500L)
+                .containsEntry("lastUploadAt", Instant.ofEpochMilli(3_000));
+
+        // Deliver the same records again, as after a rebalance before the offset commit.
+        List<ConsumerRecord<String, ImageEvent>> redelivered = new ArrayList<>();
+        for (int offset = 0; offset < events.size(); offset++) {
+            redelivered.add(new ConsumerRecord<>(ImageEvent.TOPIC, 0, offset, events.get(offset).key(), events.get(offset)));
+        }
+        usageProjection.onEvents(redelivered);
+
+        assertThat(imageService.getUsageStats(userId, null).getBody())
+                .containsEntry("imageCount", 2L).containsEntry("totalBytes", 500L);
+    }
+
+    /**
+     * Test that seeding sets each user's count and stored bytes from the images already in the database.
+     */
+    @Test
+    public void testSeedFromImages() {
+        User user = newUser("seeded");
+        saveImage(user, 100L);
+        saveImage(user, 250L);
+        saveImage(user, null);
+
+        usageProjection.seed();
+
+        assertThat(imageService.getUsageStats(user.getId(), null).getBody())
+                .containsEntry("imageCount", 3L).containsEntry("totalBytes", 350L);
+    }
+
+    private User newUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("Password1");
+        user.setFirstname("Test");
+        user.setLastname("User");
+        user.setEmail(username + "@example.com");
+        return userRepository.save(user);
+    }
+
+    private void saveImage(User user, Long size) {
+        Image image = new Image();
+        image.setImgurId("seed" + System.nanoTime());
+        image.setLink("https://i.imgur.com/seed.jpg");
+        image.setOptimizedSize(size);
+        image.setUser(user);
+        imageRepository.save(image);
+    }
+
+    private static ImageEvent event(ImageEvent.Type type, long userId, long imageId, long size, long timestamp) {
+        return new ImageEvent(type, userId, "projection", imageId, "https://i.imgur.com/" + imageId + ".jpg", size, timestamp);
+    }
+}
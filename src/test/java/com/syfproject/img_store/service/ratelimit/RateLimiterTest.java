@@ -0,0 +1,128 @@
+package com.syfproject.img_store.service.ratelimit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the token bucket limiter, including under heavy contention.
+ */
+public class RateLimiterTest {
+
+    private static final int THREADS = 16;
+    private static final int ATTEMPTS_PER_THREAD = 5_000;
+
+    /**
+     * Test that a full bucket allows exactly its burst, then reports the wait for the next permit.
+     */
+    @Test
+    public void testBurstThenRetryAfter() {
+        TokenBucket bucket = new TokenBucket(2, 3, 0);
+
+        assertThat(bucket.tryAcquire(0)).isZero();
+        assertThat(bucket.tryAcquire(0)).isZero();
+        assertThat(bucket.tryAcquire(0)).isZero();
+        assertThat(bucket.tryAcquire(0)).isEqualTo(500_000_000L);
+        // Half a second later one permit has been refilled.
+        assertThat(bucket.tryAcquire(500_000_000L)).isZero();
+        assertThat(bucket.tryAcquire(500_000_000L)).isPositive();
+    }
+
+    /**
+     * Test that many threads racing on one user's bucket are granted exactly the burst, no more.
+     */
+    @Test
+    public void testConcurrentAcquiresOnOneUserNeverExceedBurst() throws Exception {
+        // A rate of one per hour means nothing refills while the test runs.
+        RateLimiter limiter = new RateLimiter(1.0 / 3600, 1_000, 0, 0, 100);
+
+        assertThat(hammer(limiter, thread -> "user")).isEqualTo(1_000);
+    }
+
+    /**
+     * Test that the global bucket caps all users together, and that users rejected by it keep
+     * their own permits.
+     */
+    @Test
+    public void testConcurrentAcquiresAcrossUsersNeverExceedGlobalBurst() throws Exception {
+        RateLimiter limiter = new RateLimiter(1.0 / 3600, 100, 1.0 / 3600, 500, 100);
+
+        assertThat(hammer(limiter, thread -> "user" + thread)).isEqualTo(500);
+        // A new user is turned away by the global limit every time, without using up their own burst.
+        for (int i = 0; i < 200; i++) {
+            assertThat(limiter.tryAcquire("newcomer").rejectedBy()).isEqualTo(RateLimiter.Scope.GLOBAL);
+        }
+    }
+
+    /**
+     * Test that a user over their own limit does not affect other users.
+     */
+    @Test
+    public void testUsersAreLimitedIndependently() {
+        RateLimiter limiter = new RateLimiter(1.0 / 3600, 2, 0, 0, 100);
+
+        assertThat(limiter.tryAcquire("alice").allowed()).isTrue();
+        assertThat(limiter.tryAcquire("alice").allowed()).isTrue();
+        assertThat(limiter.tryAcquire("alice").rejectedBy()).isEqualTo(RateLimiter.Scope.USER);
+        assertThat(limiter.tryAcquire("bob").allowed()).isTrue();
+    }
+
+    /**
+     * Test that several permits are taken all or none, and that more than the burst is never granted.
+     */
+    @Test
+    public void testMultiplePermits() {
+        RateLimiter limiter = new RateLimiter(1.0 / 3600, 5, 1.0 / 3600, 8, 100);
+
+        assertThat(limiter.maxPermits()).isEqualTo(5);
+        assertThat(limiter.tryAcquire("alice", 6).rejectedBy()).isEqualTo(RateLimiter.Scope.USER);
+        assertThat(limiter.tryAcquire("alice", 3).allowed()).isTrue();
+        assertThat(limiter.tryAcquire("alice", 3).rejectedBy()).isEqualTo(RateLimiter.Scope.USER);
+        assertThat(limiter.tryAcquire("alice", 2).allowed()).isTrue();
+        // Only three global permits are left, so bob's four are refused and refunded to his bucket.
+        assertThat(limiter.tryAcquire("bob", 4).rejectedBy()).isEqualTo(RateLimiter.Scope.GLOBAL);
+        assertThat(limiter.tryAcquire("bob", 3).allowed()).isTrue();
+        assertThat(limiter.rejected(RateLimiter.Scope.USER)).isEqualTo(2);
+        assertThat(limiter.rejected(RateLimiter.Scope.GLOBAL)).isEqualTo(1);
+    }
+
+    private interface KeyForThread {
+        String key(int thread);
+    }
+
+    private static int hammer(RateLimiter limiter, KeyForThread keys) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger granted = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                String key = keys.key(t);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                        if (limiter.tryAcquire(key).allowed()) {
+                            granted.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return granted.get();
+    }
+}
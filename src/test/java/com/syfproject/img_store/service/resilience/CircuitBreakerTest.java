@@ -0,0 +1,75 @@
+package com.syfproject.img_store.service.resilience;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the circuit breaker's transitions against a manual clock.
+ */
+public class CircuitBreakerTest {
+
+    private static final long OPEN_NANOS = 1_000;
+
+    private final AtomicLong clock = new AtomicLong();
+    private final List<CircuitBreaker.State> transitions = new ArrayList<>();
+    private final CircuitBreaker breaker = new CircuitBreaker(2, OPEN_NANOS, clock::get, transitions::add);
+
+    /**
+     * Test that consecutive failures open the circuit, a probe is let through once it has been open
+     * long enough, and the probe's success closes it.
+     */
+    @Test
+    public void testOpensThenProbesThenCloses() {
+        breaker.onFailure();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        breaker.onFailure();
+        assertThat(breaker.tryAcquire()).isFalse();
+
+        clock.set(OPEN_NANOS);
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.tryAcquire()).isFalse();
+        breaker.onSuccess();
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(transitions).containsExactly(
+                CircuitBreaker.State.OPEN, CircuitBreaker.State.HALF_OPEN, CircuitBreaker.State.CLOSED);
+    }
+
+    /**
+     * Test that failures of calls let through before the circuit opened do not move its opening time.
+     */
+    @Test
+    public void testLateFailuresDoNotExtendOpenPeriod() {
+        breaker.onFailure();
+        breaker.onFailure();
+
+        clock.set(OPEN_NANOS - 1);
+        breaker.onFailure();
+        clock.set(OPEN_NANOS);
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+    }
+
+    /**
+     * Test that a failed probe opens the circuit again for a full period from the probe's failure.
+     */
+    @Test
+    public void testFailedProbeReopens() {
+        breaker.onFailure();
+        breaker.onFailure();
+        clock.set(OPEN_NANOS);
+        assertThat(breaker.tryAcquire()).isTrue();
+
+        clock.set(OPEN_NANOS + 500);
+        breaker.onFailure();
+        clock.set(2 * OPEN_NANOS);
+        assertThat(breaker.tryAcquire()).isFalse();
+        clock.set(2 * OPEN_NANOS + 500);
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+}
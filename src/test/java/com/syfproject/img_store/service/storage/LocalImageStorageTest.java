@@ -0,0 +1,137 @@
+package com.syfproject.img_store.service.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import com.syfproject.img_store.domain.entity.Image;
+import com.syfproject.img_store.domain.repository.ImageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ByteArrayResource;
+
+/**
+ * Tests the content-addressed local storage backend, with the image rows held by a mocked repository.
+ */
+public class LocalImageStorageTest {
+
+    @TempDir
+    Path root;
+
+    private final Set<String> rows = ConcurrentHashMap.newKeySet();
+
+    private final ImageRepository imageRepository = mock(ImageRepository.class);
+    private LocalImageStorage storage;
+
+    @BeforeEach
+    void createStorage() {
+        when(imageRepository.countByImgurIdStartingWithAndImgurIdNotIn(anyString(), anyCollection())).thenAnswer(invocation ->
+                rows.stream().filter(imgurId -> imgurId.startsWith(invocation.getArgument(0))
+                        && !invocation.<Collection<String>>getArgument(1).contains(imgurId)).count());
+        when(imageRepository.existsByImgurId(anyString())).thenAnswer(invocation -> rows.contains(invocation.getArgument(0)));
+        storage = new LocalImageStorage(root.toString(), imageRepository);
+    }
+
+    /**
+     * Test that identical content is stored once, under the hash reported for both images, and the file
+     * is kept until the last image sharing it is deleted.
+     */
+    @Test
+    public void testSharedContentIsDeletedWithTheLastImage() {
+        Image first = save(storage.store(content("shared bytes"), "a.jpg"));
+        Image second = save(storage.store(content("shared bytes"), "b.jpg"));
+        Path file = storage.localFile(first).orElseThrow();
+
+        assertThat(second.getImgurId()).isNotEqualTo(first.getImgurId());
+        assertThat(storage.localFile(second)).contains(file);
+        assertThat(storage.contentHash(first)).contains(file.getFileName().toString());
+        assertThat(storage.contentHash(second)).isEqualTo(storage.contentHash(first));
+
+        delete(first);
+        assertThat(file).exists();
+        assertThat(storage.localFile(second)).contains(file);
+
+        delete(second);
+        assertThat(file).doesNotExist();
+        assertThat(rows).isEmpty();
+    }
+
+    /**
+     * Test that deleting a duplicate while another upload of the same content has stored its bytes but
+     * not yet saved its row keeps the file for that upload.
+     */
+    @Test
+    public void testInFlightUploadKeepsSharedFile() {
+        Image existing = save(storage.store(content("raced bytes"), "a.jpg"));
+        StoredImage inFlight = storage.store(content("raced bytes"), "b.jpg");
+
+        delete(existing);
+        Image uploaded = save(inFlight);
+
+        assertThat(storage.localFile(uploaded)).isPresent();
+        delete(uploaded);
+        assertThat(storage.localFile(uploaded)).isEmpty();
+    }
+
+    /**
+     * Test that an image whose file is missing has no local file and can still be deleted.
+     */
+    @Test
+    public void testMissingFile() throws Exception {
+        Image image = save(storage.store(content("lost bytes"), "a.jpg"));
+        Files.delete(storage.localFile(image).orElseThrow());
+
+        assertThat(storage.localFile(image)).isEmpty();
+        delete(image);
+        assertThat(rows).isEmpty();
+    }
+
+    /**
+     * Test that duplicates whose files are deleted before either row is removed still delete the
+     * shared file, and that the storage leaves the rows to its caller.
+     */
+    @Test
+    public void testDuplicatesDeletedBeforeTheirRowsDeleteTheFile() {
+        Image first = save(storage.store(content("doubled bytes"), "a.jpg"));
+        Image second = save(storage.store(content("doubled bytes"), "b.jpg"));
+        Path file = storage.localFile(first).orElseThrow();
+
+        storage.delete(first);
+        storage.delete(second);
+
+        assertThat(file).doesNotExist();
+        assertThat(rows).containsExactlyInAnyOrder(first.getImgurId(), second.getImgurId());
+        verify(imageRepository, never()).delete(any(Image.class));
+    }
+
+    /**
+     * Deletes an image as the service does: the bytes first, then the row.
+     */
+    private void delete(Image image) {
+        storage.delete(image);
+        rows.remove(image.getImgurId());
+    }
+
+    private Image save(StoredImage stored) {
+        Image image = new Image();
+        image.setImgurId(stored.imgurId());
+        image.setDeleteHash(stored.deleteHash());
+        rows.add(stored.imgurId());
+        return image;
+    }
+
+    private static ByteArrayResource content(String text) {
+        return new ByteArrayResource(text.getBytes());
+    }
+}